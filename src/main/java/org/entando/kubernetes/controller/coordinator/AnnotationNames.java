@@ -21,7 +21,9 @@ public enum AnnotationNames {
     CONTROLLER_IMAGE("entando.org/controller-image"),
     SUPPORTED_CAPABILITIES("entando.org/supported-capabilities"),
     OPERATOR_ID_ANNOTATION("entando.org/operator-id"),
-    PROCESSED_BY_OPERATOR_VERSION("entando.org/processed-by-version");
+    PROCESSED_BY_OPERATOR_VERSION("entando.org/processed-by-version"),
+    PROCESSING_PRIORITY("entando.org/processing-priority"),
+    CA_FINGERPRINT("entando.org/ca-fingerprint");
     private final String name;
 
     AnnotationNames(String name) {
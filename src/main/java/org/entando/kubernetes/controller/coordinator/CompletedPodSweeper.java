@@ -0,0 +1,214 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.ContainerState;
+import io.fabric8.kubernetes.api.model.ContainerStateTerminated;
+import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.entando.kubernetes.controller.spi.common.LabelNames;
+import org.entando.kubernetes.controller.support.common.EntandoOperatorConfig;
+
+/**
+ * Removes completed deployer pods from the controller namespace once they are older than the removal delay, keeping the most
+ * recent successful and failed pods of each resource in the same way that Kubernetes applies the history limits of a CronJob.
+ * A single sweep covers all resources and is driven by the DeployerPodIndex, so no API calls are needed to find the pods and no
+ * threads are held between sweeps: the timer schedules the next sweep for the moment the next completed pod becomes eligible,
+ * or after the sweep interval, whichever comes first.
+ */
+public class CompletedPodSweeper {
+
+    public static final String SUCCEEDED = "Succeeded";
+    public static final String FAILED = "Failed";
+    private static final Logger LOGGER = Logger.getLogger(CompletedPodSweeper.class.getName());
+    private final SimpleKubernetesClient client;
+    private final DeployerPodIndex podIndex;
+    private final CoordinatorExecutors executors;
+    private final Predicate<String> responsibleFor;
+    private final Runnable podListener = this::onPodsChanged;
+    private final Map<String, Instant> firstSeenCompleted = new ConcurrentHashMap<>();
+    private final Object sweepLock = new Object();
+    private ScheduledFuture<?> nextSweep;
+    private Instant nextSweepAt;
+    private boolean closed;
+
+    public CompletedPodSweeper(SimpleKubernetesClient client, DeployerPodIndex podIndex, CoordinatorExecutors executors) {
+        this(client, podIndex, executors, namespace -> true);
+    }
+
+    /**
+     * Creates a sweeper that only removes the pods of resources in the namespaces that this replica is responsible for.
+     */
+    public CompletedPodSweeper(SimpleKubernetesClient client, DeployerPodIndex podIndex, CoordinatorExecutors executors,
+            Predicate<String> responsibleFor) {
+        this.client = client;
+        this.podIndex = podIndex;
+        this.executors = executors;
+        this.responsibleFor = responsibleFor;
+        podIndex.addListener(podListener);
+        onPodsChanged();
+        scheduleNoLaterThan(Instant.now().plusSeconds(ControllerCoordinatorConfig.getCompletedPodSweepIntervalSeconds()));
+    }
+
+    public static boolean isCompleted(Pod pod) {
+        final String phase = Optional.ofNullable(pod.getStatus()).map(PodStatus::getPhase).orElse(null);
+        return (SUCCEEDED.equals(phase) || FAILED.equals(phase)) && pod.getMetadata().getDeletionTimestamp() == null;
+    }
+
+    /**
+     * Removes the completed pods that are not retained by the history limits and that completed longer than the removal delay ago.
+     */
+    public void sweep() {
+        synchronized (sweepLock) {
+            final Instant now = Instant.now();
+            final Duration removalDelay = Duration.ofSeconds(ControllerCoordinatorConfig.getRemovalDelay());
+            final List<Pod> pods = podIndex.getPods();
+            final Set<String> podNames = pods.stream().map(pod -> pod.getMetadata().getName()).collect(Collectors.toSet());
+            firstSeenCompleted.keySet().retainAll(podNames);
+            final Map<Map<String, String>, List<Pod>> podsPerResource = pods.stream()
+                    .filter(CompletedPodSweeper::isCompleted)
+                    .filter(pod -> resourceLabelsOf(pod)
+                            .map(labels -> responsibleFor.test(labels.get(LabelNames.RESOURCE_NAMESPACE.getName())))
+                            .orElse(false))
+                    .collect(Collectors.groupingBy(pod -> resourceLabelsOf(pod).orElseThrow(IllegalStateException::new)));
+            Instant nextEligibleAt = now.plusSeconds(ControllerCoordinatorConfig.getCompletedPodSweepIntervalSeconds());
+            for (Map.Entry<Map<String, String>, List<Pod>> entry : podsPerResource.entrySet()) {
+                if (EntandoOperatorConfig.garbageCollectSuccessfullyCompletedPods()) {
+                    nextEligibleAt = earliest(nextEligibleAt, sweep(entry.getKey(), entry.getValue(), SUCCEEDED,
+                            ControllerCoordinatorConfig.getSuccessfulDeployerHistoryLimit(), now, removalDelay));
+                }
+                nextEligibleAt = earliest(nextEligibleAt, sweep(entry.getKey(), entry.getValue(), FAILED,
+                        ControllerCoordinatorConfig.getFailedDeployerHistoryLimit(), now, removalDelay));
+            }
+            scheduleNoLaterThan(nextEligibleAt);
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        podIndex.removeListener(podListener);
+        Optional.ofNullable(nextSweep).ifPresent(future -> future.cancel(false));
+    }
+
+    private Optional<Instant> sweep(Map<String, String> labels, List<Pod> completedPods, String phase, int historyLimit, Instant now,
+            Duration removalDelay) {
+        final List<Pod> newestFirst = completedPods.stream()
+                .filter(pod -> phase.equals(pod.getStatus().getPhase()))
+                .sorted(Comparator.comparing((Pod pod) -> completedAt(pod, now)).reversed())
+                .collect(Collectors.toList());
+        final List<Pod> candidates = newestFirst.subList(Math.min(Math.max(0, historyLimit), newestFirst.size()), newestFirst.size());
+        final Map<Boolean, List<Pod>> expired = candidates.stream()
+                .collect(Collectors.partitioningBy(pod -> !completedAt(pod, now).plus(removalDelay).isAfter(now)));
+        final List<Pod> toRemove = expired.get(true);
+        if (!toRemove.isEmpty()) {
+            final String namespace = client.getControllerNamespace();
+            try {
+                //Only the pods that were looked at, as pods that completed since then may still be awaited by their launch
+                client.deletePods(namespace, toRemove);
+                CoordinatorMetrics.add("entando_completed_pods_swept", toRemove.size(), "phase", phase);
+                LOGGER.log(Level.FINE, () -> format("Removed %s %s deployer pods with the labels %s", toRemove.size(), phase, labels));
+            } catch (RuntimeException e) {
+                CoordinatorMetrics.increment("entando_completed_pod_sweep_failures");
+                LOGGER.log(Level.WARNING, e, () -> format("Could not remove the %s deployer pods with the labels %s", phase, labels));
+            }
+        }
+        return expired.get(false).stream().map(pod -> completedAt(pod, now).plus(removalDelay)).min(Comparator.naturalOrder());
+    }
+
+    private void onPodsChanged() {
+        final Instant now = Instant.now();
+        final boolean newlyCompleted = podIndex.getPods().stream()
+                .filter(CompletedPodSweeper::isCompleted)
+                .map(pod -> firstSeenCompleted.putIfAbsent(pod.getMetadata().getName(), now))
+                .anyMatch(Objects::isNull);
+        if (newlyCompleted) {
+            scheduleNoLaterThan(now.plusSeconds(ControllerCoordinatorConfig.getRemovalDelay()));
+        }
+    }
+
+    private synchronized void scheduleNoLaterThan(Instant at) {
+        if (closed || (nextSweepAt != null && !at.isBefore(nextSweepAt) && !nextSweep.isDone())) {
+            return;
+        }
+        Optional.ofNullable(nextSweep).ifPresent(future -> future.cancel(false));
+        nextSweepAt = at;
+        nextSweep = executors.getTimer().schedule(() -> executors.getHousekeepingLane().execute(this::sweepSafely),
+                Math.max(0L, Duration.between(Instant.now(), at).toMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, e, () -> "Could not sweep the completed deployer pods");
+            scheduleNoLaterThan(Instant.now().plusSeconds(ControllerCoordinatorConfig.getCompletedPodSweepIntervalSeconds()));
+        }
+    }
+
+    /**
+     * Pods are grouped per resource using the same labels that the ControllerExecutor uses to remove a resource's pods.
+     */
+    private static Optional<Map<String, String>> resourceLabelsOf(Pod pod) {
+        final Map<String, String> labels = Optional.ofNullable(pod.getMetadata().getLabels()).orElse(Map.of());
+        final String kind = labels.get(LabelNames.RESOURCE_KIND.getName());
+        final String namespace = labels.get(LabelNames.RESOURCE_NAMESPACE.getName());
+        if (kind == null || namespace == null || labels.get(kind) == null) {
+            return Optional.empty();
+        }
+        return Optional.of(Map.of(
+                LabelNames.JOB_KIND.getName(), DeployerPodIndex.DEPLOYER,
+                LabelNames.RESOURCE_KIND.getName(), kind,
+                LabelNames.RESOURCE_NAMESPACE.getName(), namespace,
+                kind, labels.get(kind)));
+    }
+
+    private Instant completedAt(Pod pod, Instant now) {
+        return Optional.ofNullable(pod.getStatus().getContainerStatuses()).stream()
+                .flatMap(List::stream)
+                .map(ContainerStatus::getState)
+                .filter(Objects::nonNull)
+                .map(ContainerState::getTerminated)
+                .filter(Objects::nonNull)
+                .map(ContainerStateTerminated::getFinishedAt)
+                .filter(Objects::nonNull)
+                .map(Instant::parse)
+                .max(Comparator.naturalOrder())
+                .orElseGet(() -> firstSeenCompleted.computeIfAbsent(pod.getMetadata().getName(), name -> now));
+    }
+
+    private static Instant earliest(Instant instant, Optional<Instant> other) {
+        return other.filter(o -> o.isBefore(instant)).orElse(instant);
+    }
+}
@@ -20,6 +20,7 @@ import static java.lang.String.format;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.Event;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.entando.kubernetes.controller.spi.common.EntandoOperatorConfigBase;
@@ -27,6 +28,7 @@ import org.entando.kubernetes.controller.spi.common.EntandoOperatorConfigBase;
 public class ConfigListener implements RestartingWatcher<ConfigMap> {
 
     private static final Logger LOGGER = Logger.getLogger(ConfigListener.class.getName());
+    private static final AtomicLong CONFIG_VERSION = new AtomicLong();
     private final SimpleKubernetesClient client;
 
     public ConfigListener(SimpleKubernetesClient client) {
@@ -46,6 +48,14 @@ public class ConfigListener implements RestartingWatcher<ConfigMap> {
         } else {
             EntandoOperatorConfigBase.setConfigMap(resource);
         }
+        CONFIG_VERSION.incrementAndGet();
+    }
+
+    /**
+     * Returns a number that changes whenever the operator config changes, so that state derived from it can be rebuilt.
+     */
+    public static long getConfigVersion() {
+        return CONFIG_VERSION.get();
     }
 
     @Override
@@ -59,4 +69,9 @@ public class ConfigListener implements RestartingWatcher<ConfigMap> {
         client.issueOperatorDeathEvent(event);
     }
 
+    @Override
+    public WatchReconnectGovernor getReconnectGovernor() {
+        return client.getWatchReconnectGovernor();
+    }
+
 }
@@ -0,0 +1,85 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns keys, such as namespaces, to the members of a group of coordinator replicas. Every member is placed on the ring many
+ * times so that the keys are spread evenly, and when a member joins or leaves only the keys adjacent to its positions change
+ * hands. Every replica that knows the same members computes the same assignment. The owner of each key is remembered for the
+ * lifetime of the ring, which is replaced whenever the members change, so a key is only hashed the first time it is looked up.
+ */
+public final class ConsistentHashRing {
+
+    public static final ConsistentHashRing EMPTY = new ConsistentHashRing(Collections.emptySet());
+    public static final int VIRTUAL_NODES = 128;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final Set<String> members;
+    private final Map<String, Optional<String>> owners = new ConcurrentHashMap<>();
+
+    public ConsistentHashRing(Collection<String> members) {
+        this.members = Collections.unmodifiableSet(new TreeSet<>(members));
+        final MessageDigest digest = newDigest();
+        for (String member : this.members) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(digest, member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * Returns the member that owns the given key, or empty if there are no members.
+     */
+    public Optional<String> ownerOf(String key) {
+        if (ring.isEmpty()) {
+            return Optional.empty();
+        }
+        return owners.computeIfAbsent(key, k -> {
+            final Map.Entry<Long, String> owner = ring.ceilingEntry(hash(newDigest(), k));
+            return Optional.of(owner == null ? ring.firstEntry().getValue() : owner.getValue());
+        });
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    private static long hash(MessageDigest digest, String value) {
+        return ByteBuffer.wrap(digest.digest(value.getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
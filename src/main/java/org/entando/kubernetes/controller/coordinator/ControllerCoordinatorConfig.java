@@ -18,7 +18,10 @@ package org.entando.kubernetes.controller.coordinator;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import javax.print.attribute.standard.MediaSize.NA;
 import org.entando.kubernetes.controller.spi.common.EntandoOperatorConfigBase;
 import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfigProperty;
@@ -35,6 +38,14 @@ public class ControllerCoordinatorConfig extends EntandoOperatorConfigBase {
             "providedcapabilities.entando.org"
     };
 
+    private static final Map<String, ProcessingPriority> DEFAULT_PROCESSING_PRIORITIES = Map.of(
+            "EntandoKeycloakServer", ProcessingPriority.HIGH,
+            "EntandoDatabaseService", ProcessingPriority.HIGH,
+            "ProvidedCapability", ProcessingPriority.HIGH,
+            "EntandoPlugin", ProcessingPriority.LOW,
+            "EntandoDeBundle", ProcessingPriority.LOW
+    );
+
     private ControllerCoordinatorConfig() {
     }
 
@@ -59,4 +70,267 @@ public class ControllerCoordinatorConfig extends EntandoOperatorConfigBase {
                         .orElse(NAMES_OF_CRDS_OF_INTEREST));
     }
 
+    public static boolean isLazySpecDecoding() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LAZY_SPEC_DECODING)
+                .map(Boolean::parseBoolean)
+                .orElse(true);
+    }
+
+    public static long getObserverResyncPeriodSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_OBSERVER_RESYNC_PERIOD_SECONDS)
+                .map(Long::parseLong)
+                .orElse(0L);
+    }
+
+    public static long getMetricsExportIntervalSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_METRICS_EXPORT_INTERVAL_SECONDS)
+                .map(Long::parseLong)
+                .orElse(15L);
+    }
+
+    public static long getWatchReconnectInitialDelayMillis() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_RECONNECT_INITIAL_DELAY_MILLIS)
+                .map(Long::parseLong)
+                .orElse(500L);
+    }
+
+    public static long getWatchReconnectMaximumDelayMillis() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_RECONNECT_MAXIMUM_DELAY_MILLIS)
+                .map(Long::parseLong)
+                .orElse(30000L);
+    }
+
+    public static int getMaximumConcurrentWatchReconnects() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_MAXIMUM_CONCURRENT_RECONNECTS)
+                .map(Integer::parseInt)
+                .orElse(4);
+    }
+
+    public static int getWatchFailureThreshold() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD)
+                .map(Integer::parseInt)
+                .orElse(5);
+    }
+
+    /**
+     * How long a re-opened watch has to stay open before its earlier failures are forgotten, unless it delivers an event first.
+     */
+    public static long getWatchStableIntervalMillis() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_STABLE_INTERVAL_MILLIS)
+                .map(Long::parseLong)
+                .orElse(60000L);
+    }
+
+    public static int getWorkQueueMaximumRetries() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WORK_QUEUE_MAXIMUM_RETRIES)
+                .map(Integer::parseInt)
+                .orElse(5);
+    }
+
+    public static long getWorkQueueRetryDelayMillis() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WORK_QUEUE_RETRY_DELAY_MILLIS)
+                .map(Long::parseLong)
+                .orElse(1000L);
+    }
+
+    public static int getLaunchConcurrency() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LAUNCH_CONCURRENCY)
+                .map(Integer::parseInt)
+                .orElse(10);
+    }
+
+    /**
+     * Returns the maximum number of concurrent launches for the given kind, as configured in the comma separated list of
+     * kind=limit pairs in ENTANDO_K8S_LAUNCH_CONCURRENCY_BY_KIND. Kinds without a limit are only subject to the global limit.
+     */
+    public static int getLaunchConcurrencyFor(String kind) {
+        return lookupKindSetting(ControllerCoordinatorProperty.ENTANDO_K8S_LAUNCH_CONCURRENCY_BY_KIND, kind)
+                .map(Integer::parseInt)
+                .orElse(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the priority for the given kind, as configured in the comma separated list of kind=priority pairs in
+     * ENTANDO_K8S_PROCESSING_PRIORITY_BY_KIND. Resources that others depend on are prioritized by default.
+     */
+    public static ProcessingPriority getDefaultProcessingPriorityFor(String kind) {
+        return lookupKindSetting(ControllerCoordinatorProperty.ENTANDO_K8S_PROCESSING_PRIORITY_BY_KIND, kind)
+                .map(s -> ProcessingPriority.valueOf(s.toUpperCase(Locale.ROOT)))
+                .orElse(DEFAULT_PROCESSING_PRIORITIES.getOrDefault(kind, ProcessingPriority.NORMAL));
+    }
+
+    public static long getProcessingPriorityAgingSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_PROCESSING_PRIORITY_AGING_SECONDS)
+                .map(Long::parseLong)
+                .orElse(30L);
+    }
+
+    private static Optional<String> lookupKindSetting(ControllerCoordinatorProperty property, String kind) {
+        return lookupProperty(property)
+                .flatMap(s -> Arrays.stream(s.split(SEPERATOR_PATTERN))
+                        .map(String::trim)
+                        .filter(entry -> entry.startsWith(kind + "="))
+                        .map(entry -> entry.substring(kind.length() + 1).trim())
+                        .findFirst());
+    }
+
+    public static int getHousekeepingConcurrency() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_HOUSEKEEPING_CONCURRENCY)
+                .map(Integer::parseInt)
+                .orElse(2);
+    }
+
+    public static int getDedupIndexMaximumSize() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_DEDUP_INDEX_MAXIMUM_SIZE)
+                .map(Integer::parseInt)
+                .orElse(50000);
+    }
+
+    public static long getDedupIndexTimeToLiveSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_DEDUP_INDEX_TTL_SECONDS)
+                .map(Long::parseLong)
+                .orElse(TimeUnit.HOURS.toSeconds(24));
+    }
+
+    public static long getDedupIndexPurgePeriodSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_DEDUP_INDEX_PURGE_PERIOD_SECONDS)
+                .map(Long::parseLong)
+                .orElse(300L);
+    }
+
+    public static int getMaximumRunningDeployers() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_MAXIMUM_RUNNING_DEPLOYERS)
+                .map(Integer::parseInt)
+                .orElse(20);
+    }
+
+    public static int getMaximumRunningDeployersPerNamespace() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_MAXIMUM_RUNNING_DEPLOYERS_PER_NAMESPACE)
+                .map(Integer::parseInt)
+                .orElse(Integer.MAX_VALUE);
+    }
+
+    public static int getEventQueueCapacity() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_EVENT_QUEUE_CAPACITY)
+                .map(Integer::parseInt)
+                .orElse(1000);
+    }
+
+    public static int getEventBatchSize() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_EVENT_BATCH_SIZE)
+                .map(Integer::parseInt)
+                .orElse(50);
+    }
+
+    public static long getEventFlushIntervalMillis() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_EVENT_FLUSH_INTERVAL_MILLIS)
+                .map(Long::parseLong)
+                .orElse(500L);
+    }
+
+    public static long getCompletedPodSweepIntervalSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_COMPLETED_POD_SWEEP_INTERVAL_SECONDS)
+                .map(Long::parseLong)
+                .orElse(60L);
+    }
+
+    /**
+     * The number of successfully completed deployer pods to keep per resource when controller pod garbage collection is active.
+     */
+    public static int getSuccessfulDeployerHistoryLimit() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_SUCCESSFUL_DEPLOYER_HISTORY_LIMIT)
+                .map(Integer::parseInt)
+                .orElse(0);
+    }
+
+    /**
+     * The number of failed deployer pods to keep per resource. All failed pods are kept by default.
+     */
+    public static int getFailedDeployerHistoryLimit() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_FAILED_DEPLOYER_HISTORY_LIMIT)
+                .map(Integer::parseInt)
+                .orElse(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Allows more than one coordinator replica to run, with only the holder of the Lease acting on the resources.
+     */
+    public static boolean isLeaderElectionEnabled() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LEADER_ELECTION_ENABLED)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+    }
+
+    public static int getLeaderElectionLeaseDurationSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LEADER_ELECTION_LEASE_DURATION_SECONDS)
+                .map(Integer::parseInt)
+                .orElse(15);
+    }
+
+    public static long getLeaderElectionRetryPeriodMillis() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LEADER_ELECTION_RETRY_PERIOD_MILLIS)
+                .map(Long::parseLong)
+                .orElse(2000L);
+    }
+
+    /**
+     * Lets every coordinator replica act on the namespaces assigned to it, instead of electing a single leader. The membership
+     * Leases use the leader election's lease duration and retry period.
+     */
+    public static boolean isShardingEnabled() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_SHARDING_ENABLED)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+    }
+
+    /**
+     * Whether a coordinator that observes several namespaces should list and watch each CRD in all namespaces through a single
+     * request, keeping only the resources in the observed namespaces, instead of opening a watch per namespace. Access to the CRD
+     * in all namespaces is all or nothing, so without it the coordinator falls back to a watch per namespace for every observed
+     * namespace. The chart grants that access through a ClusterRole when multiplexedWatches is set.
+     */
+    public static boolean isMultiplexedWatchesEnabled() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_MULTIPLEXED_WATCHES_ENABLED)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+    }
+
+    /**
+     * The maximum number of resources to request per page when listing a CRD, or 0 to list all of them in a single response.
+     */
+    public static int getListPageSize() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LIST_PAGE_SIZE)
+                .map(Integer::parseInt)
+                .orElse(500);
+    }
+
+    /**
+     * Whether lists may be served from the API server's watch cache rather than from etcd. This takes load off etcd, but API
+     * servers that do not support pagination from the watch cache return all resources in a single response.
+     */
+    public static boolean isListFromWatchCache() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LIST_FROM_WATCH_CACHE)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+    }
+
+    /**
+     * The number of CRD lookups and observers that are bootstrapped concurrently during startup.
+     */
+    public static int getStartupParallelism() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_STARTUP_PARALLELISM)
+                .map(Integer::parseInt)
+                .orElse(8);
+    }
+
+    /**
+     * The number of seconds after which a controller namespace ConfigMap or Secret that nobody listens to and that has not
+     * been read is evicted from the cache, closing its watch.
+     */
+    public static long getControllerCacheIdleSeconds() {
+        return lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_CONTROLLER_CACHE_IDLE_SECONDS)
+                .map(Long::parseLong)
+                .orElse(TimeUnit.MINUTES.toSeconds(10));
+    }
+
 }
@@ -27,6 +27,41 @@ public enum ControllerCoordinatorProperty implements ConfigProperty {
     ENTANDO_DOCKER_IMAGE_INFO_CONFIGMAP,
     ENTANDO_K8S_OPERATOR_SERVICEACCOUNT,
     ENTANDO_STORE_LOG_ENTRIES,
-    ENTANDO_CRDS_OF_INTEREST
+    ENTANDO_CRDS_OF_INTEREST,
+    ENTANDO_K8S_LAZY_SPEC_DECODING,
+    ENTANDO_K8S_OBSERVER_RESYNC_PERIOD_SECONDS,
+    ENTANDO_K8S_METRICS_EXPORT_INTERVAL_SECONDS,
+    ENTANDO_K8S_WATCH_RECONNECT_INITIAL_DELAY_MILLIS,
+    ENTANDO_K8S_WATCH_RECONNECT_MAXIMUM_DELAY_MILLIS,
+    ENTANDO_K8S_WATCH_MAXIMUM_CONCURRENT_RECONNECTS,
+    ENTANDO_K8S_WATCH_FAILURE_THRESHOLD,
+    ENTANDO_K8S_WATCH_STABLE_INTERVAL_MILLIS,
+    ENTANDO_K8S_WORK_QUEUE_MAXIMUM_RETRIES,
+    ENTANDO_K8S_WORK_QUEUE_RETRY_DELAY_MILLIS,
+    ENTANDO_K8S_LAUNCH_CONCURRENCY,
+    ENTANDO_K8S_LAUNCH_CONCURRENCY_BY_KIND,
+    ENTANDO_K8S_HOUSEKEEPING_CONCURRENCY,
+    ENTANDO_K8S_DEDUP_INDEX_MAXIMUM_SIZE,
+    ENTANDO_K8S_DEDUP_INDEX_TTL_SECONDS,
+    ENTANDO_K8S_DEDUP_INDEX_PURGE_PERIOD_SECONDS,
+    ENTANDO_K8S_PROCESSING_PRIORITY_BY_KIND,
+    ENTANDO_K8S_PROCESSING_PRIORITY_AGING_SECONDS,
+    ENTANDO_K8S_MAXIMUM_RUNNING_DEPLOYERS,
+    ENTANDO_K8S_MAXIMUM_RUNNING_DEPLOYERS_PER_NAMESPACE,
+    ENTANDO_K8S_EVENT_QUEUE_CAPACITY,
+    ENTANDO_K8S_EVENT_BATCH_SIZE,
+    ENTANDO_K8S_EVENT_FLUSH_INTERVAL_MILLIS,
+    ENTANDO_K8S_COMPLETED_POD_SWEEP_INTERVAL_SECONDS,
+    ENTANDO_K8S_SUCCESSFUL_DEPLOYER_HISTORY_LIMIT,
+    ENTANDO_K8S_FAILED_DEPLOYER_HISTORY_LIMIT,
+    ENTANDO_K8S_LEADER_ELECTION_ENABLED,
+    ENTANDO_K8S_LEADER_ELECTION_LEASE_DURATION_SECONDS,
+    ENTANDO_K8S_LEADER_ELECTION_RETRY_PERIOD_MILLIS,
+    ENTANDO_K8S_SHARDING_ENABLED,
+    ENTANDO_K8S_MULTIPLEXED_WATCHES_ENABLED,
+    ENTANDO_K8S_LIST_PAGE_SIZE,
+    ENTANDO_K8S_LIST_FROM_WATCH_CACHE,
+    ENTANDO_K8S_STARTUP_PARALLELISM,
+    ENTANDO_K8S_CONTROLLER_CACHE_IDLE_SECONDS
 
 }
@@ -18,14 +18,25 @@ package org.entando.kubernetes.controller.coordinator;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.Event;
+import java.util.function.Consumer;
 
 public class ControllerImageOverridesWatcher implements RestartingWatcher<ConfigMap> {
 
     private final SimpleKubernetesClient client;
+    private final Consumer<ConfigMap> changeListener;
     private ConfigMap controllerImageOverrides;
 
     public ControllerImageOverridesWatcher(SimpleKubernetesClient client) {
+        this(client, configMap -> {
+        });
+    }
+
+    /**
+     * Creates a watcher that also passes every new state of the overrides to the given listener.
+     */
+    public ControllerImageOverridesWatcher(SimpleKubernetesClient client, Consumer<ConfigMap> changeListener) {
         this.client = client;
+        this.changeListener = changeListener;
         this.controllerImageOverrides = client.findOrCreateControllerConfigMap(CoordinatorUtils.CONTROLLER_IMAGE_OVERRIDES_CONFIGMAP);
         getRestartingAction().run();
     }
@@ -33,6 +44,7 @@ public class ControllerImageOverridesWatcher implements RestartingWatcher<Config
     @Override
     public void eventReceived(Action action, ConfigMap configMap) {
         this.controllerImageOverrides = configMap;
+        changeListener.accept(configMap);
     }
 
     public ConfigMap getControllerImageOverrides() {
@@ -48,4 +60,9 @@ public class ControllerImageOverridesWatcher implements RestartingWatcher<Config
     public void issueOperatorDeathEvent(Event event) {
         client.issueOperatorDeathEvent(event);
     }
+
+    @Override
+    public WatchReconnectGovernor getReconnectGovernor() {
+        return client.getWatchReconnectGovernor();
+    }
 }
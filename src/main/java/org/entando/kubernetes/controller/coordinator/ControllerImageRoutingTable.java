@@ -0,0 +1,89 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.util.Optional.ofNullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.model.capability.ProvidedCapability;
+
+/**
+ * An immutable index of the controller image to use for each kind of custom resource and each capability. It is built from the
+ * images derived from the CRD annotations and from the overrides ConfigMap whenever either changes, so that resolving the image
+ * of a resource being launched is a single map lookup, or two for capabilities with an implementation.
+ * Entries in the overrides ConfigMap take precedence over derived entries. For capabilities, the following entries are
+ * considered in this order:
+ * <ol>
+ *     <li>the override for the implementation of the capability</li>
+ *     <li>the override for the capability</li>
+ *     <li>the derived image for the implementation of the capability</li>
+ *     <li>the derived image for the capability</li>
+ * </ol>
+ */
+public final class ControllerImageRoutingTable {
+
+    public static final ControllerImageRoutingTable EMPTY = new ControllerImageRoutingTable(Collections.emptyMap());
+    private static final String CAPABILITY_SUFFIX = EntandoControllerCoordinator.CAPABILITY_ORG;
+    private final Map<String, String> routes;
+
+    private ControllerImageRoutingTable(Map<String, String> routes) {
+        this.routes = routes;
+    }
+
+    public static ControllerImageRoutingTable build(Map<String, String> derivedImages, Map<String, String> overrides) {
+        final Map<String, String> safeOverrides = ofNullable(overrides).orElse(Collections.emptyMap());
+        final Map<String, String> routes = new HashMap<>(derivedImages);
+        routes.putAll(safeOverrides);
+        //A derived image for an implementation must not shadow the override for its capability
+        derivedImages.keySet().stream()
+                .filter(key -> key.endsWith(CAPABILITY_SUFFIX) && !safeOverrides.containsKey(key))
+                .forEach(implementationKey -> safeOverrides.keySet().stream()
+                        .filter(key -> key.endsWith(CAPABILITY_SUFFIX) && implementationKey.endsWith("." + key))
+                        .max((a, b) -> Integer.compare(a.length(), b.length()))
+                        .ifPresent(capabilityKey -> routes.put(implementationKey, safeOverrides.get(capabilityKey))));
+        return new ControllerImageRoutingTable(Collections.unmodifiableMap(routes));
+    }
+
+    /**
+     * Returns the controller image for the given resource, or CoordinatorUtils.NO_IMAGE if none was configured.
+     */
+    public String resolve(SerializedEntandoResource resource) {
+        String imageName;
+        if (resource.getKind().equals(ProvidedCapability.class.getSimpleName())) {
+            final String capability = (String) resource.getSpec().get("capability");
+            imageName = Optional.ofNullable((String) resource.getSpec().get("implementation"))
+                    .map(implementation -> routes.get(sanitize(implementation + "." + capability + CAPABILITY_SUFFIX)))
+                    .orElseGet(() -> routes.get(sanitize(capability + CAPABILITY_SUFFIX)));
+        } else {
+            imageName = routes.get(CoordinatorUtils.keyOf(resource));
+        }
+        return ofNullable(imageName).orElse(CoordinatorUtils.NO_IMAGE);
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    private static String sanitize(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+}
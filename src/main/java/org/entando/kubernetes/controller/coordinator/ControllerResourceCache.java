@@ -0,0 +1,307 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A watch-fed cache of named resources of one type in the controller namespace, such as the ConfigMaps and Secrets the
+ * coordinator reads. Each resource is loaded from the server when it is first read, after which a watch on that name keeps it
+ * up to date, including its absence. Callers receive copies, so they can modify the resources they read. Every change
+ * increments the version of the cache and is passed on to the listeners registered for the name, so that state derived from
+ * the resource can be rebuilt. Names without listeners that have not been read for a while are evicted and their watches
+ * closed.
+ */
+public class ControllerResourceCache<T extends HasMetadata> {
+
+    private static final Logger LOGGER = Logger.getLogger(ControllerResourceCache.class.getName());
+    private final String name;
+    private final Function<String, T> loader;
+    private final BiFunction<String, Watcher<T>, Watch> watchStarter;
+    private final UnaryOperator<T> copier;
+    private final DeathEventIssuer deathEventIssuer;
+    private final WatchReconnectGovernor reconnectGovernor;
+    private final long idleMillis;
+    private final LongSupplier clock;
+    private final Map<String, CachedResource> entries = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong lastEviction;
+
+    /**
+     * Creates a cache.
+     *
+     * @param name the name of the cache used in metrics, e.g. "configmaps"
+     * @param loader loads the resource with the given name from the server, or returns null if it does not exist
+     * @param watchStarter starts a watch on the resource with the given name
+     * @param copier creates a copy of the given resource
+     * @param deathEventIssuer issues the death event if a watch can no longer be restarted
+     * @param reconnectGovernor schedules the reconnects of the watches
+     */
+    public ControllerResourceCache(String name, Function<String, T> loader, BiFunction<String, Watcher<T>, Watch> watchStarter,
+            UnaryOperator<T> copier, DeathEventIssuer deathEventIssuer, WatchReconnectGovernor reconnectGovernor) {
+        this(name, loader, watchStarter, copier, deathEventIssuer, reconnectGovernor,
+                TimeUnit.SECONDS.toMillis(ControllerCoordinatorConfig.getControllerCacheIdleSeconds()), System::currentTimeMillis);
+    }
+
+    ControllerResourceCache(String name, Function<String, T> loader, BiFunction<String, Watcher<T>, Watch> watchStarter,
+            UnaryOperator<T> copier, DeathEventIssuer deathEventIssuer, WatchReconnectGovernor reconnectGovernor, long idleMillis,
+            LongSupplier clock) {
+        this.name = name;
+        this.loader = loader;
+        this.watchStarter = watchStarter;
+        this.copier = copier;
+        this.deathEventIssuer = deathEventIssuer;
+        this.reconnectGovernor = reconnectGovernor;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+        this.lastEviction = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Returns a copy of the resource with the given name, or null if it does not exist.
+     */
+    public T get(String resourceName) {
+        CachedResource entry = entries.get(resourceName);
+        if (entry == null) {
+            CoordinatorMetrics.increment("entando_cache_misses", "cache", name);
+            entry = entryFor(resourceName);
+        } else {
+            CoordinatorMetrics.increment("entando_cache_hits", "cache", name);
+            entry.lastRead = clock.getAsLong();
+        }
+        evictIdleEntries();
+        return copyOf(entry.resource);
+    }
+
+    /**
+     * Updates the cache with the result of a write to the server, so that subsequent reads do not have to wait for the watch. A
+     * write that did not change the resourceVersion of the cached resource is ignored.
+     */
+    public T put(T resource) {
+        Optional.ofNullable(entries.get(resource.getMetadata().getName())).ifPresent(entry -> entry.updateIfChanged(resource));
+        return copyOf(resource);
+    }
+
+    /**
+     * Removes the resource after it was deleted on the server, so that subsequent reads do not have to wait for the watch.
+     */
+    public void remove(String resourceName) {
+        Optional.ofNullable(entries.get(resourceName)).ifPresent(entry -> entry.update(null));
+    }
+
+    /**
+     * Registers a listener that will be notified of every change to the resource with the given name. Like a new watch, the
+     * listener immediately receives an ADDED event for the resource if it exists.
+     */
+    public void addListener(String resourceName, Watcher<T> listener) {
+        CachedResource entry = entryFor(resourceName);
+        //An entry that was evicted in the meantime would no longer keep the listener informed
+        while (!entry.register(listener)) {
+            entry = entryFor(resourceName);
+        }
+    }
+
+    /**
+     * Returns a number that increases with every change to any of the resources in this cache.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the number of names that are currently cached and watched.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public void close() {
+        entries.values().forEach(CachedResource::close);
+        entries.clear();
+    }
+
+    private CachedResource entryFor(String resourceName) {
+        final CachedResource existing = entries.get(resourceName);
+        if (existing != null && !existing.closed) {
+            return existing;
+        }
+        if (existing != null) {
+            entries.remove(resourceName, existing);
+        }
+        //Loaded and watched outside the map so that a slow server does not block the readers of other names
+        final CachedResource created = new CachedResource(resourceName);
+        final CachedResource winner = entries.putIfAbsent(resourceName, created);
+        if (winner == null) {
+            return created;
+        }
+        created.close();
+        return winner;
+    }
+
+    private void evictIdleEntries() {
+        final long now = clock.getAsLong();
+        final long previous = lastEviction.get();
+        if (now - previous >= idleMillis && lastEviction.compareAndSet(previous, now)) {
+            entries.forEach((resourceName, entry) -> {
+                if (entry.evictIfIdle(now)) {
+                    entries.remove(resourceName, entry);
+                    LOGGER.log(Level.FINE, () -> format("Stopped watching %s %s because it is no longer read", name, resourceName));
+                }
+            });
+        }
+    }
+
+
+    private T copyOf(T resource) {
+        return resource == null ? null : copier.apply(resource);
+    }
+
+    /**
+     * The latest known state of one named resource, and the watch that keeps it up to date.
+     */
+    private class CachedResource implements RestartingWatcher<T> {
+
+        private final String resourceName;
+        private final CopyOnWriteArrayList<Watcher<T>> listeners = new CopyOnWriteArrayList<>();
+        private volatile T resource;
+        private volatile Watch watch;
+        private volatile long lastRead = clock.getAsLong();
+        private volatile boolean closed;
+
+        private CachedResource(String resourceName) {
+            this.resourceName = resourceName;
+            getRestartingAction().run();
+        }
+
+        private boolean register(Watcher<T> listener) {
+            final T current;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                if (!listeners.addIfAbsent(listener)) {
+                    return true;
+                }
+                current = resource;
+            }
+            //Like a new watch, the listener immediately receives the current state
+            Optional.ofNullable(current).ifPresent(present -> listener.eventReceived(Action.ADDED, copyOf(present)));
+            return true;
+        }
+
+        private synchronized boolean evictIfIdle(long now) {
+            if (listeners.isEmpty() && now - lastRead >= idleMillis) {
+                close();
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            Optional.ofNullable(watch).ifPresent(Watch::close);
+        }
+
+        @Override
+        public Runnable getRestartingAction() {
+            return () -> {
+                if (closed) {
+                    return;
+                }
+                final T previous = resource;
+                final T loaded = loader.apply(resourceName);
+                //Only a restarted watch could have missed something
+                final boolean changed = watch != null && !Objects.equals(resourceVersionOf(previous), resourceVersionOf(loaded));
+                update(loaded);
+                this.watch = watchStarter.apply(resourceName, this);
+                if (closed) {
+                    //Evicted while the watch was being restarted
+                    watch.close();
+                    return;
+                }
+                if (changed) {
+                    if (loaded == null) {
+                        notifyListeners(Action.DELETED, previous);
+                    } else {
+                        notifyListeners(Action.MODIFIED, loaded);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void eventReceived(Action action, T changedResource) {
+            if (action == Action.DELETED) {
+                update(null);
+            } else if (action == Action.ADDED || action == Action.MODIFIED) {
+                //The watch delivers the changes in the order the server made them, and resourceVersions are opaque
+                update(changedResource);
+            }
+            LOGGER.log(Level.FINE, () -> format("%s %s was %s", name, resourceName, action.name().toLowerCase(Locale.ROOT)));
+            notifyListeners(action, changedResource);
+        }
+
+        private void notifyListeners(Action action, T changedResource) {
+            listeners.forEach(listener -> listener.eventReceived(action, copyOf(changedResource)));
+        }
+
+        private synchronized void update(T latest) {
+            this.resource = latest;
+            version.incrementAndGet();
+        }
+
+        private synchronized void updateIfChanged(T written) {
+            if (resource == null || !Objects.equals(resourceVersionOf(resource), resourceVersionOf(written))) {
+                update(written);
+            }
+        }
+
+        private String resourceVersionOf(T candidate) {
+            return candidate == null ? null : candidate.getMetadata().getResourceVersion();
+        }
+
+        @Override
+        public void issueOperatorDeathEvent(Event event) {
+            deathEventIssuer.issueOperatorDeathEvent(event);
+        }
+
+        @Override
+        public WatchReconnectGovernor getReconnectGovernor() {
+            return reconnectGovernor;
+        }
+    }
+}
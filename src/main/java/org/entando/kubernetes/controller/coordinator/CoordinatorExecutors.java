@@ -0,0 +1,265 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The threads used by the coordinator, shared by all the EntandoResourceObservers. Work is separated into lanes so that a burst
+ * of one kind of work cannot starve the other:
+ * <ul>
+ *     <li>the launch lane starts controller pods, with a global concurrency limit. Waiting launches are ordered by priority, with
+ *     aging so that low priority launches are not starved</li>
+ *     <li>the housekeeping lane removes completed pods and performs resyncs. Periodic work is coalesced, so a slow task delays
+ *     the next run of the others, but the queue never grows with it. Nothing on this lane waits for pods</li>
+ *     <li>the lease timer renews the Leases of the coordinator replicas on a thread of its own, so that a renewal never waits
+ *     behind other work for longer than its deadline allows</li>
+ *     <li>the timer only schedules delayed work onto the other lanes and never performs any I/O itself</li>
+ * </ul>
+ * Per kind concurrency limits (bulkheads) are enforced by each observer's work queue.
+ */
+public class CoordinatorExecutors {
+
+    private final Lane launchLane;
+    private final Lane housekeepingLane;
+    private final ScheduledExecutorService timer;
+    private final ScheduledExecutorService leaseTimer;
+
+    public CoordinatorExecutors() {
+        this(ControllerCoordinatorConfig.getLaunchConcurrency(), ControllerCoordinatorConfig.getHousekeepingConcurrency());
+    }
+
+    public CoordinatorExecutors(int launchConcurrency, int housekeepingConcurrency) {
+        this.launchLane = new Lane("launch", launchConcurrency, new PriorityBlockingQueue<>());
+        this.housekeepingLane = new Lane("housekeeping", housekeepingConcurrency, new LinkedBlockingQueue<>());
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("coordinator-timer"));
+        this.leaseTimer = Executors.newSingleThreadScheduledExecutor(daemonThreads("coordinator-leases"));
+    }
+
+    public Lane getLaunchLane() {
+        return launchLane;
+    }
+
+    public Lane getHousekeepingLane() {
+        return housekeepingLane;
+    }
+
+    public ScheduledExecutorService getTimer() {
+        return timer;
+    }
+
+    /**
+     * The thread reserved for renewing Leases. Tasks scheduled here must be short and must hand anything else they trigger over
+     * to one of the lanes.
+     */
+    public ScheduledExecutorService getLeaseTimer() {
+        return leaseTimer;
+    }
+
+    public void shutDown() {
+        timer.shutdownNow();
+        leaseTimer.shutdownNow();
+        launchLane.executor.shutdown();
+        housekeepingLane.executor.shutdown();
+    }
+
+    /**
+     * Wraps the task so that it will be dispatched with the given priority on lanes that order their tasks.
+     */
+    public static Runnable withPriority(Runnable task, ProcessingPriority priority) {
+        return new PrioritizedRunnable(task, priority);
+    }
+
+    /**
+     * Returns a Runnable that queues the task on the lane unless it is still waiting there from an earlier run. Meant for periodic
+     * work, so that runs that fall behind are skipped rather than piling up in the queue.
+     */
+    public static Runnable coalescing(Executor lane, Runnable task) {
+        final AtomicBoolean queued = new AtomicBoolean();
+        return () -> {
+            if (queued.compareAndSet(false, true)) {
+                lane.execute(() -> {
+                    queued.set(false);
+                    task.run();
+                });
+            }
+        };
+    }
+
+    /**
+     * Applies the task to all the items concurrently, on a pool of at most the configured startup parallelism that only lives as
+     * long as the call, and returns the results in the order of the items. Used for the blocking requests made during startup,
+     * which should not have to wait behind, or hold up, the work on the lanes.
+     */
+    public static <T, R> List<R> inParallel(String name, Collection<T> items, Function<T, R> task) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(items.size(), ControllerCoordinatorConfig.getStartupParallelism())),
+                daemonThreads("coordinator-" + name));
+        try {
+            final List<CompletableFuture<R>> futures = items.stream()
+                    .map(item -> CompletableFuture.supplyAsync(() -> task.apply(item), pool))
+                    .collect(Collectors.toList());
+            return futures.stream().map(CoordinatorExecutors::join).collect(Collectors.toList());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A fixed size pool that records how long tasks waited before they started.
+     */
+    public static class Lane implements Executor {
+
+        private final String name;
+        private final ThreadPoolExecutor executor;
+
+        Lane(String name, int concurrency, BlockingQueue<Runnable> queue) {
+            this.name = name;
+            this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS, queue,
+                    daemonThreads("coordinator-" + name));
+            //Idle lanes should not hold on to threads
+            this.executor.allowCoreThreadTimeOut(true);
+            CoordinatorMetrics.registerGauge("entando_executor_queue_depth", () -> executor.getQueue().size(), "lane", name);
+            CoordinatorMetrics.registerGauge("entando_executor_active_threads", executor::getActiveCount, "lane", name);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            final ProcessingPriority priority = task instanceof Prioritized
+                    ? ((Prioritized) task).getPriority()
+                    : ProcessingPriority.NORMAL;
+            executor.execute(new QueuedTask(task, priority, name));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return executor.getQueue().size();
+        }
+
+        public int getActiveCount() {
+            return executor.getActiveCount();
+        }
+    }
+
+    private static class PrioritizedRunnable implements Runnable, Prioritized {
+
+        private final Runnable task;
+        private final ProcessingPriority priority;
+
+        private PrioritizedRunnable(Runnable task, ProcessingPriority priority) {
+            this.task = task;
+            this.priority = priority;
+        }
+
+        @Override
+        public ProcessingPriority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    /**
+     * A task waiting in a lane. Tasks are ordered by their enqueue time minus the head start of their priority, which never
+     * changes while they wait, so a task that has waited long enough always gets ahead of newer tasks of a higher priority.
+     */
+    private static class QueuedTask implements Runnable, Comparable<QueuedTask> {
+
+        private static final AtomicLong SEQUENCE = new AtomicLong();
+        private final Runnable task;
+        private final String lane;
+        private final long enqueuedAt = System.currentTimeMillis();
+        private final long sortKey;
+        private final long sequence = SEQUENCE.incrementAndGet();
+
+        private QueuedTask(Runnable task, ProcessingPriority priority, String lane) {
+            this.task = task;
+            this.lane = lane;
+            this.sortKey = enqueuedAt - priority.getHeadStartMillis(
+                    TimeUnit.SECONDS.toMillis(ControllerCoordinatorConfig.getProcessingPriorityAgingSeconds()));
+        }
+
+        @Override
+        public void run() {
+            CoordinatorMetrics.recordMillis("entando_executor_wait", System.currentTimeMillis() - enqueuedAt, "lane", lane);
+            task.run();
+        }
+
+        @Override
+        public int compareTo(QueuedTask other) {
+            final int result = Long.compare(sortKey, other.sortKey);
+            return result == 0 ? Long.compare(sequence, other.sequence) : result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof QueuedTask && ((QueuedTask) o).sequence == sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sequence);
+        }
+    }
+}
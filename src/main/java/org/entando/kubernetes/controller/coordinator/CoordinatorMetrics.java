@@ -0,0 +1,171 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.entando.kubernetes.controller.spi.common.EntandoOperatorConfigBase;
+
+/**
+ * A minimal registry of counters, gauges and timers. The coordinator has no HTTP endpoint, so the metrics are periodically
+ * written in the Prometheus text format to a file in the probe folder, next to the liveness file, where a sidecar or a node
+ * exporter's textfile collector can pick them up.
+ */
+public final class CoordinatorMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(CoordinatorMetrics.class.getName());
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Supplier<? extends Number>> GAUGES = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService exporter;
+
+    private CoordinatorMetrics() {
+
+    }
+
+    public static void increment(String name, String... labels) {
+        add(name, 1L, labels);
+    }
+
+    public static void add(String name, long amount, String... labels) {
+        COUNTERS.computeIfAbsent(keyOf(name, labels), key -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Records a duration as a "_sum" and a "_count" pair, so that the average can be derived from the exported values.
+     */
+    public static void recordMillis(String name, long millis, String... labels) {
+        add(name + "_milliseconds_sum", millis, labels);
+        increment(name + "_milliseconds_count", labels);
+    }
+
+    public static void registerGauge(String name, Supplier<? extends Number> supplier, String... labels) {
+        GAUGES.put(keyOf(name, labels), supplier);
+    }
+
+    public static void unregisterGauge(String name, String... labels) {
+        GAUGES.remove(keyOf(name, labels));
+    }
+
+    /**
+     * Unregisters the gauge only if it is still backed by the given supplier, so that an instance that is being closed does not
+     * remove a gauge that another instance has registered under the same name since.
+     */
+    public static void unregisterGauge(String name, Supplier<? extends Number> supplier, String... labels) {
+        GAUGES.remove(keyOf(name, labels), supplier);
+    }
+
+    public static long getCount(String name, String... labels) {
+        final LongAdder adder = COUNTERS.get(keyOf(name, labels));
+        return adder == null ? 0L : adder.sum();
+    }
+
+    public static Number getGaugeValue(String name, String... labels) {
+        final Supplier<? extends Number> supplier = GAUGES.get(keyOf(name, labels));
+        return supplier == null ? null : supplier.get();
+    }
+
+    public static String render() {
+        final StringBuilder sb = new StringBuilder();
+        COUNTERS.forEach((key, value) -> sb.append(key).append(' ').append(value.sum()).append('\n'));
+        final Map<String, Supplier<? extends Number>> sortedGauges = new ConcurrentSkipListMap<>(GAUGES);
+        for (Entry<String, Supplier<? extends Number>> entry : sortedGauges.entrySet()) {
+            try {
+                sb.append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, e, () -> format("Could not evaluate the gauge %s", entry.getKey()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Starts writing the metrics to the probe folder at the configured interval. Does nothing if the interval is 0 or if the
+     * export has already been started.
+     */
+    public static synchronized void startExporting() {
+        final long interval = ControllerCoordinatorConfig.getMetricsExportIntervalSeconds();
+        if (exporter == null && interval > 0) {
+            exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "coordinator-metrics-exporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            exporter.scheduleAtFixedRate(CoordinatorMetrics::export, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    public static synchronized void stopExporting() {
+        if (exporter != null) {
+            exporter.shutdownNow();
+            exporter = null;
+        }
+    }
+
+    static void reset() {
+        COUNTERS.clear();
+        GAUGES.clear();
+    }
+
+    private static void export() {
+        final Path target = metricsFile();
+        try {
+            final Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.write(temp, render().getBytes(StandardCharsets.UTF_8));
+            //Readers should never see a half written file
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> format("Could not write the metrics to %s", target));
+        }
+    }
+
+    private static Path metricsFile() {
+        return Paths
+                .get(EntandoOperatorConfigBase.lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_PROBE_FOLDER).orElse("/tmp"),
+                        EntandoControllerCoordinator.class.getSimpleName() + ".prom");
+    }
+
+    private static String keyOf(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+        final StringBuilder sb = new StringBuilder(name).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(labels[i + 1].replace("\"", "\\\"")).append('"');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -16,16 +16,32 @@
 
 package org.entando.kubernetes.controller.coordinator;
 
+import static java.lang.String.format;
 import static java.util.Optional.ofNullable;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.OwnerReference;
 import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinition;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.entando.kubernetes.controller.spi.common.LabelNames;
 import org.entando.kubernetes.controller.spi.common.NameUtils;
 import org.entando.kubernetes.model.common.EntandoCustomResource;
@@ -48,6 +64,17 @@ public class CoordinatorUtils {
                 .orElse(OperatorProcessingInstruction.NONE);
     }
 
+    /**
+     * Resolves the priority from the entando.org/processing-priority annotation, falling back to the default for the kind.
+     */
+    public static ProcessingPriority resolveProcessingPriority(EntandoCustomResource resource) {
+        return resolveAnnotation(resource, AnnotationNames.PROCESSING_PRIORITY)
+                .map(value -> value.trim().toUpperCase(Locale.ROOT))
+                .filter(value -> Arrays.stream(ProcessingPriority.values()).anyMatch(p -> p.name().equals(value)))
+                .map(ProcessingPriority::valueOf)
+                .orElseGet(() -> ControllerCoordinatorConfig.getDefaultProcessingPriorityFor(resource.getKind()));
+    }
+
     public static Optional<String> resolveAnnotation(HasMetadata resource, AnnotationNames annotationName) {
         return ofNullable(resource.getMetadata().getAnnotations()).map(map -> map.get(annotationName.getName()));
     }
@@ -85,6 +112,46 @@ public class CoordinatorUtils {
         return ofNullable(map.getData()).flatMap(data -> ofNullable(data.get(key)));
     }
 
+    public static OptionalLong parseResourceVersion(String resourceVersion) {
+        if (resourceVersion != null) {
+            try {
+                return OptionalLong.of(Long.parseLong(resourceVersion));
+            } catch (NumberFormatException e) {
+                //resourceVersions are opaque strings. We can only compare them when the server happens to use numbers
+                return OptionalLong.empty();
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Returns true only if both resourceVersions are numeric and the first one is lower than the second one.
+     */
+    public static boolean isOlderResourceVersion(String resourceVersion, String comparedTo) {
+        final OptionalLong candidate = parseResourceVersion(resourceVersion);
+        final OptionalLong current = parseResourceVersion(comparedTo);
+        return candidate.isPresent() && current.isPresent() && candidate.getAsLong() < current.getAsLong();
+    }
+
+    /**
+     * Returns true if the given exception, or any of its causes, reflects an HTTP 410 Gone response from the API server, which
+     * is how the server tells a watch that the resourceVersion it was started from is no longer available.
+     */
+    public static boolean isHttpGone(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause != null) {
+            if (cause instanceof KubernetesClientException) {
+                final KubernetesClientException clientException = (KubernetesClientException) cause;
+                if (clientException.getCode() == HttpURLConnection.HTTP_GONE || (clientException.getStatus() != null
+                        && Objects.equals(clientException.getStatus().getCode(), HttpURLConnection.HTTP_GONE))) {
+                    return true;
+                }
+            }
+            cause = cause.getCause() == cause ? null : cause.getCause();
+        }
+        return false;
+    }
+
     public static Map<String, String> podLabelsFor(EntandoCustomResource resource) {
         return Map.of(
                 LabelNames.JOB_KIND.getName(), "deployer",
@@ -93,4 +160,60 @@ public class CoordinatorUtils {
                 resource.getKind(), NameUtils.shortenLabelToMaxLength(resource.getMetadata().getName()));
     }
 
+    /**
+     * Fails the given future with a TimeoutException that describes what was waited for if it does not complete within the given
+     * number of seconds.
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long seconds, String description) {
+        return future.orTimeout(seconds, TimeUnit.SECONDS).handle((value, throwable) -> {
+            if (throwable == null) {
+                return value;
+            }
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+            if (cause instanceof TimeoutException) {
+                throw new CompletionException(
+                        new TimeoutException(format("Timed out after %s seconds waiting for %s", seconds, description)));
+            }
+            throw cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Blocks until the given stage completes. Intended for callers that have no thread to give back, such as tests.
+     */
+    public static <T> T await(CompletionStage<T> stage) throws TimeoutException {
+        try {
+            return stage.toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw (TimeoutException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the given entries, independent of the order of the map.
+     */
+    public static String sha256Of(Map<String, String> data) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            new TreeMap<>(data).forEach((key, value) -> digest.update((key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8)));
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
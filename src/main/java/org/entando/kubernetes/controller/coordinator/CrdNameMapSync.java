@@ -21,21 +21,45 @@ import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
 import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.OwnerReference;
 import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinition;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 class CrdNameMapSync implements RestartingWatcher<CustomResourceDefinition> {
 
-    private ConfigMap crdNameMap;
+    private volatile ConfigMap crdNameMap;
     private final SimpleKubernetesClient client;
+    private final BooleanSupplier mayWrite;
 
-    CrdNameMapSync(SimpleKubernetesClient client, List<CustomResourceDefinition> customResourceDefinitions) {
+    CrdNameMapSync(SimpleKubernetesClient client, List<CustomResourceDefinition> customResourceDefinitions, BooleanSupplier mayWrite) {
         this.client = client;
-        crdNameMap = client.findOrCreateControllerConfigMap(CoordinatorUtils.ENTANDO_CRD_NAMES_CONFIGMAP_NAME);
+        this.mayWrite = mayWrite;
+        this.crdNameMap = new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName(CoordinatorUtils.ENTANDO_CRD_NAMES_CONFIGMAP_NAME)
+                .withNamespace(client.getControllerNamespace())
+                .endMetadata()
+                .build();
         customResourceDefinitions.forEach(this::syncName);
-        this.crdNameMap = client.patchControllerConfigMap(crdNameMap);
+        publish();
         getRestartingAction().run();
     }
 
+    /**
+     * Writes the names that are known to this replica to the ConfigMap, provided this replica may write.
+     */
+    synchronized void publish() {
+        if (mayWrite.getAsBoolean()) {
+            final ConfigMap stored = client.findOrCreateControllerConfigMap(CoordinatorUtils.ENTANDO_CRD_NAMES_CONFIGMAP_NAME);
+            final Map<String, String> data = new HashMap<>(Optional.ofNullable(stored.getData()).orElse(Map.of()));
+            data.putAll(Optional.ofNullable(crdNameMap.getData()).orElse(Map.of()));
+            stored.setData(data);
+            this.crdNameMap = client.patchControllerConfigMap(stored);
+        }
+    }
+
     @Override
     public Runnable getRestartingAction() {
         return () -> this.client.watchCustomResourceDefinitions(this);
@@ -46,16 +70,20 @@ class CrdNameMapSync implements RestartingWatcher<CustomResourceDefinition> {
         client.issueOperatorDeathEvent(event);
     }
 
+    @Override
+    public WatchReconnectGovernor getReconnectGovernor() {
+        return client.getWatchReconnectGovernor();
+    }
+
     @Override
     public void eventReceived(Action action, CustomResourceDefinition r) {
         if (CoordinatorUtils.isOfInterest(r)) {
-            crdNameMap = client.findOrCreateControllerConfigMap(CoordinatorUtils.ENTANDO_CRD_NAMES_CONFIGMAP_NAME);
             syncName(r);
-            this.crdNameMap = client.patchControllerConfigMap(crdNameMap);
+            publish();
         }
     }
 
-    private void syncName(CustomResourceDefinition r) {
+    private synchronized void syncName(CustomResourceDefinition r) {
         String key = CoordinatorUtils.keyOf(r);
         crdNameMap = new ConfigMapBuilder(crdNameMap).addToData(key, r.getMetadata().getName()).build();
     }
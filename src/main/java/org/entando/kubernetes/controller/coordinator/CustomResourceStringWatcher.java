@@ -16,22 +16,28 @@
 
 package org.entando.kubernetes.controller.coordinator;
 
-import static org.entando.kubernetes.controller.spi.common.ExceptionUtils.ioSafe;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
 
 public class CustomResourceStringWatcher implements RestartingWatcher<String>, Watch {
 
+    private static final Logger LOGGER = Logger.getLogger(CustomResourceStringWatcher.class.getName());
+
     private final SerializedResourceWatcher observer;
     private final CustomResourceDefinitionContext definitionContext;
     private final Function<CustomResourceStringWatcher, Watch> restartingFunction;
-    private DeathEventIssuer deathEventIssuer;
-    private Watch watch;
+    private final SimpleEntandoOperations operations;
+    private final WatchReconnectGovernor reconnectGovernor;
+    private final boolean lazySpecDecoding = ControllerCoordinatorConfig.isLazySpecDecoding();
+    private volatile Watch watch;
+    private volatile String lastResourceVersion;
+    private volatile boolean closed;
 
     public Watch getWatch() {
         return watch;
@@ -40,36 +46,104 @@ public class CustomResourceStringWatcher implements RestartingWatcher<String>, W
     public CustomResourceStringWatcher(SerializedResourceWatcher observer,
             CustomResourceDefinitionContext definitionContext,
             Function<CustomResourceStringWatcher, Watch> restartingFunction,
-            DeathEventIssuer deathEventIssuer) {
+            SimpleEntandoOperations operations,
+            WatchReconnectGovernor reconnectGovernor) {
+        this(observer, definitionContext, restartingFunction, operations, reconnectGovernor, null);
+    }
+
+    /**
+     * Starts watching from the given resourceVersion, e.g. that of the list the observer has just processed.
+     */
+    public CustomResourceStringWatcher(SerializedResourceWatcher observer,
+            CustomResourceDefinitionContext definitionContext,
+            Function<CustomResourceStringWatcher, Watch> restartingFunction,
+            SimpleEntandoOperations operations,
+            WatchReconnectGovernor reconnectGovernor,
+            String resourceVersion) {
         this.observer = observer;
         this.definitionContext = definitionContext;
         this.restartingFunction = restartingFunction;
-        this.deathEventIssuer = deathEventIssuer;
+        this.operations = operations;
+        this.reconnectGovernor = reconnectGovernor;
+        this.lastResourceVersion = resourceVersion;
         getRestartingAction().run();
     }
 
+    /**
+     * The resourceVersion of the last event or bookmark received, from which the watch should be resumed.
+     */
+    public String getLastResourceVersion() {
+        return lastResourceVersion;
+    }
+
     @Override
     public Runnable getRestartingAction() {
-        return () -> this.watch = restartingFunction.apply(this);
+        return () -> {
+            //A reconnect may have been scheduled before the watch was closed locally
+            if (!closed) {
+                this.watch = restartingFunction.apply(this);
+            }
+        };
     }
 
     @Override
     public void issueOperatorDeathEvent(Event event) {
-        deathEventIssuer.issueOperatorDeathEvent(event);
+        operations.issueOperatorDeathEvent(event);
+    }
+
+    @Override
+    public WatchReconnectGovernor getReconnectGovernor() {
+        return reconnectGovernor;
     }
 
     @Override
     public void eventReceived(Action action, String s) {
-        ioSafe(() -> {
-            final SerializedEntandoResource r = new ObjectMapper().readValue(s, SerializedEntandoResource.class);
+        final SerializedEntandoResource r = SerializedResourceCodec.readWatchedResource(s, lazySpecDecoding);
+        if (action != Action.BOOKMARK) {
             r.setDefinition(definitionContext);
             observer.eventReceived(action, r);
-            return null;
+        }
+        lastResourceVersion = r.getMetadata().getResourceVersion();
+        reconnectGovernor.confirmHealthy(this);
+    }
+
+    /**
+     * Our resourceVersion is too old to resume from. Find out what we missed by comparing a fresh list, a page at a time, with the
+     * local store, and then start watching from the resourceVersion of that list.
+     */
+    @Override
+    public void onResourceVersionExpired() {
+        final AtomicInteger changed = new AtomicInteger();
+        final AtomicInteger deleted = new AtomicInteger();
+        final String listResourceVersion = operations.relistInPages(page -> {
+            changed.addAndGet(page.size());
+            page.forEach(r -> observer.eventReceived(Action.MODIFIED, r));
+        }, gone -> {
+            deleted.addAndGet(gone.size());
+            gone.forEach(r -> observer.eventReceived(Action.DELETED, r));
         });
+        LOGGER.log(Level.INFO, () -> String.format("Relisted '%s' after the watch expired: %s added or modified, %s deleted",
+                definitionContext.getName(), changed.get(), deleted.get()));
+        lastResourceVersion = listResourceVersion;
+        getRestartingAction().run();
+    }
+
+    /**
+     * The server closed the watch without an error, typically because the watch timed out. Unless we closed it ourselves, we
+     * resume from where we left off.
+     */
+    @Override
+    public void onClose() {
+        if (!closed) {
+            LOGGER.log(Level.FINE, () -> String.format("Watch on '%s' closed. Resuming from resourceVersion %s",
+                    definitionContext.getName(), lastResourceVersion));
+            reconnectGovernor.reconnect(this, getRestartingAction(), "closed");
+        }
     }
 
     @Override
     public void close() {
+        closed = true;
         getWatch().close();
     }
 
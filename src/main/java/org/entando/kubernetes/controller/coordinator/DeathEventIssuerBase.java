@@ -17,6 +17,7 @@
 package org.entando.kubernetes.controller.coordinator;
 
 import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.ObjectReference;
 import io.fabric8.kubernetes.api.model.ObjectReferenceBuilder;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.KubernetesClient;
@@ -25,6 +26,7 @@ import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfig;
 public class DeathEventIssuerBase implements DeathEventIssuer {
 
     protected final KubernetesClient client;
+    private volatile ObjectReference controllerPodReference;
 
     public DeathEventIssuerBase(KubernetesClient client) {
         this.client = client;
@@ -33,16 +35,27 @@ public class DeathEventIssuerBase implements DeathEventIssuer {
     @Override
     public void issueOperatorDeathEvent(Event event) {
         event.getMetadata().setNamespace(client.getNamespace());
-        Pod pod = client.pods().inNamespace(client.getNamespace()).withName(EntandoOperatorSpiConfig.getControllerPodName()).get();
-        event.setInvolvedObject(new ObjectReferenceBuilder()
-                .withName(pod.getMetadata().getName())
-                .withNamespace(pod.getMetadata().getNamespace())
-                .withKind(pod.getKind())
-                .withApiVersion(pod.getApiVersion())
-                .withUid(pod.getMetadata().getUid())
-                .withResourceVersion(pod.getMetadata().getResourceVersion())
-                .build());
+        event.setInvolvedObject(getControllerPodReference());
         event.getInvolvedObject().setNamespace(client.getNamespace());
+        //The container is about to restart, so this event is sent immediately
         client.v1().events().inNamespace(client.getNamespace()).createOrReplace(event);
     }
+
+    /**
+     * The controller pod does not change for as long as this process lives, so it is only looked up once.
+     */
+    private ObjectReference getControllerPodReference() {
+        if (controllerPodReference == null) {
+            Pod pod = client.pods().inNamespace(client.getNamespace()).withName(EntandoOperatorSpiConfig.getControllerPodName()).get();
+            controllerPodReference = new ObjectReferenceBuilder()
+                    .withName(pod.getMetadata().getName())
+                    .withNamespace(pod.getMetadata().getNamespace())
+                    .withKind(pod.getKind())
+                    .withApiVersion(pod.getApiVersion())
+                    .withUid(pod.getMetadata().getUid())
+                    .withResourceVersion(pod.getMetadata().getResourceVersion())
+                    .build();
+        }
+        return new ObjectReferenceBuilder(controllerPodReference).build();
+    }
 }
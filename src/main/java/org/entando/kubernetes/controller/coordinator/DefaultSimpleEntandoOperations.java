@@ -17,33 +17,30 @@
 package org.entando.kubernetes.controller.coordinator;
 
 import static java.lang.String.format;
-import static org.entando.kubernetes.controller.spi.common.ExceptionUtils.interruptionSafe;
 import static org.entando.kubernetes.controller.spi.common.ExceptionUtils.ioSafe;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.kubernetes.api.model.ListOptions;
-import io.fabric8.kubernetes.api.model.Pod;
-import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
-import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
 import io.fabric8.kubernetes.client.dsl.internal.RawCustomResourceOperationsImpl;
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
-import org.entando.kubernetes.controller.spi.common.PodResult;
-import org.entando.kubernetes.controller.spi.common.PodResult.State;
 
 public class DefaultSimpleEntandoOperations extends DeathEventIssuerBase implements SimpleEntandoOperations {
 
@@ -52,34 +49,70 @@ public class DefaultSimpleEntandoOperations extends DeathEventIssuerBase impleme
     private final RawCustomResourceOperationsImpl operations;
     private final boolean anyNamespace;
     private final CustomResourceDefinitionContext definitionContext;
+    private final EntandoResourceStore resourceStore;
+    private final Set<String> namespaceFilter;
+    private final WatchReconnectGovernor reconnectGovernor;
 
     public DefaultSimpleEntandoOperations(KubernetesClient client, CustomResourceDefinitionContext definitionContext,
-            RawCustomResourceOperationsImpl operations, boolean anyNamespace) {
+            RawCustomResourceOperationsImpl operations, boolean anyNamespace, WatchReconnectGovernor reconnectGovernor) {
+        this(client, definitionContext, operations, anyNamespace, new EntandoResourceStore(), reconnectGovernor);
+    }
+
+    public DefaultSimpleEntandoOperations(KubernetesClient client, CustomResourceDefinitionContext definitionContext,
+            RawCustomResourceOperationsImpl operations, boolean anyNamespace, EntandoResourceStore resourceStore,
+            WatchReconnectGovernor reconnectGovernor) {
+        this(client, definitionContext, operations, anyNamespace, resourceStore, null, reconnectGovernor);
+    }
+
+    private DefaultSimpleEntandoOperations(KubernetesClient client, CustomResourceDefinitionContext definitionContext,
+            RawCustomResourceOperationsImpl operations, boolean anyNamespace, EntandoResourceStore resourceStore,
+            Set<String> namespaceFilter, WatchReconnectGovernor reconnectGovernor) {
         super(client);
         this.definitionContext = definitionContext;
         this.operations = operations;
         this.anyNamespace = anyNamespace;
+        this.resourceStore = resourceStore;
+        this.namespaceFilter = namespaceFilter;
+        this.reconnectGovernor = reconnectGovernor;
     }
 
     @Override
     public SimpleEntandoOperations inNamespace(String namespace) {
-        return new DefaultSimpleEntandoOperations(client, definitionContext, operations.inNamespace(namespace), false);
+        return new DefaultSimpleEntandoOperations(client, definitionContext, operations.inNamespace(namespace), false, resourceStore,
+                reconnectGovernor);
     }
 
     @Override
     public SimpleEntandoOperations inAnyNamespace() {
-        return new DefaultSimpleEntandoOperations(client, getDefinitionContext(), operations.inAnyNamespace(), true);
+        return new DefaultSimpleEntandoOperations(client, getDefinitionContext(), operations.inAnyNamespace(), true, resourceStore,
+                reconnectGovernor);
+    }
+
+    @Override
+    public SimpleEntandoOperations inNamespaces(Set<String> namespaces) {
+        return new DefaultSimpleEntandoOperations(client, getDefinitionContext(), operations.inAnyNamespace(), true, resourceStore,
+                Set.copyOf(namespaces), reconnectGovernor);
     }
 
     @Override
-    public Watch watch(SerializedResourceWatcher observer) {
+    public EntandoResourceStore getResourceStore() {
+        return resourceStore;
+    }
+
+    @Override
+    public Watch watch(SerializedResourceWatcher observer, String resourceVersion) {
         Function<CustomResourceStringWatcher, Watch> restartingAction = customResourceWatcher -> {
+            //Resume from the last resourceVersion seen and ask for bookmarks to keep it current while nothing changes
+            final ListOptions listOptions = new ListOptionsBuilder()
+                    .withResourceVersion(customResourceWatcher.getLastResourceVersion())
+                    .withAllowWatchBookmarks(true)
+                    .build();
             try {
                 if (anyNamespace) {
-                    return operations.watch((Map<String, String>) null, null, customResourceWatcher);
+                    return operations.watch((String) null, null, null, listOptions, customResourceWatcher);
                 } else {
                     return operations
-                            .watch(operations.getNamespace(), null, null, (ListOptions) null, customResourceWatcher);
+                            .watch(operations.getNamespace(), null, null, listOptions, customResourceWatcher);
                 }
             } catch (IOException e) {
                 LOGGER.log(Level.SEVERE, e,
@@ -88,14 +121,116 @@ public class DefaultSimpleEntandoOperations extends DeathEventIssuerBase impleme
                 throw new IllegalStateException();
             }
         };
-        return new CustomResourceStringWatcher(observer, definitionContext, restartingAction, this);
+        //Keep the store up to date before the observer gets to see the event
+        final SerializedResourceWatcher storeUpdatingObserver = (action, resource) -> {
+            if (!isObserved(resource.getMetadata().getNamespace())) {
+                return;
+            }
+            resourceStore.apply(action, resource);
+            observer.eventReceived(action, resource);
+        };
+        return new CustomResourceStringWatcher(storeUpdatingObserver, definitionContext, restartingAction, this, reconnectGovernor,
+                resourceVersion);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public List<SerializedEntandoResource> list() {
-        final List<Map<String, Object>> items = (List<Map<String, Object>>) operations.list().get("items");
-        return items.stream().map(this::toResource).collect(Collectors.toList());
+        final List<SerializedEntandoResource> resources = new ArrayList<>();
+        listInPages((page, changed) -> resources.addAll(page), deleted -> {
+        });
+        return resources;
+    }
+
+    @Override
+    public String relistInPages(Consumer<List<SerializedEntandoResource>> pageConsumer,
+            Consumer<List<SerializedEntandoResource>> deletionConsumer) {
+        return listInPages((page, changed) -> pageConsumer.accept(changed), deletionConsumer);
+    }
+
+    /**
+     * Hands each page to the pageConsumer together with the resources on it that were added or modified compared to the store.
+     */
+    private String listInPages(BiConsumer<List<SerializedEntandoResource>, List<SerializedEntandoResource>> pageConsumer,
+            Consumer<List<SerializedEntandoResource>> deletionConsumer) {
+        EntandoResourceStore.Replacement replacement = resourceStore.startReplacement(scope());
+        String continueToken = null;
+        while (true) {
+            final Map<String, Object> page;
+            try {
+                page = operations.list(pageOptions(continueToken));
+            } catch (KubernetesClientException e) {
+                if (continueToken == null || !CoordinatorUtils.isHttpGone(e)) {
+                    throw e;
+                }
+                //The snapshot behind the continue token has been compacted away, so we start over from a fresh one
+                LOGGER.log(Level.INFO, () -> format("The list of '%s' expired before the last page arrived. Listing it again.",
+                        definitionContext.getName()));
+                replacement = resourceStore.startReplacement(scope());
+                continueToken = null;
+                continue;
+            }
+            CoordinatorMetrics.increment("entando_list_pages", "kind", definitionContext.getKind());
+            final List<SerializedEntandoResource> resources = toResources(page);
+            pageConsumer.accept(resources, replacement.applyPage(resources));
+            continueToken = continueTokenOf(page);
+            if (continueToken == null) {
+                final String listResourceVersion = resourceVersionOf(page);
+                deletionConsumer.accept(replacement.complete(listResourceVersion));
+                return listResourceVersion;
+            }
+        }
+    }
+
+    /**
+     * Only the first page may be served from the watch cache. The following pages come from the snapshot the continue token
+     * refers to.
+     */
+    private static ListOptions pageOptions(String continueToken) {
+        final ListOptionsBuilder builder = new ListOptionsBuilder();
+        final int pageSize = ControllerCoordinatorConfig.getListPageSize();
+        if (pageSize > 0) {
+            builder.withLimit((long) pageSize);
+        }
+        if (continueToken != null) {
+            builder.withContinue(continueToken);
+        } else if (ControllerCoordinatorConfig.isListFromWatchCache()) {
+            builder.withResourceVersion("0");
+        }
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SerializedEntandoResource> toResources(Map<String, Object> list) {
+        final List<Map<String, Object>> items = (List<Map<String, Object>>) list.get("items");
+        return items.stream().filter(this::isObserved).map(this::toResource).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean isObserved(Map<String, Object> item) {
+        return namespaceFilter == null || isObserved((String) ((Map<String, Object>) item.get("metadata")).get("namespace"));
+    }
+
+    private boolean isObserved(String namespace) {
+        return namespaceFilter == null || namespaceFilter.contains(namespace);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String resourceVersionOf(Map<String, Object> list) {
+        return Optional.ofNullable((Map<String, Object>) list.get("metadata"))
+                .map(metadata -> (String) metadata.get("resourceVersion"))
+                .orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String continueTokenOf(Map<String, Object> list) {
+        return Optional.ofNullable((Map<String, Object>) list.get("metadata"))
+                .map(metadata -> (String) metadata.get("continue"))
+                .filter(token -> !token.isEmpty())
+                .orElse(null);
+    }
+
+    private String scope() {
+        return anyNamespace ? null : operations.getNamespace();
     }
 
     @Override
@@ -103,24 +238,42 @@ public class DefaultSimpleEntandoOperations extends DeathEventIssuerBase impleme
         return editAnnotations(r, a -> a.remove(name));
     }
 
-    @SuppressWarnings("unchecked")
     private SerializedEntandoResource editAnnotations(SerializedEntandoResource r, Consumer<Map<String, Object>> editAction) {
         return ioSafe(() -> {
-            final Map<String, Object> map = operations.get(r.getMetadata().getNamespace(), r.getMetadata().getName());
-            final Map<String, Object> metadata = (Map<String, Object>) map.get("metadata");
-            final Map<String, Object> annotations = (Map<String, Object>) metadata
-                    .computeIfAbsent("annotations", key -> new HashMap<String, String>());
-            editAction.accept(annotations);
-            operations.inNamespace(r.getMetadata().getNamespace()).withName(r.getMetadata().getName()).edit(map);
-            return this.toResource(map);
+            //Start from the cached state. If it turns out to be stale, the server will tell us and we retry with a fresh copy
+            final Map<String, Object> cached = resourceStore.get(r.getMetadata().getNamespace(), r.getMetadata().getName())
+                    .map(SerializedResourceCodec::toMap)
+                    .orElse(null);
+            SerializedEntandoResource edited;
+            try {
+                edited = editAnnotations(r, editAction,
+                        cached == null ? operations.get(r.getMetadata().getNamespace(), r.getMetadata().getName()) : cached);
+            } catch (KubernetesClientException e) {
+                if (cached == null || e.getCode() != HttpURLConnection.HTTP_CONFLICT) {
+                    throw e;
+                }
+                edited = editAnnotations(r, editAction, operations.get(r.getMetadata().getNamespace(), r.getMetadata().getName()));
+            }
+            resourceStore.upsert(edited);
+            return edited;
         });
     }
 
+    @SuppressWarnings("unchecked")
+    private SerializedEntandoResource editAnnotations(SerializedEntandoResource r, Consumer<Map<String, Object>> editAction,
+            Map<String, Object> map) throws IOException {
+        final Map<String, Object> metadata = (Map<String, Object>) map.get("metadata");
+        final Map<String, Object> annotations = (Map<String, Object>) metadata
+                .computeIfAbsent("annotations", key -> new HashMap<String, String>());
+        editAction.accept(annotations);
+        return this.toResource(
+                operations.inNamespace(r.getMetadata().getNamespace()).withName(r.getMetadata().getName()).edit(map));
+    }
+
     private SerializedEntandoResource toResource(Map<String, Object> map) {
-        return ioSafe(() -> {
-            ObjectMapper objectMapper = new ObjectMapper();
-            return objectMapper.readValue(objectMapper.writeValueAsString(map), SerializedEntandoResource.class);
-        });
+        final SerializedEntandoResource resource = SerializedResourceCodec.fromMap(map);
+        resource.setDefinition(definitionContext);
+        return resource;
     }
 
     @Override
@@ -137,35 +290,4 @@ public class DefaultSimpleEntandoOperations extends DeathEventIssuerBase impleme
     public CustomResourceDefinitionContext getDefinitionContext() {
         return this.definitionContext;
     }
-
-    @Override
-    public void removeSuccessfullyCompletedPods(SerializedEntandoResource resource) throws TimeoutException {
-        String namespace = client.getNamespace();
-        FilterWatchListDeletable<Pod, PodList> podResource = client.pods().inNamespace(namespace).withLabels(
-                CoordinatorUtils.podLabelsFor(resource));
-        interruptionSafe(() -> {
-            waitForCompletionOfPods(podResource);
-            removePodsAndWait(podResource);
-            return null;
-        });
-    }
-
-    private void removePodsAndWait(FilterWatchListDeletable<Pod, PodList> podResource) throws InterruptedException {
-        podResource.delete();
-        podResource.waitUntilCondition(ignore -> podResource.list().getItems().isEmpty(),
-                ControllerCoordinatorConfig.getPodShutdownTimeoutSeconds(), TimeUnit.SECONDS);
-    }
-
-    private void waitForCompletionOfPods(FilterWatchListDeletable<Pod, PodList> podResource) throws InterruptedException {
-        try {
-            podResource.waitUntilCondition(
-                    ignored -> podResource.list().getItems().stream().allMatch(pod -> PodResult.of(pod).getState() == State.COMPLETED),
-                    ControllerCoordinatorConfig.getRemovalDelay(), TimeUnit.SECONDS);
-        } catch (KubernetesClientException e) {
-            LOGGER.log(Level.WARNING, e, () -> format(
-                    "Some pods remained active after the removal delay period. You can consider increasing the setting %s ",
-                    ControllerCoordinatorProperty.ENTANDO_K8S_CONTROLLER_REMOVAL_DELAY.getJvmSystemProperty()));
-        }
-    }
-
 }
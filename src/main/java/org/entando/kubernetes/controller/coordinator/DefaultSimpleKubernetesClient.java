@@ -18,41 +18,47 @@ package org.entando.kubernetes.controller.coordinator;
 
 import static java.lang.String.format;
 import static java.util.Optional.ofNullable;
-import static org.entando.kubernetes.controller.spi.common.ExceptionUtils.interruptionSafe;
 import static org.entando.kubernetes.controller.spi.common.ExceptionUtils.ioSafe;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
 import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.api.model.GenericKubernetesResource;
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
 import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinition;
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
-import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.WatcherException;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
 import io.fabric8.kubernetes.client.dsl.internal.RawCustomResourceOperationsImpl;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
 import org.entando.kubernetes.controller.spi.common.LabelNames;
 import org.entando.kubernetes.controller.spi.common.NameUtils;
@@ -70,10 +76,28 @@ public class DefaultSimpleKubernetesClient extends DeathEventIssuerBase implemen
     };
 
     Map<String, CustomResourceDefinitionContext> definitionContextMap = new ConcurrentHashMap<>();
+    private final Map<String, EntandoResourceStore> resourceStores = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> statusSubresources = new ConcurrentHashMap<>();
+    private final EventSink eventSink;
+    private final ControllerResourceCache<ConfigMap> configMapCache;
+    private final ControllerResourceCache<Secret> secretCache;
+    private final AtomicBoolean crdNameMapListenerRegistered = new AtomicBoolean();
+    private final WatchReconnectGovernor watchReconnectGovernor = new WatchReconnectGovernor();
+    private DeployerPodIndex deployerPodIndex;
 
     public DefaultSimpleKubernetesClient(KubernetesClient client) {
         super(client);
-
+        this.eventSink = new EventSink(client);
+        this.configMapCache = new ControllerResourceCache<>("configmaps",
+                name -> client.configMaps().inNamespace(getControllerNamespace()).withName(name).fromServer().get(),
+                (name, watcher) -> client.configMaps().inNamespace(getControllerNamespace()).withName(name).watch(watcher),
+                configMap -> new ConfigMapBuilder(configMap).build(),
+                this, watchReconnectGovernor);
+        this.secretCache = new ControllerResourceCache<>("secrets",
+                name -> client.secrets().inNamespace(getControllerNamespace()).withName(name).fromServer().get(),
+                (name, watcher) -> client.secrets().inNamespace(getControllerNamespace()).withName(name).watch(watcher),
+                secret -> new SecretBuilder(secret).build(),
+                this, watchReconnectGovernor);
     }
 
     @Override
@@ -113,7 +137,7 @@ public class DefaultSimpleKubernetesClient extends DeathEventIssuerBase implemen
                 .withApiVersion(customResource.getApiVersion())
                 .withFieldPath("status")
                 .endInvolvedObject();
-        client.v1().events().inNamespace(customResource.getMetadata().getNamespace()).create(eventPopulator.apply(doneableEvent).build());
+        eventSink.emit(eventPopulator.apply(doneableEvent).build());
         return ioSafe(() -> {
             SerializedEntandoResource ser = customResource;
             CustomResourceDefinitionContext definition = Optional.ofNullable(ser.getDefinition()).orElse(
@@ -122,16 +146,112 @@ public class DefaultSimpleKubernetesClient extends DeathEventIssuerBase implemen
             RawCustomResourceOperationsImpl resource = client.customResource(definition)
                     .inNamespace(customResource.getMetadata().getNamespace())
                     .withName(customResource.getMetadata().getName());
-            final ObjectMapper objectMapper = new ObjectMapper();
-            ser = objectMapper.readValue(objectMapper.writeValueAsString(resource.get()), SerializedEntandoResource.class);
-            ser.setDefinition(definition);
-            consumer.accept(ser);
-            final Map<String, Object> map = resource.updateStatus(objectMapper.writeValueAsString(ser));
-            return objectMapper.readValue(objectMapper.writeValueAsString(map), SerializedEntandoResource.class);
+            final EntandoResourceStore store = storeFor(definition);
+            //Avoid the GET if the watch has already given us the latest state
+            final Optional<SerializedEntandoResource> cached = store
+                    .get(customResource.getMetadata().getNamespace(), customResource.getMetadata().getName());
+            if (hasStatusSubresource(definition)) {
+                //The consumer is applied to a copy, so as not to modify the cache
+                final SerializedEntandoResource patched = patchStatus(definition, copyOf(cached.orElse(customResource)), consumer);
+                store.upsert(patched);
+                return patched;
+            }
+            SerializedEntandoResource updated;
+            try {
+                updated = updateStatus(resource, definition, cached.map(DefaultSimpleKubernetesClient::copyOf)
+                        .orElseGet(() -> fetch(resource, definition)), consumer);
+            } catch (KubernetesClientException e) {
+                if (cached.isEmpty() || e.getCode() != HttpURLConnection.HTTP_CONFLICT) {
+                    throw e;
+                }
+                //The cached state was stale
+                updated = updateStatus(resource, definition, fetch(resource, definition), consumer);
+            }
+            store.upsert(updated);
+            return updated;
         });
     }
 
+    /**
+     * Sends only the entries of the status that the consumer changed as a JSON merge patch to the status subresource. A merge
+     * patch does not carry the resourceVersion, so it does not fail when the resource was modified concurrently, and the
+     * response already contains the patched resource. Failures are not retried here, so as not to hold up the launch lane. The
+     * work queue retries the event with its own backoff instead.
+     */
+    private SerializedEntandoResource patchStatus(CustomResourceDefinitionContext definition, SerializedEntandoResource base,
+            Consumer<SerializedEntandoResource> consumer) {
+        final Map<String, Object> original = SerializedResourceCodec.toMap(base);
+        base.setDefinition(definition);
+        consumer.accept(base);
+        final GenericKubernetesResource patch = Serialization.unmarshal(SerializedResourceCodec.toStatusMergePatch(original, base),
+                GenericKubernetesResource.class);
+        patch.setApiVersion(base.getApiVersion());
+        patch.setKind(base.getKind());
+        patch.setMetadata(new ObjectMetaBuilder()
+                .withName(base.getMetadata().getName())
+                .withNamespace(base.getMetadata().getNamespace())
+                .build());
+        final GenericKubernetesResource patched = client.genericKubernetesResources(definition)
+                .inNamespace(base.getMetadata().getNamespace())
+                .withName(base.getMetadata().getName())
+                .patchStatus(patch);
+        final SerializedEntandoResource result = SerializedResourceCodec.read(Serialization.asJson(patched));
+        result.setDefinition(definition);
+        return result;
+    }
+
+    /**
+     * Only a CustomResourceDefinition without a status subresource has its status updated along with the rest of the resource.
+     */
+    private boolean hasStatusSubresource(CustomResourceDefinitionContext definition) {
+        return statusSubresources.computeIfAbsent(definition.getName(), name ->
+                ofNullable(client.apiextensions().v1().customResourceDefinitions().withName(name).get())
+                        .map(crd -> crd.getSpec().getVersions().stream()
+                                .filter(version -> version.getName().equals(definition.getVersion()))
+                                .anyMatch(version -> version.getSubresources() != null && version.getSubresources().getStatus() != null))
+                        //If the CRD cannot be found, assume the status subresource that all the Entando CRDs have
+                        .orElse(true));
+    }
+
+    private static SerializedEntandoResource copyOf(SerializedEntandoResource resource) {
+        return SerializedResourceCodec.fromMap(SerializedResourceCodec.toMap(resource));
+    }
+
+    private SerializedEntandoResource fetch(RawCustomResourceOperationsImpl resource, CustomResourceDefinitionContext definition) {
+        final SerializedEntandoResource ser = SerializedResourceCodec.fromMap(resource.get());
+        ser.setDefinition(definition);
+        return ser;
+    }
+
+    private SerializedEntandoResource updateStatus(RawCustomResourceOperationsImpl resource, CustomResourceDefinitionContext definition,
+            SerializedEntandoResource ser, Consumer<SerializedEntandoResource> consumer) throws IOException {
+        ser.setDefinition(definition);
+        consumer.accept(ser);
+        final SerializedEntandoResource updated = SerializedResourceCodec.fromMap(
+                resource.updateStatus(SerializedResourceCodec.toJson(ser)));
+        updated.setDefinition(definition);
+        return updated;
+    }
+
+    private EntandoResourceStore storeFor(CustomResourceDefinitionContext definition) {
+        return resourceStores.computeIfAbsent(definition.getName(), key -> new EntandoResourceStore());
+    }
+
     private CustomResourceDefinitionContext resolveDefinitionContext(SerializedEntandoResource resource) {
+        if (crdNameMapListenerRegistered.compareAndSet(false, true)) {
+            //The contexts are derived from the CRD name map, so they are resolved again when it changes
+            configMapCache.addListener(CoordinatorUtils.ENTANDO_CRD_NAMES_CONFIGMAP_NAME, new Watcher<>() {
+                @Override
+                public void eventReceived(Action action, ConfigMap resource) {
+                    definitionContextMap.clear();
+                }
+
+                @Override
+                public void onClose(WatcherException cause) {
+                    //The cache restarts its own watch
+                }
+            });
+        }
         return definitionContextMap.computeIfAbsent(CoordinatorUtils.keyOf(resource), key ->
                 CustomResourceDefinitionContext.fromCrd(client.apiextensions().v1().customResourceDefinitions()
                         .withName(ofNullable(
@@ -147,12 +267,12 @@ public class DefaultSimpleKubernetesClient extends DeathEventIssuerBase implemen
 
     @Override
     public Secret loadControllerSecret(String s) {
-        return client.secrets().inNamespace(getControllerNamespace()).withName(s).fromServer().get();
+        return secretCache.get(s);
     }
 
     @Override
     public Secret overwriteControllerSecret(Secret secret) {
-        return client.secrets().inNamespace(getControllerNamespace()).createOrReplace(secret);
+        return secretCache.put(client.secrets().inNamespace(getControllerNamespace()).createOrReplace(secret));
     }
 
     @Override
@@ -161,36 +281,136 @@ public class DefaultSimpleKubernetesClient extends DeathEventIssuerBase implemen
     }
 
     @Override
-    public void removePodsAndWait(String namespace, Map<String, String> labels) throws TimeoutException {
-        FilterWatchListDeletable<Pod, PodList> podResource = client.pods().inNamespace(namespace).withLabels(labels);
-        podResource.delete();
-        interruptionSafe(() ->
-                podResource.waitUntilCondition(pod -> podResource.list().getItems().isEmpty(),
-                        ControllerCoordinatorConfig.getPodShutdownTimeoutSeconds(), TimeUnit.SECONDS));
+    public void deletePods(String namespace, Collection<Pod> pods) {
+        client.pods().inNamespace(namespace).delete(new ArrayList<>(pods));
+    }
+
+    @Override
+    public CompletionStage<Void> removePods(String namespace, Map<String, String> labels) {
+        final DeployerPodIndex index = getDeployerPodIndex();
+        if (index.covers(namespace, labels)) {
+            client.pods().inNamespace(namespace).withLabels(labels).delete();
+            return awaitRemoval(index.whenGone(labels), namespace, labels);
+        }
+        //Pods the index does not see are only tracked until they are gone
+        final DeployerPodIndex transientIndex = new DeployerPodIndex(namespace, labels,
+                () -> listPods(namespace, labels),
+                (resourceVersion, watcher) -> watchPods(namespace, labels, resourceVersion, watcher),
+                this, watchReconnectGovernor);
+        client.pods().inNamespace(namespace).withLabels(labels).delete();
+        return awaitRemoval(transientIndex.whenGone(labels), namespace, labels).whenComplete((ignored, e) -> transientIndex.close());
+    }
+
+    private CompletableFuture<Void> awaitRemoval(CompletableFuture<Void> gone, String namespace, Map<String, String> labels) {
+        return CoordinatorUtils.withTimeout(gone, ControllerCoordinatorConfig.getPodShutdownTimeoutSeconds(),
+                format("the pods in %s with the labels %s to be removed", namespace, labels));
+    }
+
+    @Override
+    public void close() {
+        eventSink.close();
+        configMapCache.close();
+        secretCache.close();
+        watchReconnectGovernor.shutDown();
+    }
+
+    @Override
+    public WatchReconnectGovernor getWatchReconnectGovernor() {
+        return watchReconnectGovernor;
+    }
+
+    @Override
+    public synchronized DeployerPodIndex getDeployerPodIndex() {
+        if (deployerPodIndex == null) {
+            deployerPodIndex = new DeployerPodIndex(this);
+        }
+        return deployerPodIndex;
+    }
+
+    @Override
+    public List<Pod> loadPods(String namespace, Map<String, String> labels) {
+        return listPods(namespace, labels).getItems();
+    }
+
+    @Override
+    public PodList listPods(String namespace, Map<String, String> labels) {
+        return client.pods().inNamespace(namespace).withLabels(labels).list();
+    }
+
+    @Override
+    public Watch watchPods(String namespace, Map<String, String> labels, String resourceVersion, Watcher<Pod> podWatcher) {
+        return client.pods().inNamespace(namespace).withLabels(labels)
+                .watch(new ListOptionsBuilder().withResourceVersion(resourceVersion).build(), podWatcher);
     }
 
     @Override
     public ConfigMap findOrCreateControllerConfigMap(String name) {
         return Objects.requireNonNullElseGet(
-                this.client.configMaps().inNamespace(getControllerNamespace()).withName(name).fromServer().get(),
+                configMapCache.get(name),
                 () ->
-                        this.client.configMaps().inNamespace(getControllerNamespace())
+                        configMapCache.put(this.client.configMaps().inNamespace(getControllerNamespace())
                                 .create(new ConfigMapBuilder()
                                         .withNewMetadata()
                                         .withNamespace(getControllerNamespace())
                                         .withName(name)
                                         .endMetadata()
-                                        .build()));
+                                        .build())));
     }
 
     @Override
     public ConfigMap patchControllerConfigMap(ConfigMap configMap) {
-        return client.configMaps().inNamespace(getControllerNamespace()).withName(configMap.getMetadata().getName()).patch(configMap);
+        return configMapCache.put(
+                client.configMaps().inNamespace(getControllerNamespace()).withName(configMap.getMetadata().getName()).patch(configMap));
+    }
+
+    @Override
+    public List<ConfigMap> loadControllerConfigMaps(Map<String, String> labels) {
+        return client.configMaps().inNamespace(getControllerNamespace()).withLabels(labels).list().getItems();
+    }
+
+    @Override
+    public void deleteControllerConfigMap(String name) {
+        client.configMaps().inNamespace(getControllerNamespace()).withName(name).delete();
+        configMapCache.remove(name);
     }
 
     @Override
     public void watchControllerConfigMap(String name, Watcher<ConfigMap> configMapWatcher) {
-        this.client.configMaps().inNamespace(getControllerNamespace()).withName(name).watch(configMapWatcher);
+        //Shares the watch that keeps the cache up to date
+        configMapCache.addListener(name, configMapWatcher);
+    }
+
+    @Override
+    public void watchControllerSecret(String name, Watcher<Secret> secretWatcher) {
+        //Shares the watch that keeps the cache up to date
+        secretCache.addListener(name, secretWatcher);
+    }
+
+    @Override
+    public Lease loadControllerLease(String name) {
+        return client.leases().inNamespace(getControllerNamespace()).withName(name).get();
+    }
+
+    @Override
+    public Lease createControllerLease(Lease lease) {
+        return client.leases().inNamespace(getControllerNamespace()).create(lease);
+    }
+
+    @Override
+    public Lease updateControllerLease(Lease lease) {
+        return client.leases().inNamespace(getControllerNamespace()).withName(lease.getMetadata().getName())
+                .lockResourceVersion(lease.getMetadata().getResourceVersion())
+                .replace(lease);
+    }
+
+    @Override
+    public List<Lease> loadControllerLeases(Map<String, String> labels) {
+        return client.leases().inNamespace(getControllerNamespace()).withLabels(labels).list().getItems();
+    }
+
+    @Override
+    public void deleteControllerLease(String name) {
+        client.leases().inNamespace(getControllerNamespace()).withName(name).delete();
     }
 
     @Override
@@ -218,20 +438,21 @@ public class DefaultSimpleKubernetesClient extends DeathEventIssuerBase implemen
                 () -> client.apiextensions().v1().customResourceDefinitions().withLabel(LabelNames.CRD_OF_INTEREST.getName())
                         .list()
                         .getItems(),
-                () -> ControllerCoordinatorConfig.getNamesOfCrdsOfInterest()
-                        .stream()
-                        .map(s -> client.apiextensions().v1().customResourceDefinitions().withName(s).fromServer().get())
-                        .collect(Collectors.toList()));
+                //One request per CRD, so they are made concurrently
+                () -> CoordinatorExecutors.inParallel("crd-lookup", ControllerCoordinatorConfig.getNamesOfCrdsOfInterest(),
+                        s -> client.apiextensions().v1().customResourceDefinitions().withName(s).fromServer().get()));
     }
 
     @Override
     public SimpleEntandoOperations getOperations(CustomResourceDefinitionContext context) {
-        return new DefaultSimpleEntandoOperations(client, context, client.customResource(context), true);
+        return new DefaultSimpleEntandoOperations(client, context, client.customResource(context), true, storeFor(context),
+                watchReconnectGovernor);
     }
 
     @Override
     public void deleteControllerSecret(String secretName) {
         client.secrets().inNamespace(getControllerNamespace()).withName(secretName).delete();
+        secretCache.remove(secretName);
     }
 
     public List<Event> listEventsFor(EntandoCustomResource resource) {
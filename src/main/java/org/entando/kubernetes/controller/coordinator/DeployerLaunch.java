@@ -0,0 +1,204 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
+
+/**
+ * The launch of one deployer pod, modelled as a sequence of states. Every state either does a short piece of work on the launch
+ * lane, or waits for an admission permit or a pod index event. No thread is held while waiting, and a launch that has been
+ * superseded by a newer version of its resource can be cancelled in any state.
+ */
+public class DeployerLaunch {
+
+    private static final Logger LOGGER = Logger.getLogger(DeployerLaunch.class.getName());
+
+    /**
+     * The states of a launch, in the order they are passed through.
+     */
+    public enum State {
+        WAITING_FOR_SLOT,
+        PREPARING,
+        REMOVING_OBSOLETE_PODS,
+        STARTING_POD,
+        STARTED,
+        CANCELLED,
+        FAILED;
+
+        public boolean isFinal() {
+            return this == STARTED || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    private final Action action;
+    private final SerializedEntandoResource resource;
+    private final SimpleKubernetesClient client;
+    private final DeployerPodAdmission admission;
+    private final ControllerExecutor controllerExecutor;
+    private final Executor executor;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private volatile State state;
+    private volatile long stateEnteredAt;
+    private volatile boolean cancelled;
+    private volatile CompletableFuture<?> currentWait;
+    private volatile DeployerPodAdmission.Permit permit;
+
+    /**
+     * Creates a launch for the given resource.
+     *
+     * @param executor runs the steps of the launch. Typically the launch lane with the priority of the resource.
+     */
+    public DeployerLaunch(Action action, SerializedEntandoResource resource, SimpleKubernetesClient client,
+            DeployerPodAdmission admission, ControllerExecutor controllerExecutor, Executor executor) {
+        this.action = action;
+        this.resource = resource;
+        this.client = client;
+        this.admission = admission;
+        this.controllerExecutor = controllerExecutor;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the launch. The returned stage completes once the pod has been started, or fails once the launch has failed or
+     * has been cancelled.
+     */
+    public CompletionStage<Void> start() {
+        enter(State.WAITING_FOR_SLOT);
+        resumeWhen(admission.admit(resource), granted -> prepare());
+        return result;
+    }
+
+    /**
+     * Stops the launch at the next state boundary. Waiting states are abandoned immediately. A step that is already executing
+     * is allowed to finish, so the launch never completes while it could still have an effect.
+     */
+    public void cancel() {
+        cancelled = true;
+        final CompletableFuture<?> wait = currentWait;
+        if (wait != null) {
+            wait.cancel(false);
+        }
+    }
+
+    public SerializedEntandoResource getResource() {
+        return resource;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private void prepare() {
+        enter(State.PREPARING);
+        final SerializedEntandoResource requested = client.updatePhase(resource, EntandoDeploymentPhase.REQUESTED);
+        enter(State.REMOVING_OBSOLETE_PODS);
+        resumeWhen(controllerExecutor.removeObsoleteControllerPods(requested).toCompletableFuture(),
+                ignored -> startPod(requested));
+    }
+
+    private void startPod(SerializedEntandoResource requested) {
+        enter(State.STARTING_POD);
+        final Pod pod = controllerExecutor.startPod(action, requested);
+        permit.podStarted(pod.getMetadata().getName());
+        enter(State.STARTED);
+        result.complete(null);
+    }
+
+    /**
+     * Continues with the next step on the executor once the given future completes, unless the launch has been cancelled in the
+     * meantime.
+     */
+    private <T> void resumeWhen(CompletableFuture<T> wait, Consumer<T> nextStep) {
+        currentWait = wait;
+        if (cancelled) {
+            wait.cancel(false);
+        }
+        wait.whenComplete((value, throwable) -> {
+            if (value instanceof DeployerPodAdmission.Permit) {
+                //Bound before anything else, so that it is released whatever happens next
+                this.permit = (DeployerPodAdmission.Permit) value;
+            }
+            if (cancelled) {
+                //Don't wait for the executor just to give up
+                stop(State.CANCELLED, new CancellationException(format("The launch for %s was superseded", describe())));
+            } else if (throwable != null) {
+                stop(State.FAILED, throwable);
+            } else {
+                executor.execute(() -> runStep(nextStep, value));
+            }
+        });
+    }
+
+    private <T> void runStep(Consumer<T> step, T value) {
+        if (cancelled) {
+            stop(State.CANCELLED, new CancellationException(format("The launch for %s was superseded", describe())));
+            return;
+        }
+        try {
+            step.accept(value);
+        } catch (RuntimeException e) {
+            stop(State.FAILED, e);
+        }
+    }
+
+    private synchronized void stop(State finalState, Throwable cause) {
+        if (state.isFinal()) {
+            return;
+        }
+        if (permit != null) {
+            permit.release();
+        }
+        enter(finalState);
+        if (finalState == State.FAILED) {
+            LOGGER.log(Level.SEVERE, cause, () -> format("Could not start the controller image for %s", describe()));
+        } else {
+            LOGGER.log(Level.INFO, () -> format("Cancelled the launch for %s", describe()));
+        }
+        result.completeExceptionally(cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause);
+    }
+
+    private synchronized void enter(State next) {
+        final long now = System.currentTimeMillis();
+        if (state != null) {
+            CoordinatorMetrics.recordMillis("entando_launch_state_duration", now - stateEnteredAt,
+                    "state", state.name().toLowerCase(Locale.ROOT));
+        }
+        if (next.isFinal()) {
+            CoordinatorMetrics.increment("entando_launches_total", "outcome", next.name().toLowerCase(Locale.ROOT));
+        }
+        this.state = next;
+        this.stateEnteredAt = now;
+    }
+
+    private String describe() {
+        return format("the %s %s/%s", resource.getKind(), resource.getMetadata().getNamespace(), resource.getMetadata().getName());
+    }
+}
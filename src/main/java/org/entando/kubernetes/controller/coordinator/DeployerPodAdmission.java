@@ -0,0 +1,236 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.entando.kubernetes.controller.spi.common.LabelNames;
+import org.entando.kubernetes.model.common.EntandoCustomResource;
+
+/**
+ * Limits the number of deployer pods running at the same time, globally and per namespace. Launches that would exceed either
+ * limit wait in a queue, ordered by priority with the same aging as the launch lane, until running deployer pods complete.
+ * A granted permit counts towards the limits from the moment it is granted until the DeployerPodIndex has seen its pod, or
+ * until it is released because the launch failed.
+ */
+public class DeployerPodAdmission {
+
+    private static final Logger LOGGER = Logger.getLogger(DeployerPodAdmission.class.getName());
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private final DeployerPodIndex podIndex;
+    private final int maximumRunning;
+    private final int maximumRunningPerNamespace;
+    private final long unboundPermitTimeoutMillis;
+    private final PriorityQueue<Permit> waiting = new PriorityQueue<>();
+    private final Set<Permit> granted = ConcurrentHashMap.newKeySet();
+
+    public DeployerPodAdmission(DeployerPodIndex podIndex) {
+        this(podIndex, ControllerCoordinatorConfig.getMaximumRunningDeployers(),
+                ControllerCoordinatorConfig.getMaximumRunningDeployersPerNamespace());
+    }
+
+    public DeployerPodAdmission(DeployerPodIndex podIndex, int maximumRunning, int maximumRunningPerNamespace) {
+        this.podIndex = podIndex;
+        this.maximumRunning = maximumRunning;
+        this.maximumRunningPerNamespace = maximumRunningPerNamespace;
+        //Allow for the removal of the previous deployer pods before the new pod is started
+        this.unboundPermitTimeoutMillis = TimeUnit.SECONDS.toMillis(ControllerCoordinatorConfig.getPodShutdownTimeoutSeconds() + 60L);
+        podIndex.addListener(this::drain);
+        CoordinatorMetrics.registerGauge("entando_deployer_admission_queue_depth", this::getQueueDepth);
+        CoordinatorMetrics.registerGauge("entando_deployer_admission_granted", granted::size);
+    }
+
+    /**
+     * Returns a future that completes with a permit once a deployer pod can be started for the given resource without exceeding
+     * the limits. Cancelling the future gives up the place in the queue.
+     */
+    public CompletableFuture<Permit> admit(EntandoCustomResource resource) {
+        final Permit permit = new Permit(resource);
+        synchronized (this) {
+            waiting.add(permit);
+        }
+        permit.future.whenComplete((granted, throwable) -> {
+            if (throwable != null) {
+                permit.release();
+            }
+        });
+        drain();
+        return permit.future;
+    }
+
+    public synchronized int getQueueDepth() {
+        return waiting.size();
+    }
+
+    public int getGrantedCount() {
+        return granted.size();
+    }
+
+    /**
+     * Grants as many waiting permits as the limits allow, in order of priority. A permit whose namespace is at its limit is
+     * skipped so that it does not hold up launches in other namespaces. The futures are completed outside of the lock, as their
+     * dependents may run on the current thread.
+     */
+    public void drain() {
+        final List<Permit> admitted = new ArrayList<>();
+        synchronized (this) {
+            expireBoundPermits();
+            final List<Permit> inOrder = new ArrayList<>(waiting);
+            Collections.sort(inOrder);
+            for (Permit permit : inOrder) {
+                if (granted.size() >= maximumRunning) {
+                    break;
+                }
+                if (hasCapacityFor(permit)) {
+                    waiting.remove(permit);
+                    permit.grantedAt = System.currentTimeMillis();
+                    granted.add(permit);
+                    admitted.add(permit);
+                }
+            }
+            if (!waiting.isEmpty() && admitted.isEmpty()) {
+                LOGGER.log(Level.FINE, () -> format("%s deployer pod launches are waiting for running deployers to complete",
+                        waiting.size()));
+            }
+        }
+        admitted.forEach(permit -> {
+            CoordinatorMetrics.recordMillis("entando_deployer_admission_wait", permit.grantedAt - permit.requestedAt,
+                    "priority", permit.priority.name().toLowerCase(Locale.ROOT));
+            if (!permit.future.complete(permit)) {
+                //Cancelled in the meantime
+                permit.release();
+            }
+        });
+    }
+
+    /**
+     * Permits whose pods have been observed are accounted for by the index from then on. Permits for pods that the index never
+     * observed are dropped once the pod could have been started, so that a missed event cannot block admission forever.
+     */
+    private void expireBoundPermits() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Permit> iterator = granted.iterator();
+        while (iterator.hasNext()) {
+            final Permit permit = iterator.next();
+            if ((permit.podName != null && podIndex.contains(permit.podName)) || now - permit.grantedAt > unboundPermitTimeoutMillis) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean hasCapacityFor(Permit permit) {
+        //A launch replaces the existing deployer pods of the same resource, so those do not count against it
+        final long runningGlobally = podIndex.countActive(pod -> !permit.isForPod(pod)) + granted.size();
+        if (runningGlobally >= maximumRunning) {
+            return false;
+        }
+        final long runningInNamespace = podIndex.countActive(
+                pod -> permit.namespace.equals(resourceNamespaceOf(pod)) && !permit.isForPod(pod))
+                + granted.stream().filter(other -> other.namespace.equals(permit.namespace)).count();
+        return runningInNamespace < maximumRunningPerNamespace;
+    }
+
+    private static String resourceNamespaceOf(Pod pod) {
+        return pod.getMetadata().getLabels() == null ? null : pod.getMetadata().getLabels().get(LabelNames.RESOURCE_NAMESPACE.getName());
+    }
+
+    private synchronized void release(Permit permit) {
+        waiting.remove(permit);
+        granted.remove(permit);
+    }
+
+    /**
+     * The right to start one deployer pod.
+     */
+    public class Permit implements Comparable<Permit> {
+
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+        private final String namespace;
+        private final Map<String, String> podLabels;
+        private final ProcessingPriority priority;
+        private final long requestedAt = System.currentTimeMillis();
+        private final long sortKey;
+        private final long sequence = SEQUENCE.incrementAndGet();
+        private volatile long grantedAt;
+        private volatile String podName;
+
+        private Permit(EntandoCustomResource resource) {
+            this.namespace = resource.getMetadata().getNamespace();
+            this.podLabels = CoordinatorUtils.podLabelsFor(resource);
+            this.priority = CoordinatorUtils.resolveProcessingPriority(resource);
+            this.sortKey = requestedAt - priority.getHeadStartMillis(
+                    TimeUnit.SECONDS.toMillis(ControllerCoordinatorConfig.getProcessingPriorityAgingSeconds()));
+        }
+
+        private boolean isForPod(Pod pod) {
+            return pod.getMetadata().getLabels() != null && podLabels.entrySet().stream()
+                    .allMatch(entry -> Objects.equals(entry.getValue(), pod.getMetadata().getLabels().get(entry.getKey())));
+        }
+
+        /**
+         * Binds this permit to the pod that was started with it. From then on the pod is counted by the index instead.
+         */
+        public void podStarted(String podName) {
+            this.podName = podName;
+            drain();
+        }
+
+        /**
+         * Gives the permit back without starting a pod, e.g. because the launch failed.
+         */
+        public void release() {
+            DeployerPodAdmission.this.release(this);
+            drain();
+        }
+
+        public ProcessingPriority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public int compareTo(Permit other) {
+            final int result = Long.compare(sortKey, other.sortKey);
+            return result == 0 ? Long.compare(sequence, other.sequence) : result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Permit && ((Permit) o).sequence == sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sequence);
+        }
+    }
+}
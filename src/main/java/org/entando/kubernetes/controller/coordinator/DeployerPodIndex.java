@@ -0,0 +1,224 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.ListMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.entando.kubernetes.controller.spi.common.LabelNames;
+
+/**
+ * A watch-fed view of the deployer pods in the controller namespace, so that the number of running deployers can be determined
+ * without listing pods on every launch, and so that waiting for pods to complete or disappear costs neither API calls nor threads.
+ */
+public class DeployerPodIndex implements RestartingWatcher<Pod> {
+
+    public static final String DEPLOYER = "deployer";
+    private final String namespace;
+    private final Map<String, String> labels;
+    private final Supplier<PodList> loader;
+    private final BiFunction<String, Watcher<Pod>, Watch> watchStarter;
+    private final DeathEventIssuer deathEventIssuer;
+    private final WatchReconnectGovernor reconnectGovernor;
+    private final Map<String, Pod> pods = new ConcurrentHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final List<PendingCondition> pendingConditions = new CopyOnWriteArrayList<>();
+    private final Supplier<Integer> runningPodsGauge;
+    private Watch watch;
+
+    /**
+     * Indexes all the deployer pods in the controller namespace. This is the index that reports the number of running deployer
+     * pods.
+     */
+    public DeployerPodIndex(SimpleKubernetesClient client) {
+        this(client.getControllerNamespace(), deployerLabels(),
+                () -> client.listPods(client.getControllerNamespace(), deployerLabels()),
+                (resourceVersion, watcher) -> client.watchPods(client.getControllerNamespace(), deployerLabels(), resourceVersion, watcher),
+                client, client.getWatchReconnectGovernor(), true);
+    }
+
+    /**
+     * Indexes the pods in the given namespace that carry all of the given labels. The watch is started from the resourceVersion
+     * of the list that the index was loaded from.
+     */
+    public DeployerPodIndex(String namespace, Map<String, String> labels, Supplier<PodList> loader,
+            BiFunction<String, Watcher<Pod>, Watch> watchStarter, DeathEventIssuer deathEventIssuer,
+            WatchReconnectGovernor reconnectGovernor) {
+        this(namespace, labels, loader, watchStarter, deathEventIssuer, reconnectGovernor, false);
+    }
+
+    private DeployerPodIndex(String namespace, Map<String, String> labels, Supplier<PodList> loader,
+            BiFunction<String, Watcher<Pod>, Watch> watchStarter, DeathEventIssuer deathEventIssuer,
+            WatchReconnectGovernor reconnectGovernor, boolean reportRunningPods) {
+        this.namespace = namespace;
+        this.labels = labels;
+        this.loader = loader;
+        this.watchStarter = watchStarter;
+        this.deathEventIssuer = deathEventIssuer;
+        this.reconnectGovernor = reconnectGovernor;
+        this.runningPodsGauge = reportRunningPods ? () -> countActive(pod -> true) : null;
+        getRestartingAction().run();
+        if (runningPodsGauge != null) {
+            CoordinatorMetrics.registerGauge("entando_deployer_pods_running", runningPodsGauge);
+        }
+    }
+
+    public static Map<String, String> deployerLabels() {
+        return Map.of(LabelNames.JOB_KIND.getName(), DEPLOYER);
+    }
+
+    public static boolean isActive(Pod pod) {
+        final String phase = Optional.ofNullable(pod.getStatus()).map(PodStatus::getPhase).orElse("Pending");
+        return !("Succeeded".equals(phase) || "Failed".equals(phase)) && pod.getMetadata().getDeletionTimestamp() == null;
+    }
+
+    /**
+     * Registers a listener to be notified whenever a deployer pod is added, modified or removed.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean contains(String podName) {
+        return pods.containsKey(podName);
+    }
+
+    /**
+     * Returns a snapshot of the indexed pods.
+     */
+    public List<Pod> getPods() {
+        return new ArrayList<>(pods.values());
+    }
+
+    public int countActive(Predicate<Pod> filter) {
+        return (int) pods.values().stream().filter(DeployerPodIndex::isActive).filter(filter).count();
+    }
+
+    /**
+     * Returns true if every pod in the given namespace with the given labels is visible to this index.
+     */
+    public boolean covers(String namespace, Map<String, String> labels) {
+        return this.namespace.equals(namespace) && labels.entrySet().containsAll(this.labels.entrySet());
+    }
+
+    /**
+     * Returns a future that completes once none of the indexed pods carry the given labels anymore.
+     */
+    public CompletableFuture<Void> whenGone(Map<String, String> labels) {
+        return when(labels, List::isEmpty);
+    }
+
+    private CompletableFuture<Void> when(Map<String, String> labels, Predicate<List<Pod>> condition) {
+        final PendingCondition pendingCondition = new PendingCondition(labels, condition);
+        pendingConditions.add(pendingCondition);
+        evaluatePendingConditions();
+        return pendingCondition.future;
+    }
+
+    private void evaluatePendingConditions() {
+        for (PendingCondition pendingCondition : pendingConditions) {
+            if (pendingCondition.future.isDone() || pendingCondition.isMet()) {
+                pendingConditions.remove(pendingCondition);
+                pendingCondition.future.complete(null);
+            }
+        }
+    }
+
+    @Override
+    public void eventReceived(Action action, Pod pod) {
+        if (action == Action.DELETED) {
+            pods.remove(pod.getMetadata().getName());
+        } else if (action == Action.ADDED || action == Action.MODIFIED) {
+            pods.put(pod.getMetadata().getName(), pod);
+        }
+        evaluatePendingConditions();
+        listeners.forEach(Runnable::run);
+    }
+
+    @Override
+    public Runnable getRestartingAction() {
+        return () -> {
+            final Map<String, Pod> current = new ConcurrentHashMap<>();
+            final PodList list = loader.get();
+            list.getItems().forEach(pod -> current.put(pod.getMetadata().getName(), pod));
+            pods.keySet().retainAll(current.keySet());
+            pods.putAll(current);
+            //Pick up from the list, so that the pods that changed in the meantime are not missed
+            this.watch = watchStarter.apply(Optional.ofNullable(list.getMetadata()).map(ListMeta::getResourceVersion).orElse(null), this);
+            evaluatePendingConditions();
+            listeners.forEach(Runnable::run);
+        };
+    }
+
+    public void close() {
+        Optional.ofNullable(watch).ifPresent(Watch::close);
+        pendingConditions.forEach(pendingCondition -> pendingCondition.future.cancel(false));
+        pendingConditions.clear();
+        if (runningPodsGauge != null) {
+            CoordinatorMetrics.unregisterGauge("entando_deployer_pods_running", runningPodsGauge);
+        }
+    }
+
+    @Override
+    public void issueOperatorDeathEvent(Event event) {
+        deathEventIssuer.issueOperatorDeathEvent(event);
+    }
+
+    @Override
+    public WatchReconnectGovernor getReconnectGovernor() {
+        return reconnectGovernor;
+    }
+
+    private class PendingCondition {
+
+        private final Map<String, String> labels;
+        private final Predicate<List<Pod>> condition;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingCondition(Map<String, String> labels, Predicate<List<Pod>> condition) {
+            this.labels = labels;
+            this.condition = condition;
+        }
+
+        private boolean isMet() {
+            return condition.test(pods.values().stream()
+                    .filter(pod -> Optional.ofNullable(pod.getMetadata().getLabels())
+                            .map(podLabels -> podLabels.entrySet().containsAll(labels.entrySet()))
+                            .orElse(false))
+                    .collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapEnvSource;
+import io.fabric8.kubernetes.api.model.EnvFromSource;
+import io.fabric8.kubernetes.api.model.EnvFromSourceBuilder;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.EnvVarSourceBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfigProperty;
+import org.entando.kubernetes.controller.spi.common.NameUtils;
+import org.entando.kubernetes.controller.support.common.EntandoImageResolver;
+
+/**
+ * Caches the parts of the deployer pod that are the same for every launch of a controller image: the environment variables
+ * passed on from the coordinator, the service account and the resolved image URI. The templates are discarded as soon as the
+ * docker image info ConfigMap or the operator config ConfigMap changes, as both affect how images are resolved.
+ */
+public class DeployerPodTemplates {
+
+    public static final String SHARED_ENV_CONFIGMAP_PREFIX = "entando-deployer-env-";
+    public static final Map<String, String> SHARED_ENV_LABELS = Map.of("entando.org/deployer-env", "true");
+    private static final Logger LOGGER = Logger.getLogger(DeployerPodTemplates.class.getName());
+    private final SimpleKubernetesClient client;
+    private final BooleanSupplier mayWrite;
+    private final AtomicReference<Generation> generation = new AtomicReference<>(new Generation(null));
+    private final AtomicReference<String> lastPublished = new AtomicReference<>();
+
+    public DeployerPodTemplates(SimpleKubernetesClient client, BooleanSupplier mayWrite) {
+        this.client = client;
+        this.mayWrite = mayWrite;
+    }
+
+    /**
+     * Returns the template for the given controller image. The image resolver can take image overrides from the resource's
+     * annotations, so resources with different image override annotations get different templates.
+     */
+    public Template templateFor(String imageName, SerializedEntandoResource resource) {
+        final ConfigMap imageInfo = client.loadDockerImageInfoConfigMap();
+        final String currentStamp = stampOf(imageInfo) + "|" + ConfigListener.getConfigVersion();
+        //The templates and the stamp they were built for are replaced together, so no template can outlive its stamp
+        final Map<String, Template> templates = generation.updateAndGet(
+                current -> Objects.equals(current.stamp, currentStamp) ? current : new Generation(currentStamp)).templates;
+        final String key = imageName + "|" + imageOverridesOf(resource);
+        final Template cached = templates.get(key);
+        if (cached != null) {
+            CoordinatorMetrics.increment("entando_cache_hits", "cache", "pod-templates");
+            return cached;
+        }
+        CoordinatorMetrics.increment("entando_cache_misses", "cache", "pod-templates");
+        if (!mayWrite.getAsBoolean()) {
+            //Not kept, so that the shared variables are published once this replica may write
+            return new Template(new EntandoImageResolver(imageInfo, resource).determineImageUri(imageName),
+                    ControllerCoordinatorConfig.getOperatorServiceAccount().orElse("default"), buildSharedEnvVars(), null);
+        }
+        //Built outside the map, as publishing the shared variables is a round trip to the server. Concurrent builds publish
+        //the same content hashed ConfigMap, and only the first template is kept.
+        final List<EnvVar> sharedEnvVars = buildSharedEnvVars();
+        final Template built = new Template(
+                new EntandoImageResolver(imageInfo, resource).determineImageUri(imageName),
+                ControllerCoordinatorConfig.getOperatorServiceAccount().orElse("default"),
+                sharedEnvVars,
+                publishSharedEnvVars(sharedEnvVars));
+        return Objects.requireNonNullElse(templates.putIfAbsent(key, built), built);
+    }
+
+    public int size() {
+        return generation.get().templates.size();
+    }
+
+    /**
+     * The resolver only consults the image override annotations, all of which name the image. Keying on those alone keeps
+     * unrelated annotations, such as kubectl's last-applied-configuration, from producing a template per resource.
+     */
+    private static Map<String, String> imageOverridesOf(SerializedEntandoResource resource) {
+        final Map<String, String> result = new TreeMap<>();
+        Optional.ofNullable(resource.getMetadata().getAnnotations()).orElse(Collections.emptyMap()).forEach((name, value) -> {
+            if (name.toLowerCase(Locale.ROOT).contains("image")) {
+                result.put(name, value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Writes the shared variables to a ConfigMap named after a hash of its content, so that pods started from an older template
+     * keep resolving the values they were started with. Falls back to inlining the variables if the ConfigMap cannot be written.
+     */
+    private String publishSharedEnvVars(List<EnvVar> sharedEnvVars) {
+        final Map<String, String> data = new TreeMap<>();
+        sharedEnvVars.forEach(envVar -> data.put(envVar.getName(), envVar.getValue()));
+        final String name = SHARED_ENV_CONFIGMAP_PREFIX + CoordinatorUtils.sha256Of(data).substring(0, 10);
+        try {
+            final ConfigMap configMap = client.findOrCreateControllerConfigMap(name);
+            final Map<String, String> labels = Optional.ofNullable(configMap.getMetadata().getLabels()).orElse(Map.of());
+            if (!data.equals(configMap.getData()) || !labels.entrySet().containsAll(SHARED_ENV_LABELS.entrySet())) {
+                configMap.setData(data);
+                final Map<String, String> merged = new TreeMap<>(labels);
+                merged.putAll(SHARED_ENV_LABELS);
+                configMap.getMetadata().setLabels(merged);
+                client.patchControllerConfigMap(configMap);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, e, () -> format("Could not write the shared deployer environment to the ConfigMap %s. "
+                    + "The variables will be inlined in the deployer pods.", name));
+            return null;
+        }
+        final String previous = lastPublished.getAndSet(name);
+        if (!name.equals(previous)) {
+            removeSupersededSharedEnvVars(name, previous);
+        }
+        return name;
+    }
+
+    /**
+     * Deletes the shared variable ConfigMaps that were superseded by the current one and that no active deployer pod reads
+     * from. The ConfigMap that was current until now, if any, is kept until it is superseded in turn, as a launch that picked
+     * up an older template might still be about to start a pod that refers to it.
+     */
+    private void removeSupersededSharedEnvVars(String current, String previous) {
+        try {
+            final Set<String> inUse = client.getDeployerPodIndex().getPods().stream()
+                    .filter(DeployerPodIndex::isActive)
+                    .flatMap(pod -> pod.getSpec().getContainers().stream())
+                    .flatMap(container -> Optional.ofNullable(container.getEnvFrom()).orElse(List.of()).stream())
+                    .map(EnvFromSource::getConfigMapRef)
+                    .filter(Objects::nonNull)
+                    .map(ConfigMapEnvSource::getName)
+                    .collect(Collectors.toSet());
+            inUse.add(current);
+            Optional.ofNullable(previous).ifPresent(inUse::add);
+            client.loadControllerConfigMaps(SHARED_ENV_LABELS).stream()
+                    .map(configMap -> configMap.getMetadata().getName())
+                    .filter(name -> !inUse.contains(name))
+                    .forEach(name -> {
+                        LOGGER.log(Level.FINE, () -> format("Deleting the superseded deployer environment ConfigMap %s", name));
+                        client.deleteControllerConfigMap(name);
+                    });
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Could not delete the superseded deployer environment ConfigMaps.");
+        }
+    }
+
+    private static String stampOf(ConfigMap configMap) {
+        return configMap == null ? "" : configMap.getMetadata().getUid() + ":" + configMap.getMetadata().getResourceVersion();
+    }
+
+    private static List<EnvVar> buildSharedEnvVars() {
+        Map<String, EnvVar> result = new LinkedHashMap<>();
+        System.getProperties().entrySet().stream()
+                .filter(DeployerPodTemplates::matchesKnownSystemProperty).forEach(objectObjectEntry -> addTo(result,
+                        new EnvVar(objectObjectEntry.getKey().toString().toUpperCase(Locale.ROOT).replace(".", "_").replace("-", "_"),
+                                objectObjectEntry.getValue().toString(), null)));
+        System.getenv().entrySet().stream()
+                .filter(DeployerPodTemplates::matchesKnownEnvironmentVariable)
+                .forEach(objectObjectEntry -> addTo(result, new EnvVar(objectObjectEntry.getKey(),
+                        objectObjectEntry.getValue(), null)));
+        return Collections.unmodifiableList(new ArrayList<>(result.values()));
+    }
+
+    private static void addTo(Map<String, EnvVar> result, EnvVar envVar) {
+        result.put(envVar.getName(), envVar);
+    }
+
+    private static boolean matchesKnownEnvironmentVariable(Map.Entry<String, String> objectObjectEntry) {
+        return objectObjectEntry.getKey().startsWith("RELATED_IMAGE") || objectObjectEntry.getKey().startsWith("ENTANDO_");
+    }
+
+    private static boolean matchesKnownSystemProperty(Map.Entry<Object, Object> objectObjectEntry) {
+        String propertyName = objectObjectEntry.getKey().toString().toLowerCase(Locale.ROOT).replace("_", ".");
+        return propertyName.startsWith("related.image") || propertyName.startsWith("entando.");
+    }
+
+    /**
+     * The templates built for one state of the image info and operator config ConfigMaps.
+     */
+    private static class Generation {
+
+        private final String stamp;
+        private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+        private Generation(String stamp) {
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * The immutable base of the deployer pods for one controller image. Only the resource specific fields are added per launch.
+     */
+    public static class Template {
+
+        private final String imageUri;
+        private final String serviceAccountName;
+        private final List<EnvVar> sharedEnvVars;
+        private final String sharedEnvConfigMap;
+
+        private Template(String imageUri, String serviceAccountName, List<EnvVar> sharedEnvVars, String sharedEnvConfigMap) {
+            this.imageUri = imageUri;
+            this.serviceAccountName = serviceAccountName;
+            this.sharedEnvVars = sharedEnvVars;
+            this.sharedEnvConfigMap = sharedEnvConfigMap;
+        }
+
+        public String getImageUri() {
+            return imageUri;
+        }
+
+        public List<EnvVar> getSharedEnvVars() {
+            return sharedEnvVars;
+        }
+
+        /**
+         * Returns the name of the ConfigMap the shared variables are read from, or empty if they are inlined in the pod.
+         */
+        public Optional<String> getSharedEnvConfigMap() {
+            return Optional.ofNullable(sharedEnvConfigMap);
+        }
+
+        public Pod stamp(Action action, SerializedEntandoResource resource, String controllerNamespace) {
+            return new PodBuilder().withNewMetadata()
+                    .withName(resource.getMetadata().getName() + "-deployer-" + NameUtils.randomNumeric(4).toLowerCase())
+                    .withNamespace(controllerNamespace)
+                    //Uncomment this line to reactivate ENG-2274
+                    //                .addToOwnerReferences(ResourceUtils.buildOwnerReference(resource))
+                    .addToLabels(CoordinatorUtils.podLabelsFor(resource))
+                    .endMetadata()
+                    .withNewSpec()
+                    .withRestartPolicy("Never")
+                    .withServiceAccountName(serviceAccountName)
+                    .addNewContainer()
+                    .withName("deployer")
+                    .withImage(imageUri)
+                    .withImagePullPolicy("IfNotPresent")
+                    .withEnvFrom(sharedEnvConfigMap == null ? Collections.emptyList() : List.of(new EnvFromSourceBuilder()
+                            .withNewConfigMapRef()
+                            .withName(sharedEnvConfigMap)
+                            .endConfigMapRef()
+                            .build()))
+                    .withEnv(buildEnvVars(action, resource))
+                    .endContainer()
+                    .endSpec()
+                    .build();
+        }
+
+        private List<EnvVar> buildEnvVars(Action action, SerializedEntandoResource resource) {
+            Map<String, EnvVar> result = new LinkedHashMap<>();
+            if (sharedEnvConfigMap == null) {
+                //The EnvVars are copied, as the builder does not copy them
+                sharedEnvVars.forEach(envVar -> addTo(result, new EnvVar(envVar.getName(), envVar.getValue(), null)));
+            }
+            //Variables in env take precedence over envFrom. Make sure we overwrite previously set resource info
+            addTo(result, new EnvVar("ENTANDO_RESOURCE_ACTION", action.name(), null));
+            addTo(result, new EnvVar(EntandoOperatorSpiConfigProperty.ENTANDO_RESOURCE_NAMESPACE.name(),
+                    resource.getMetadata().getNamespace(), null));
+            addTo(result, new EnvVar(EntandoOperatorSpiConfigProperty.ENTANDO_RESOURCE_NAME.name(), resource.getMetadata().getName(),
+                    null));
+            addTo(result, new EnvVar(EntandoOperatorSpiConfigProperty.ENTANDO_RESOURCE_KIND.name(), resource.getKind(), null));
+            addTo(result, new EnvVar(EntandoOperatorSpiConfigProperty.ENTANDO_CONTROLLER_POD_NAME.name(), null,
+                    new EnvVarSourceBuilder()
+                            .withNewFieldRef()
+                            .withFieldPath("metadata.name")
+                            .endFieldRef()
+                            .build()));
+            return new ArrayList<>(result.values());
+        }
+    }
+}
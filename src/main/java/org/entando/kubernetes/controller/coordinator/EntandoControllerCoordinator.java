@@ -25,22 +25,31 @@ import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinition
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfig;
 import org.entando.kubernetes.model.capability.ProvidedCapability;
 import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
 
@@ -51,10 +60,25 @@ public class EntandoControllerCoordinator implements RestartingWatcher<CustomRes
     private final SimpleKubernetesClient client;
     private static final Logger LOGGER = Logger.getLogger(EntandoControllerCoordinator.class.getName());
     private final Map<String, String> derivedControllerImageMap = new ConcurrentHashMap<>();
+    private final AtomicReference<ControllerImageRoutingTable> routingTable = new AtomicReference<>(ControllerImageRoutingTable.EMPTY);
     private ControllerImageOverridesWatcher controllerImageOverrides;
     private final Map<String, EntandoResourceObserver> observers = new ConcurrentHashMap<>();
     private CrdNameMapSync crdNameMapSync;
     private Watch crdWatch;
+    private final CoordinatorExecutors executors = new CoordinatorExecutors();
+    private DeployerPodIndex deployerPodIndex;
+    private DeployerPodAdmission deployerPodAdmission;
+    private CompletedPodSweeper completedPodSweeper;
+    private TrustStoreSecretRegenerator trustStoreSecretRegenerator;
+    private LeaderElection leaderElection;
+    private ShardMembership shardMembership;
+    private volatile boolean leading;
+    private boolean caughtUpOnControllerNamespace;
+    //Like client-go, the identity is unique even if the pod name is reused
+    private final String identity = EntandoOperatorSpiConfig.getControllerPodName() + "_" + UUID.randomUUID();
+    private final DeployerPodTemplates deployerPodTemplates;
+    private final Map<String, DeployerLaunch> launches = new ConcurrentHashMap<>();
+    private final Map<String, Long> startupTimings = Collections.synchronizedMap(new LinkedHashMap<>());
 
     @Inject
     public EntandoControllerCoordinator(KubernetesClient client) {
@@ -63,46 +87,199 @@ public class EntandoControllerCoordinator implements RestartingWatcher<CustomRes
 
     public EntandoControllerCoordinator(SimpleKubernetesClient client) {
         this.client = client;
+        this.deployerPodTemplates = new DeployerPodTemplates(client, this::isWritingToControllerNamespace);
     }
 
+    /**
+     * Starts up in stages, timing each of them. The observers of the different CRDs do not depend on each other, so they list and
+     * start watching their resources concurrently. The coordinator only reports that it is ready once all of them, and therefore
+     * all the caches, are in sync.
+     */
     public void onStartup(@Observes StartupEvent ev) {
-        new ConfigListener(client);
-        this.controllerImageOverrides = new ControllerImageOverridesWatcher(client);
-        final List<CustomResourceDefinition> customResourceDefinitions = client.loadCustomResourceDefinitionsOfInterest().stream()
-                .filter(CoordinatorUtils::isOfInterest)
-                .collect(Collectors.toList());
-        this.crdNameMapSync = new CrdNameMapSync(client, customResourceDefinitions);
-        customResourceDefinitions.forEach(this::processCustomResourceDefinition);
-        getRestartingAction().run();
-        customResourceDefinitions.forEach(this::startObservingInstances);
-        observers.computeIfAbsent(CoordinatorUtils.keyOf(CustomResourceDefinitionContext.fromCustomResourceType(ProvidedCapability.class)),
-                key -> new EntandoResourceObserver(
-                        this.client.getOperations(CustomResourceDefinitionContext.fromCustomResourceType(ProvidedCapability.class)),
-                        this::startImage,
-                        crdNameMapSync,
-                        1L));
+        final long start = System.currentTimeMillis();
+        timeStage("watchers", () -> {
+            new ConfigListener(client);
+            this.controllerImageOverrides = new ControllerImageOverridesWatcher(client, this::rebuildRoutingTable);
+            this.trustStoreSecretRegenerator = new TrustStoreSecretRegenerator(client, executors.getHousekeepingLane(),
+                    this::isWritingToControllerNamespace);
+            this.deployerPodIndex = client.getDeployerPodIndex();
+            this.deployerPodAdmission = new DeployerPodAdmission(deployerPodIndex);
+        });
+        timeStage("membership", () -> {
+            if (ControllerCoordinatorConfig.isShardingEnabled()) {
+                //Every replica acts, but only on its own namespaces
+                this.shardMembership = new ShardMembership(client, identity, executors, this::rebalance);
+                shardMembership.start();
+                startLeading();
+            } else if (ControllerCoordinatorConfig.isLeaderElectionEnabled()) {
+                this.leaderElection = new LeaderElection(client, identity, executors, this::startLeading, this::stopLeading);
+                leaderElection.start();
+            } else {
+                startLeading();
+            }
+        });
+        final List<CustomResourceDefinition> customResourceDefinitions = new ArrayList<>();
+        timeStage("crds", () -> {
+            client.loadCustomResourceDefinitionsOfInterest().stream()
+                    .filter(Objects::nonNull)
+                    .filter(CoordinatorUtils::isOfInterest)
+                    .forEach(customResourceDefinitions::add);
+            this.crdNameMapSync = new CrdNameMapSync(client, customResourceDefinitions, this::isWritingToControllerNamespace);
+            customResourceDefinitions.forEach(this::processCustomResourceDefinition);
+            getRestartingAction().run();
+        });
+        timeStage("observers", () -> {
+            final List<Runnable> bootstraps = new ArrayList<>();
+            customResourceDefinitions.forEach(crd -> bootstraps.add(() -> startObservingInstances(crd)));
+            bootstraps.add(() -> startObserving(CustomResourceDefinitionContext.fromCustomResourceType(ProvidedCapability.class), 1L));
+            CoordinatorExecutors.inParallel("bootstrap", bootstraps, bootstrap -> {
+                bootstrap.run();
+                return null;
+            });
+        });
+        CoordinatorMetrics.startExporting();
+        recordStage("total", System.currentTimeMillis() - start);
         Liveness.alive();
-        LOGGER.log(Level.INFO, "The EntandoControllerCoordinator has started up successfully");
+        LOGGER.log(Level.INFO, () -> format("The EntandoControllerCoordinator has started up successfully in %sms: %s",
+                System.currentTimeMillis() - start, startupTimings));
+    }
+
+    private void timeStage(String stage, Runnable action) {
+        final long start = System.currentTimeMillis();
+        action.run();
+        recordStage(stage, System.currentTimeMillis() - start);
+    }
+
+    private void recordStage(String stage, long millis) {
+        startupTimings.put(stage, millis);
+        CoordinatorMetrics.recordMillis("entando_startup_stage", millis, "stage", stage);
+        LOGGER.log(Level.FINE, () -> format("Startup stage '%s' took %sms", stage, millis));
+    }
+
+    /**
+     * The time in milliseconds that each stage of the startup took, in the order in which they ran.
+     */
+    public Map<String, Long> getStartupTimings() {
+        return Collections.unmodifiableMap(startupTimings);
     }
 
     private void startObservingInstances(CustomResourceDefinition crd) {
-        observers.computeIfAbsent(CoordinatorUtils.keyOf(crd),
-                s1 -> new EntandoResourceObserver(
-                        this.client.getOperations(CustomResourceDefinitionContext.fromCrd(crd)),
+        startObserving(CustomResourceDefinitionContext.fromCrd(crd), crd.getMetadata().getGeneration());
+    }
+
+    private void startObserving(CustomResourceDefinitionContext context, Long generation) {
+        observers.computeIfAbsent(CoordinatorUtils.keyOf(context),
+                key -> new EntandoResourceObserver(
+                        this.client.getOperations(context),
                         this::startImage,
+                        this::cancelLaunch,
                         crdNameMapSync,
-                        crd.getMetadata().getGeneration()));
+                        generation,
+                        executors,
+                        this::isResponsibleFor));
     }
 
     public EntandoResourceObserver getObserver(CustomResourceDefinitionContext context) {
         return observers.get(CoordinatorUtils.keyOf(context));
     }
 
+    /**
+     * Stops observing before the client is closed, so that the events of the work that was still in progress are emitted before
+     * the container stops.
+     */
+    public void onShutdown(@Observes ShutdownEvent ev) {
+        try {
+            shutdownObservers(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Not all the observers completed their work before the shutdown");
+        } finally {
+            client.close();
+            executors.shutDown();
+        }
+    }
+
     public void shutdownObservers(int wait, TimeUnit timeUnit) throws TimeoutException {
-        crdWatch.close();
+        ofNullable(crdWatch).ifPresent(Watch::close);
+        ofNullable(completedPodSweeper).ifPresent(CompletedPodSweeper::close);
+        ofNullable(trustStoreSecretRegenerator).ifPresent(TrustStoreSecretRegenerator::close);
+        ofNullable(deployerPodIndex).ifPresent(DeployerPodIndex::close);
         for (EntandoResourceObserver observer : this.observers.values()) {
             observer.shutDownAndWait(wait, timeUnit);
         }
+        ofNullable(leaderElection).ifPresent(LeaderElection::close);
+        ofNullable(shardMembership).ifPresent(ShardMembership::close);
+    }
+
+    /**
+     * Returns true if this replica should act on resources in the given namespace.
+     */
+    public boolean isResponsibleFor(String namespace) {
+        return isLeading() && (shardMembership == null || shardMembership.owns(namespace));
+    }
+
+    /**
+     * Returns true if this replica maintains the shared state in the controller namespace: the truststore Secret, the CRD name
+     * map and the shared deployer environment. With sharding, that is the replica that owns the controller namespace. The
+     * components that maintain this state are given this method as the condition under which they may write. The other replicas
+     * keep their views of the state up to date without writing it, so that they do not compete with the writer, and bring it up
+     * to date themselves once they start writing.
+     */
+    public boolean isWritingToControllerNamespace() {
+        return isResponsibleFor(client.getControllerNamespace());
+    }
+
+    /**
+     * Starts acting on the resources. The observers replay what their watches stored while this replica was standing by.
+     */
+    private synchronized void startLeading() {
+        this.leading = true;
+        this.completedPodSweeper = new CompletedPodSweeper(client, deployerPodIndex, executors, this::isResponsibleFor);
+        catchUpOnControllerNamespace();
+        observers.values().forEach(EntandoResourceObserver::replay);
+    }
+
+    /**
+     * Brings the shared state in the controller namespace up to date with what this replica observed while another replica was
+     * maintaining it.
+     */
+    private void catchUpOnControllerNamespace() {
+        final boolean writing = isWritingToControllerNamespace();
+        if (writing && !caughtUpOnControllerNamespace) {
+            ofNullable(trustStoreSecretRegenerator).ifPresent(TrustStoreSecretRegenerator::verify);
+            ofNullable(crdNameMapSync).ifPresent(CrdNameMapSync::publish);
+        }
+        this.caughtUpOnControllerNamespace = writing;
+    }
+
+    /**
+     * Hands over the launches in the namespaces that moved to other replicas, and picks up the resources in the namespaces that
+     * moved to this replica.
+     */
+    private synchronized void rebalance() {
+        launches.values().stream()
+                .filter(launch -> !isResponsibleFor(launch.getResource().getMetadata().getNamespace()))
+                .forEach(DeployerLaunch::cancel);
+        catchUpOnControllerNamespace();
+        observers.values().forEach(EntandoResourceObserver::replay);
+    }
+
+    /**
+     * Stops acting on the resources, but keeps the watches and caches up to date in case this replica is elected again.
+     */
+    private synchronized void stopLeading() {
+        this.leading = false;
+        this.caughtUpOnControllerNamespace = false;
+        ofNullable(completedPodSweeper).ifPresent(CompletedPodSweeper::close);
+        this.completedPodSweeper = null;
+        launches.values().forEach(DeployerLaunch::cancel);
+    }
+
+    /**
+     * Returns true once this replica has started leading, for as long as it holds the Lease. The election is consulted directly,
+     * as the callback that stops leading may be queued behind other housekeeping for a while after the Lease was lost.
+     */
+    public boolean isLeading() {
+        return leading && (leaderElection == null || leaderElection.isLeading());
     }
 
     private void processCustomResourceDefinition(CustomResourceDefinition r) {
@@ -132,44 +309,35 @@ public class EntandoControllerCoordinator implements RestartingWatcher<CustomRes
                 i -> CoordinatorUtils.resolveAnnotation(r, AnnotationNames.SUPPORTED_CAPABILITIES)
                         .ifPresent(capabilities -> Arrays.stream(capabilities.split(","))
                                 .forEach(s -> derivedControllerImageMap.put(s + CAPABILITY_ORG, i))));
-
+        rebuildRoutingTable(getControllerImageOverrides());
     }
 
     private ConfigMap getControllerImageOverrides() {
         return this.controllerImageOverrides.getControllerImageOverrides();
     }
 
-    private String sanitize(String key) {
-        return key.toLowerCase(Locale.ROOT);
+    /**
+     * Rebuilds the routing table from the current derived images and the given overrides, and publishes it for subsequent
+     * launches.
+     */
+    private synchronized void rebuildRoutingTable(ConfigMap overrides) {
+        final long start = System.currentTimeMillis();
+        final ControllerImageRoutingTable table = ControllerImageRoutingTable.build(derivedControllerImageMap,
+                ofNullable(overrides).map(ConfigMap::getData).orElse(null));
+        routingTable.set(table);
+        CoordinatorMetrics.recordMillis("entando_routing_table_rebuild", System.currentTimeMillis() - start);
+        LOGGER.log(Level.FINE, () -> format("Rebuilt the controller image routing table with %s routes", table.size()));
     }
 
     public String getControllerImageFor(SerializedEntandoResource resource) {
-        String imageName;
-        if (resource.getKind().equals(ProvidedCapability.class.getSimpleName())) {
-            imageName = ofNullable(resolveCapabilityFromMap(resource, getControllerImageOverrides().getData()))
-                    .orElse(resolveCapabilityFromMap(resource, this.derivedControllerImageMap));
-        } else {
-            imageName = ofNullable(resolveCustomControllerFromMap(resource, getControllerImageOverrides().getData()))
-                    .orElse(resolveCustomControllerFromMap(resource, this.derivedControllerImageMap));
-        }
-        return ofNullable(imageName).orElse(CoordinatorUtils.NO_IMAGE);
+        return routingTable.get().resolve(resource);
     }
 
-    private String resolveCapabilityFromMap(SerializedEntandoResource pc, Map<String, String> controllerImageMap) {
-        Optional<String> implementation = Optional.ofNullable((String) pc.getSpec().get("implementation"));
-        String capability = (String) pc.getSpec().get("capability");
-        final Optional<Map<String, String>> nullableMap = ofNullable(controllerImageMap);
-        return implementation
-                .flatMap(impl -> nullableMap
-                        .flatMap(map -> ofNullable(map.get(sanitize(impl + "." + capability + CAPABILITY_ORG)))))
-                .orElse(nullableMap.map(map -> map.get(sanitize(capability + CAPABILITY_ORG))).orElse(null));
-    }
-
-    private String resolveCustomControllerFromMap(SerializedEntandoResource r, Map<String, String> controllerImageMap) {
-        return ofNullable(controllerImageMap).map(map -> map.get(CoordinatorUtils.keyOf(r))).orElse(null);
-    }
-
-    private void startImage(Action action, SerializedEntandoResource resource) {
+    private CompletionStage<Void> startImage(Action action, SerializedEntandoResource resource) {
+        if (!isResponsibleFor(resource.getMetadata().getNamespace())) {
+            //Queued before leadership or the namespace was lost. The new owner replays the resource
+            return CompletableFuture.completedFuture(null);
+        }
         try {
             final String controllerImage = getControllerImageFor(resource);
             if (CoordinatorUtils.NO_IMAGE.equals(controllerImage)) {
@@ -177,17 +345,38 @@ public class EntandoControllerCoordinator implements RestartingWatcher<CustomRes
                 LOGGER.log(Level.WARNING, () -> format("No controller image found for the %s %s/%s. Automatically updating to 'SUCCESSFUL'",
                         resource.getKind(), resource.getMetadata().getNamespace(), resource.getMetadata().getName()));
                 client.updatePhase(resource, EntandoDeploymentPhase.SUCCESSFUL);
-            } else {
-                TrustStoreSecretRegenerator.regenerateIfNecessary(client);
-                ControllerExecutor executor = new ControllerExecutor(client.getControllerNamespace(), client, controllerImage);
-                executor.startControllerFor(action, client.updatePhase(resource, EntandoDeploymentPhase.REQUESTED));
+                return CompletableFuture.completedFuture(null);
             }
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, e, () -> format("Could not start the controller image for the %s %s/%s", resource.getKind(),
-                    resource.getMetadata().getNamespace(), resource.getMetadata().getName()));
+            final DeployerLaunch launch = new DeployerLaunch(action, resource, client, deployerPodAdmission,
+                    new ControllerExecutor(client.getControllerNamespace(), client, controllerImage, deployerPodTemplates),
+                    launchLaneFor(resource));
+            final String uid = resource.getMetadata().getUid();
+            launches.put(uid, launch);
+            return launch.start().whenComplete((ignored, throwable) -> launches.remove(uid, launch));
+        } catch (RuntimeException e) {
+            logLaunchFailure(resource, e);
+            //Let the work queue retry
+            throw e;
         }
     }
 
+    private Executor launchLaneFor(SerializedEntandoResource resource) {
+        final ProcessingPriority priority = CoordinatorUtils.resolveProcessingPriority(resource);
+        return task -> executors.getLaunchLane().execute(CoordinatorExecutors.withPriority(task, priority));
+    }
+
+    /**
+     * Cancels the launch in progress for an older version of the given resource.
+     */
+    private void cancelLaunch(SerializedEntandoResource resource) {
+        ofNullable(launches.get(resource.getMetadata().getUid())).ifPresent(DeployerLaunch::cancel);
+    }
+
+    private void logLaunchFailure(SerializedEntandoResource resource, Exception e) {
+        LOGGER.log(Level.SEVERE, e, () -> format("Could not start the controller image for the %s %s/%s", resource.getKind(),
+                resource.getMetadata().getNamespace(), resource.getMetadata().getName()));
+    }
+
     @Override
     public void eventReceived(Action action, CustomResourceDefinition customResourceDefinition) {
         if (CoordinatorUtils.isOfInterest(customResourceDefinition)) {
@@ -206,4 +395,9 @@ public class EntandoControllerCoordinator implements RestartingWatcher<CustomRes
         client.issueOperatorDeathEvent(event);
     }
 
+    @Override
+    public WatchReconnectGovernor getReconnectGovernor() {
+        return client.getWatchReconnectGovernor();
+    }
+
 }
@@ -19,21 +19,24 @@ package org.entando.kubernetes.controller.coordinator;
 import static java.lang.String.format;
 import static org.entando.kubernetes.controller.spi.common.ExceptionUtils.interruptionSafe;
 
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher.Action;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
@@ -45,45 +48,202 @@ public class EntandoResourceObserver implements SerializedResourceWatcher {
 
     private static final Logger LOGGER = Logger.getLogger(EntandoResourceObserver.class.getName());
 
-    private final Map<String, Deque<String>> cache = new ConcurrentHashMap<>();
+    private final ResourceVersionIndex processedVersions = new ResourceVersionIndex();
     private final Map<String, SerializedEntandoResource> resourcesBeingUpgraded = new ConcurrentHashMap<>();
-    private final BiConsumer<Action, SerializedEntandoResource> callback;
+    private final BiFunction<Action, SerializedEntandoResource, CompletionStage<?>> callback;
     private final SimpleEntandoOperations operations;
-    //TODO make the pool size configurable. Need to think that through though. We would require different settings for cluster vs
-    // namespace scoped deployments
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5);
+    private final CoordinatorExecutors executors;
     private final CrdNameMapSync crdNameMapSync;
     private final Long generation;
     private final List<Watch> watchers = new ArrayList<>();
+    private final KeyedWorkQueue<ResourceEvent> workQueue;
+    private final Consumer<SerializedEntandoResource> supersededCallback;
+    private final Predicate<String> responsibleFor;
+    private final List<String> namespaces;
+    private final boolean multiplexed;
+    private ScheduledFuture<?> resync;
+    private final ScheduledFuture<?> purge;
 
     public EntandoResourceObserver(SimpleEntandoOperations operations,
-            BiConsumer<Action, SerializedEntandoResource> callback,
+            BiFunction<Action, SerializedEntandoResource, CompletionStage<?>> callback,
             CrdNameMapSync crdNameMapSync,
-            Long generation) {
+            Long generation,
+            CoordinatorExecutors executors) {
+        this(operations, callback, resource -> {
+        }, crdNameMapSync, generation, executors);
+    }
+
+    /**
+     * Creates an observer that also notifies the supersededCallback when a newer version of a resource arrives, or the resource
+     * is deleted, while the callback for an older version is still in progress.
+     */
+    public EntandoResourceObserver(SimpleEntandoOperations operations,
+            BiFunction<Action, SerializedEntandoResource, CompletionStage<?>> callback,
+            Consumer<SerializedEntandoResource> supersededCallback,
+            CrdNameMapSync crdNameMapSync,
+            Long generation,
+            CoordinatorExecutors executors) {
+        this(operations, callback, supersededCallback, crdNameMapSync, generation, executors, namespace -> true);
+    }
+
+    /**
+     * Creates an observer that only acts on events for resources in the namespaces that this replica is currently responsible
+     * for, e.g. because it leads or because the namespace belongs to its shard. The watches keep the resource store up to date
+     * for all namespaces, so that the observer can take over others quickly with {@link #replay()}.
+     */
+    public EntandoResourceObserver(SimpleEntandoOperations operations,
+            BiFunction<Action, SerializedEntandoResource, CompletionStage<?>> callback,
+            Consumer<SerializedEntandoResource> supersededCallback,
+            CrdNameMapSync crdNameMapSync,
+            Long generation,
+            CoordinatorExecutors executors,
+            Predicate<String> responsibleFor) {
         this.callback = callback;
+        this.supersededCallback = supersededCallback;
+        this.responsibleFor = responsibleFor;
+        this.executors = executors;
         this.operations = operations;
         this.crdNameMapSync = crdNameMapSync;
         this.generation = generation;
-        processOperationInScope(operations, simpleEntandoOperations -> simpleEntandoOperations.list()
-                .forEach(entandoCustomResource -> eventReceived(Action.MODIFIED, entandoCustomResource)));
-        processOperationInScope(operations, simpleEntandoOperations -> watchers.add(simpleEntandoOperations.watch(this)));
-        LOGGER.log(Level.INFO, () -> format("Listening to CRD '%s'", operations.getDefinitionContext().getName()));
+        final String kind = operations.getDefinitionContext().getKind();
+        this.workQueue = new KeyedWorkQueue<>(kind, executors.getLaunchLane(), executors.getTimer(),
+                ControllerCoordinatorConfig.getLaunchConcurrencyFor(kind),
+                event -> callback.apply(event.action, event.resource).thenRun(() -> CoordinatorMetrics.recordMillis(
+                        "entando_time_to_pod_start", System.currentTimeMillis() - event.receivedAt,
+                        "priority", event.priority.name().toLowerCase(Locale.ROOT))),
+                ResourceEvent::coalesce);
+        final long startedAt = System.currentTimeMillis();
+        this.namespaces = EntandoOperatorConfig.isClusterScopedDeployment() ? List.of() : namespacesToObserve(operations);
+        //The store outlives the observers of earlier generations of the CRD, and the lists below only hand over what changed
+        replay();
+        this.multiplexed = namespaces.size() > 1 && ControllerCoordinatorConfig.isMultiplexedWatchesEnabled()
+                && listAndWatchMultiplexed();
+        if (!multiplexed) {
+            processOperationInScope(this::listAndWatch);
+        }
+        final long startupMillis = System.currentTimeMillis() - startedAt;
+        CoordinatorMetrics.recordMillis("entando_observer_startup", startupMillis, "kind", kind, "mode", getWatchMode());
+        CoordinatorMetrics.registerGauge("entando_watch_connections", watchers::size, "kind", kind);
+        final long resyncPeriod = ControllerCoordinatorConfig.getObserverResyncPeriodSeconds();
+        if (resyncPeriod > 0) {
+            //The timer only hands the resync over to the housekeeping lane
+            resync = executors.getTimer().scheduleWithFixedDelay(
+                    CoordinatorExecutors.coalescing(executors.getHousekeepingLane(), this::resync),
+                    resyncPeriod, resyncPeriod, TimeUnit.SECONDS);
+        }
+        final long purgePeriod = ControllerCoordinatorConfig.getDedupIndexPurgePeriodSeconds();
+        this.purge = executors.getTimer().scheduleWithFixedDelay(
+                CoordinatorExecutors.coalescing(executors.getHousekeepingLane(), this::purgeProcessedVersions),
+                purgePeriod, purgePeriod, TimeUnit.SECONDS);
+        CoordinatorMetrics.registerGauge("entando_dedup_index_size", processedVersions::size, "kind", kind);
+        LOGGER.log(Level.INFO, () -> format("Listening to CRD '%s' through %s %s watch(es) after %sms",
+                operations.getDefinitionContext().getName(), watchers.size(), getWatchMode(), startupMillis));
+    }
+
+    private static List<String> namespacesToObserve(SimpleEntandoOperations operations) {
+        final List<String> namespaces = new ArrayList<>(EntandoOperatorConfig.getNamespacesToObserve());
+        if (namespaces.isEmpty()) {
+            namespaces.add(operations.getControllerNamespace());
+        }
+        return namespaces;
+    }
+
+    /**
+     * Lists the resources in all namespaces at once so that a single watch can follow them. Returns false if this coordinator is
+     * not allowed to do so, in which case it needs a watch per namespace. A list across namespaces cannot be narrowed down to the
+     * namespaces that may be read, so a single namespace without access sends all of them back to a watch of their own.
+     */
+    private boolean listAndWatchMultiplexed() {
+        try {
+            listAndWatch(operations.inNamespaces(new HashSet<>(namespaces)));
+            return true;
+        } catch (KubernetesClientException e) {
+            if (e.getCode() != HttpURLConnection.HTTP_FORBIDDEN) {
+                throw e;
+            }
+            LOGGER.log(Level.WARNING, () -> format("Not allowed to list '%s' in all namespaces. Falling back to a watch per namespace. "
+                    + "Grant list and watch on it cluster wide, e.g. with the chart's multiplexedWatches value, to use a single watch.",
+                    operations.getDefinitionContext().getName()));
+            return false;
+        }
     }
 
-    private static void processOperationInScope(SimpleEntandoOperations operations, Consumer<SimpleEntandoOperations> consumer) {
+    /**
+     * Reports how the observer follows its resources: "cluster" for a single watch in a cluster scoped deployment, "multiplexed"
+     * for a single watch filtered against the observed namespaces, or "per-namespace".
+     */
+    public String getWatchMode() {
+        if (EntandoOperatorConfig.isClusterScopedDeployment()) {
+            return "cluster";
+        }
+        return multiplexed ? "multiplexed" : "per-namespace";
+    }
+
+    public int getWatchCount() {
+        return watchers.size();
+    }
+
+    /**
+     * Forgets about resources that are no longer in the store, e.g. because their deletion was missed during a watch gap.
+     */
+    private void purgeProcessedVersions() {
+        final EntandoResourceStore store = operations.getResourceStore();
+        final int purged = processedVersions.retainAll(store::containsUid);
+        if (purged > 0) {
+            LOGGER.log(Level.FINE, () -> format("Purged %s stale entries from the resourceVersion index of '%s'", purged,
+                    operations.getDefinitionContext().getName()));
+        }
+    }
+
+    private void processOperationInScope(Consumer<SimpleEntandoOperations> consumer) {
         if (EntandoOperatorConfig.isClusterScopedDeployment()) {
             consumer.accept(operations.inAnyNamespace());
+        } else if (multiplexed) {
+            consumer.accept(operations.inNamespaces(new HashSet<>(namespaces)));
         } else {
-            List<String> namespaces = EntandoOperatorConfig.getNamespacesToObserve();
-            if (namespaces.isEmpty()) {
-                namespaces.add(operations.getControllerNamespace());
-            }
             for (String namespace : namespaces) {
                 consumer.accept(operations.inNamespace(namespace));
             }
         }
     }
 
+    /**
+     * Replays the resources in the store, e.g. once this replica has become the leader or has been assigned more namespaces, so
+     * that whatever changed in the meantime gets processed without having to list the resources again.
+     */
+    public void replay() {
+        operations.getResourceStore().list().forEach(resource -> eventReceived(Action.MODIFIED, resource));
+    }
+
+    /**
+     * Lists the resources again and replays only what the watches may have missed against the local store.
+     */
+    private void resync() {
+        try {
+            processOperationInScope(this::relistInPages);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, e, () -> format("Could not resync the CRD '%s'", operations.getDefinitionContext().getName()));
+        }
+    }
+
+    /**
+     * Starts the watch from the resourceVersion of the list, so that nothing that happened in between is missed.
+     */
+    private void listAndWatch(SimpleEntandoOperations simpleEntandoOperations) {
+        final String listResourceVersion = relistInPages(simpleEntandoOperations);
+        watchers.add(simpleEntandoOperations.watch(this, listResourceVersion));
+    }
+
+    /**
+     * Processes the resources that were added or modified a page at a time as they arrive, so that a large number of resources
+     * does not have to be held in memory all at once.
+     */
+    private String relistInPages(SimpleEntandoOperations simpleEntandoOperations) {
+        return simpleEntandoOperations.relistInPages(
+                changed -> changed.forEach(entandoCustomResource -> eventReceived(Action.MODIFIED, entandoCustomResource)),
+                deleted -> deleted.forEach(entandoCustomResource -> eventReceived(Action.DELETED, entandoCustomResource)));
+    }
+
     private boolean requiresUpgrade(SerializedEntandoResource resource) {
         if (!isBeingUpgraded(resource) && wasProcessedByVersionBeingReplaced(resource)) {
             resourcesBeingUpgraded.put(resource.getMetadata().getUid(), resource);
@@ -108,16 +268,20 @@ public class EntandoResourceObserver implements SerializedResourceWatcher {
     }
 
     @Override
-    public void eventReceived(Action action, SerializedEntandoResource resource) {
+    public void eventReceived(Action action, SerializedEntandoResource event) {
+        if (!responsibleFor.test(event.getMetadata().getNamespace())) {
+            return;
+        }
+        final SerializedEntandoResource resource = action == Action.DELETED ? event : latestKnownStateOf(event);
         try {
-            if (performCriteriaProcessing(resource)) {
+            if (action == Action.DELETED) {
+                //Whatever the criteria say, nothing should be launched or kept waiting for a resource that is gone
+                performCallback(action, resource);
+            } else if (performCriteriaProcessing(resource)) {
                 performCallback(action, resource);
             } else if (resource.getStatus().getPhase() == EntandoDeploymentPhase.SUCCESSFUL) {
                 logResource(Level.INFO, "%s %s/%s was processed successfully", resource);
                 markAsUpgraded(resource);
-                if (needsToRemoveSuccessfullyCompletedPods(resource)) {
-                    removeSuccessfullyCompletedPods(resource);
-                }
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, e, () -> format("Could not process the %s %s/%s", resource.getKind(),
@@ -125,6 +289,17 @@ public class EntandoResourceObserver implements SerializedResourceWatcher {
         }
     }
 
+    /**
+     * The criteria are evaluated against the state of the resource in the store, which may already be more recent than the
+     * event, e.g. when the event was queued behind a relist or behind one of the coordinator's own updates.
+     */
+    private SerializedEntandoResource latestKnownStateOf(SerializedEntandoResource event) {
+        return operations.getResourceStore().getByUid(event.getMetadata().getUid())
+                .filter(stored -> CoordinatorUtils.isOlderResourceVersion(event.getMetadata().getResourceVersion(),
+                        stored.getMetadata().getResourceVersion()))
+                .orElse(event);
+    }
+
     private void markAsUpgraded(SerializedEntandoResource resource) {
         final Optional<String> currentOperatorVersion = EntandoOperatorConfigBase
                 .lookupProperty(ControllerCoordinatorProperty.ENTANDO_K8S_OPERATOR_VERSION);
@@ -139,24 +314,6 @@ public class EntandoResourceObserver implements SerializedResourceWatcher {
         resourcesBeingUpgraded.remove(resource.getMetadata().getUid());
     }
 
-    private void removeSuccessfullyCompletedPods(SerializedEntandoResource resource) {
-        scheduler.submit(() -> {
-            try {
-                operations.removeSuccessfullyCompletedPods(resource);
-            } catch (TimeoutException timeoutException) {
-                LOGGER.warning(timeoutException.getMessage());
-            }
-        });
-    }
-
-    private boolean needsToRemoveSuccessfullyCompletedPods(SerializedEntandoResource resource) {
-        return EntandoOperatorConfig.garbageCollectSuccessfullyCompletedPods()
-                && Optional.ofNullable(resource.getMetadata().getGeneration())
-                .map(aLong -> aLong.equals(resource.getMetadata().getGeneration()))
-                .orElse(false)
-                && resource.getStatus().getPhase() == EntandoDeploymentPhase.SUCCESSFUL;
-    }
-
     private boolean performCriteriaProcessing(SerializedEntandoResource resource) {
         return requiresUpgrade(resource)
                 || (hasNewResourceVersion(resource)
@@ -178,10 +335,14 @@ public class EntandoResourceObserver implements SerializedResourceWatcher {
 
     protected void performCallback(Action action, SerializedEntandoResource resource) {
         logResource(Level.INFO, "Received " + action.name() + " for the %s %s/%s", resource);
+        if (action == Action.DELETED || workQueue.isProcessing(resource.getMetadata().getUid())) {
+            supersededCallback.accept(resource);
+        }
         if (action == Action.ADDED || action == Action.MODIFIED) {
-            scheduler.execute(() -> callback.accept(action, resource));
+            workQueue.add(resource.getMetadata().getUid(), new ResourceEvent(action, resource));
         } else if (action == Action.DELETED) {
-            cache.remove(resource.getMetadata().getUid());
+            workQueue.remove(resource.getMetadata().getUid());
+            processedVersions.remove(resource.getMetadata().getUid());
         } else {
             logResource(Level.WARNING, "EntandoResourceObserver could not process the action " + action.name() + " on the %s %s/%s",
                     resource);
@@ -222,32 +383,32 @@ public class EntandoResourceObserver implements SerializedResourceWatcher {
     }
 
     private boolean hasNewResourceVersion(SerializedEntandoResource newResource) {
-        Deque<String> queue = cache.computeIfAbsent(newResource.getMetadata().getUid(), key -> new ConcurrentLinkedDeque<>());
-        if (queue.contains(newResource.getMetadata().getResourceVersion())) {
-            //TODO observe logs to see if this actually still happens
-            logResource(Level.WARNING, "Duplicate event for %s %s/%s. ResourceVersion=" + newResource.getMetadata().getResourceVersion(),
-                    newResource);
+        if (!processedVersions.markIfNew(newResource.getMetadata().getUid(), newResource.getMetadata().getResourceVersion())) {
+            logResource(Level.FINE, "Duplicate or stale event for %s %s/%s. ResourceVersion="
+                    + newResource.getMetadata().getResourceVersion(), newResource);
             return false;
         }
-        markResourceVersionProcessed(newResource);
         logResource(Level.FINE, "%s %s/%s has a new resource version: " + newResource.getMetadata().getResourceVersion(), newResource);
         return true;
     }
 
     private void markResourceVersionProcessed(SerializedEntandoResource newResource) {
-        Deque<String> queue = cache.computeIfAbsent(newResource.getMetadata().getUid(), key -> new ConcurrentLinkedDeque<>());
-        queue.offer(newResource.getMetadata().getResourceVersion());
-        while (queue.size() > 10) {
-            queue.poll();
-        }
+        processedVersions.mark(newResource.getMetadata().getUid(), newResource.getMetadata().getResourceVersion());
     }
 
     public void shutDownAndWait(int i, TimeUnit timeUnit) throws TimeoutException {
         interruptionSafe(() -> {
             watchers.forEach(Watch::close);
             watchers.clear();
-            scheduler.shutdown();
-            if (!scheduler.awaitTermination(i, timeUnit)) {
+            if (resync != null) {
+                resync.cancel(false);
+            }
+            purge.cancel(false);
+            CoordinatorMetrics.unregisterGauge("entando_dedup_index_size", "kind", operations.getDefinitionContext().getKind());
+            CoordinatorMetrics.unregisterGauge("entando_watch_connections", "kind", operations.getDefinitionContext().getKind());
+            workQueue.shutDown();
+            //The lanes are shared with other observers, so we only wait for our own work to complete
+            if (!workQueue.awaitIdle(i, timeUnit)) {
                 LOGGER.log(Level.WARNING, () -> "Could not shut EntandoResourceObserver down.");
             }
             return null;
@@ -257,4 +418,39 @@ public class EntandoResourceObserver implements SerializedResourceWatcher {
     public Long getCrdGeneration() {
         return generation;
     }
+
+    /**
+     * An event waiting in the work queue.
+     */
+    private static class ResourceEvent implements Prioritized {
+
+        private final Action action;
+        private final SerializedEntandoResource resource;
+        private final ProcessingPriority priority;
+        private final long receivedAt;
+
+        private ResourceEvent(Action action, SerializedEntandoResource resource) {
+            this(action, resource, System.currentTimeMillis());
+        }
+
+        private ResourceEvent(Action action, SerializedEntandoResource resource, long receivedAt) {
+            this.action = action;
+            this.resource = resource;
+            this.priority = CoordinatorUtils.resolveProcessingPriority(resource);
+            this.receivedAt = receivedAt;
+        }
+
+        @Override
+        public ProcessingPriority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Keeps the latest state of the resource, but if the resource has not been processed since it was added, it still needs to
+         * be processed as an addition. The time the first event was received is retained to measure the time to pod start.
+         */
+        private static ResourceEvent coalesce(ResourceEvent waiting, ResourceEvent latest) {
+            return new ResourceEvent(waiting.action == Action.ADDED ? Action.ADDED : latest.action, latest.resource, waiting.receivedAt);
+        }
+    }
 }
@@ -0,0 +1,283 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import io.fabric8.kubernetes.api.model.OwnerReference;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+
+/**
+ * An in-memory copy of the state of all the instances of a single CustomResourceDefinition, kept up to date by the initial
+ * list and subsequent watch events, in the style of a shared informer. Reads are served from memory so that the
+ * coordinator does not have to go back to the API server every time it needs the current state of a resource.
+ */
+public class EntandoResourceStore {
+
+    private final Map<String, SerializedEntandoResource> resourcesByUid = new ConcurrentHashMap<>();
+    private final Map<String, String> uidsByName = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> uidsByNamespace = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> uidsByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * Applies the watch event to the store.
+     */
+    public void apply(Action action, SerializedEntandoResource resource) {
+        if (action == Action.ADDED || action == Action.MODIFIED) {
+            upsert(resource);
+        } else if (action == Action.DELETED) {
+            remove(resource);
+        }
+    }
+
+    /**
+     * Stores the resource, unless the store already contains a more recent version of it.
+     *
+     * @return true if the resource was stored
+     */
+    public synchronized boolean upsert(SerializedEntandoResource resource) {
+        final String uid = resource.getMetadata().getUid();
+        final SerializedEntandoResource existing = resourcesByUid.get(uid);
+        if (existing != null) {
+            if (CoordinatorUtils.isOlderResourceVersion(resource.getMetadata().getResourceVersion(),
+                    existing.getMetadata().getResourceVersion())) {
+                return false;
+            }
+            unindex(existing);
+        }
+        resourcesByUid.put(uid, resource);
+        uidsByName.put(nameKey(resource.getMetadata().getNamespace(), resource.getMetadata().getName()), uid);
+        uidsByNamespace.computeIfAbsent(resource.getMetadata().getNamespace(), key -> ConcurrentHashMap.newKeySet()).add(uid);
+        ownerUidsOf(resource).forEach(ownerUid -> uidsByOwner.computeIfAbsent(ownerUid, key -> ConcurrentHashMap.newKeySet()).add(uid));
+        return true;
+    }
+
+    public synchronized void remove(SerializedEntandoResource resource) {
+        final SerializedEntandoResource existing = resourcesByUid.remove(resource.getMetadata().getUid());
+        if (existing != null) {
+            unindex(existing);
+        }
+    }
+
+    /**
+     * Replaces the contents of the store in the given namespace, or in all namespaces if the namespace is null, with the result
+     * of a fresh list from the server.
+     *
+     * @return the differences between the previous contents of the store and the list
+     */
+    public Delta replace(String namespace, Collection<SerializedEntandoResource> listedResources) {
+        return replace(namespace, listedResources, null);
+    }
+
+    /**
+     * Replaces the contents of the store as above, recording the resourceVersion of the list the resources came from.
+     */
+    public synchronized Delta replace(String namespace, Collection<SerializedEntandoResource> listedResources, String listResourceVersion) {
+        final Delta delta = new Delta(listResourceVersion);
+        final Set<String> listedUids = new HashSet<>();
+        applyListed(listedResources, listedUids, delta);
+        delta.deleted.addAll(removeUnlisted(namespace, listedUids, listResourceVersion));
+        return delta;
+    }
+
+    /**
+     * Starts replacing the contents of the store in the given namespace, or in all namespaces if the namespace is null, with the
+     * result of a paginated list whose pages are applied as they arrive.
+     */
+    public Replacement startReplacement(String namespace) {
+        return new Replacement(namespace);
+    }
+
+    private synchronized void applyListed(Collection<SerializedEntandoResource> listedResources, Set<String> listedUids, Delta delta) {
+        for (SerializedEntandoResource resource : listedResources) {
+            listedUids.add(resource.getMetadata().getUid());
+            final SerializedEntandoResource existing = resourcesByUid.get(resource.getMetadata().getUid());
+            if (existing == null) {
+                upsert(resource);
+                delta.added.add(resource);
+            } else if (!Objects.equals(existing.getMetadata().getResourceVersion(), resource.getMetadata().getResourceVersion())
+                    && upsert(resource)) {
+                delta.modified.add(resource);
+            }
+        }
+    }
+
+    /**
+     * Removes the resources that were not listed, unless a watch event has already brought in a version that is newer than the
+     * list.
+     */
+    private synchronized List<SerializedEntandoResource> removeUnlisted(String namespace, Set<String> listedUids,
+            String listResourceVersion) {
+        final List<SerializedEntandoResource> removed = new ArrayList<>();
+        for (SerializedEntandoResource resource : namespace == null ? list() : listInNamespace(namespace)) {
+            if (!listedUids.contains(resource.getMetadata().getUid())
+                    && !CoordinatorUtils.isOlderResourceVersion(listResourceVersion, resource.getMetadata().getResourceVersion())) {
+                remove(resource);
+                removed.add(resource);
+            }
+        }
+        return removed;
+    }
+
+    public Optional<SerializedEntandoResource> get(String namespace, String name) {
+        return Optional.ofNullable(uidsByName.get(nameKey(namespace, name))).map(resourcesByUid::get);
+    }
+
+    public Optional<SerializedEntandoResource> getByUid(String uid) {
+        return Optional.ofNullable(resourcesByUid.get(uid));
+    }
+
+    public List<SerializedEntandoResource> listInNamespace(String namespace) {
+        return resolve(uidsByNamespace.get(namespace));
+    }
+
+    public List<SerializedEntandoResource> listOwnedBy(String ownerUid) {
+        return resolve(uidsByOwner.get(ownerUid));
+    }
+
+    public List<SerializedEntandoResource> list() {
+        return new ArrayList<>(resourcesByUid.values());
+    }
+
+    public boolean containsUid(String uid) {
+        return resourcesByUid.containsKey(uid);
+    }
+
+    public int size() {
+        return resourcesByUid.size();
+    }
+
+    private List<SerializedEntandoResource> resolve(Set<String> uids) {
+        if (uids == null) {
+            return Collections.emptyList();
+        }
+        return uids.stream().map(resourcesByUid::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private void unindex(SerializedEntandoResource resource) {
+        final String uid = resource.getMetadata().getUid();
+        uidsByName.remove(nameKey(resource.getMetadata().getNamespace(), resource.getMetadata().getName()), uid);
+        removeFromIndex(uidsByNamespace, resource.getMetadata().getNamespace(), uid);
+        ownerUidsOf(resource).forEach(ownerUid -> removeFromIndex(uidsByOwner, ownerUid, uid));
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String uid) {
+        final Set<String> uids = index.get(key);
+        if (uids != null) {
+            uids.remove(uid);
+            if (uids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static Set<String> ownerUidsOf(SerializedEntandoResource resource) {
+        final List<OwnerReference> ownerReferences = resource.getMetadata().getOwnerReferences();
+        if (ownerReferences == null) {
+            return Collections.emptySet();
+        }
+        return ownerReferences.stream().map(OwnerReference::getUid).filter(Objects::nonNull).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static String nameKey(String namespace, String name) {
+        return namespace + "/" + name;
+    }
+
+    /**
+     * A replacement of the contents of the store that is applied one page of the list at a time. Only the uids of the listed
+     * resources are retained between pages.
+     */
+    public class Replacement {
+
+        private final String namespace;
+        private final Set<String> listedUids = new HashSet<>();
+
+        private Replacement(String namespace) {
+            this.namespace = namespace;
+        }
+
+        /**
+         * Applies a page of the list to the store.
+         *
+         * @return the resources on the page that were added to the store, or that were more recent than the stored copy
+         */
+        public List<SerializedEntandoResource> applyPage(Collection<SerializedEntandoResource> page) {
+            final Delta delta = new Delta(null);
+            applyListed(page, listedUids, delta);
+            final List<SerializedEntandoResource> changed = new ArrayList<>(delta.added);
+            changed.addAll(delta.modified);
+            return changed;
+        }
+
+        /**
+         * Removes the resources that did not appear on any of the pages.
+         *
+         * @return the resources that were removed from the store
+         */
+        public List<SerializedEntandoResource> complete(String listResourceVersion) {
+            return removeUnlisted(namespace, listedUids, listResourceVersion);
+        }
+    }
+
+    /**
+     * The differences found when replacing the contents of the store with a fresh list.
+     */
+    public static class Delta {
+
+        private final List<SerializedEntandoResource> added = new ArrayList<>();
+        private final List<SerializedEntandoResource> modified = new ArrayList<>();
+        private final List<SerializedEntandoResource> deleted = new ArrayList<>();
+        private final String resourceVersion;
+
+        private Delta(String resourceVersion) {
+            this.resourceVersion = resourceVersion;
+        }
+
+        /**
+         * The resourceVersion of the list, if known. Watches can be started from here without missing any events.
+         */
+        public String getResourceVersion() {
+            return resourceVersion;
+        }
+
+        public List<SerializedEntandoResource> getAdded() {
+            return added;
+        }
+
+        public List<SerializedEntandoResource> getModified() {
+            return modified;
+        }
+
+        public List<SerializedEntandoResource> getDeleted() {
+            return deleted;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && modified.isEmpty() && deleted.isEmpty();
+        }
+    }
+}
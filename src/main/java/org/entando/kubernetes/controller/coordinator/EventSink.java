@@ -0,0 +1,186 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.api.model.EventSource;
+import io.fabric8.kubernetes.api.model.ObjectReference;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits Kubernetes Events in the background so that callers never wait for the API server. Events are aggregated into series
+ * the way the Kubernetes event recorder does it: an event with the same source, involved object, type, reason, action and
+ * message as one that was emitted before increments the count and lastTimestamp of the existing Event instead of creating a
+ * new one. Pending events are flushed in batches. When the queue is full, new series are dropped rather than blocking the
+ * caller.
+ */
+public class EventSink {
+
+    private static final Logger LOGGER = Logger.getLogger(EventSink.class.getName());
+    private final KubernetesClient client;
+    private final int capacity;
+    private final int batchSize;
+    private final Map<String, Event> pending = new LinkedHashMap<>();
+    private final Map<String, Event> emitted;
+    private final ScheduledExecutorService flusher;
+    private final Supplier<Integer> queueDepthGauge = this::getQueueDepth;
+
+    public EventSink(KubernetesClient client) {
+        this(client, ControllerCoordinatorConfig.getEventQueueCapacity(), ControllerCoordinatorConfig.getEventBatchSize(),
+                ControllerCoordinatorConfig.getEventFlushIntervalMillis());
+    }
+
+    public EventSink(KubernetesClient client, int capacity, int batchSize, long flushIntervalMillis) {
+        this.client = client;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        //Only remember as many series as could be pending at any time
+        this.emitted = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Event> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "event-sink");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        CoordinatorMetrics.registerGauge("entando_event_queue_depth", queueDepthGauge);
+    }
+
+    /**
+     * Queues the event for emission. Never blocks.
+     */
+    public void emit(Event event) {
+        final String key = seriesKeyOf(event);
+        synchronized (this) {
+            final Event waiting = pending.get(key);
+            if (waiting != null) {
+                incrementSeries(waiting, event);
+                CoordinatorMetrics.increment("entando_events_aggregated");
+            } else if (pending.size() < capacity) {
+                pending.put(key, event);
+            } else {
+                CoordinatorMetrics.increment("entando_events_dropped");
+                LOGGER.log(Level.FINE, () -> format("The event queue is full. Dropping the event %s", event.getMessage()));
+            }
+        }
+    }
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Emits up to one batch of pending events.
+     */
+    public void flush() {
+        final List<Map.Entry<String, Event>> batch = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<Map.Entry<String, Event>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        batch.forEach(entry -> send(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Stops the background flushing and then emits all pending events. A flush that is in progress is allowed to complete, as
+     * interrupting it would lose the events it has already taken from the queue.
+     */
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.log(Level.WARNING, () -> "The background flush of events did not complete in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        while (getQueueDepth() > 0) {
+            flush();
+        }
+        //Only remove the gauge if another sink has not replaced it in the meantime
+        CoordinatorMetrics.unregisterGauge("entando_event_queue_depth", queueDepthGauge);
+    }
+
+    private void send(String key, Event event) {
+        try {
+            final Event previous;
+            synchronized (this) {
+                previous = emitted.get(key);
+            }
+            final Event toSend = previous == null ? event : new EventBuilder(previous)
+                    .editMetadata()
+                    //Replace whatever version is on the server
+                    .withResourceVersion(null)
+                    .endMetadata()
+                    .withCount(countOf(previous) + countOf(event))
+                    .withLastTimestamp(event.getLastTimestamp())
+                    .build();
+            final Event sent = client.v1().events().inNamespace(toSend.getMetadata().getNamespace()).createOrReplace(toSend);
+            synchronized (this) {
+                emitted.put(key, sent);
+            }
+            CoordinatorMetrics.increment("entando_events_emitted");
+        } catch (RuntimeException e) {
+            CoordinatorMetrics.increment("entando_events_dropped");
+            LOGGER.log(Level.WARNING, e, () -> format("Could not emit the event %s", event.getMessage()));
+        }
+    }
+
+    private static void incrementSeries(Event series, Event occurrence) {
+        series.setCount(countOf(series) + countOf(occurrence));
+        series.setLastTimestamp(occurrence.getLastTimestamp());
+    }
+
+    private static int countOf(Event event) {
+        return Optional.ofNullable(event.getCount()).orElse(1);
+    }
+
+    private static String seriesKeyOf(Event event) {
+        final Optional<ObjectReference> involvedObject = Optional.ofNullable(event.getInvolvedObject());
+        return String.join("|",
+                String.valueOf(event.getMetadata().getNamespace()),
+                String.valueOf(Optional.ofNullable(event.getSource()).map(EventSource::getComponent).orElse(null)),
+                String.valueOf(involvedObject.map(ObjectReference::getUid).orElse(null)),
+                String.valueOf(involvedObject.map(ObjectReference::getName).orElse(null)),
+                String.valueOf(event.getType()),
+                String.valueOf(event.getReason()),
+                String.valueOf(event.getAction()),
+                String.valueOf(event.getMessage()));
+    }
+}
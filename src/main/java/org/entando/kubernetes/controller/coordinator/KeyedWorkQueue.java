@@ -0,0 +1,242 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A work queue in the style of the client-go workqueue. Items are queued under a key, typically the uid of a resource.
+ * <ul>
+ *     <li>An item added for a key that is still waiting to be processed is merged with the waiting item instead of being queued
+ *     separately, so only the latest state of a resource gets processed.</li>
+ *     <li>A key is never processed concurrently with itself. Items added while their key is being processed wait until the
+ *     processing has completed.</li>
+ *     <li>Items that fail are requeued with exponential backoff, up to a maximum number of retries, unless a newer item for the
+ *     same key has arrived in the meantime. Items whose processing was cancelled are not retried.</li>
+ *     <li>At most maxConcurrency keys are processed at the same time. Waiting keys are dispatched in the order they were
+ *     first added.</li>
+ * </ul>
+ */
+public class KeyedWorkQueue<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(KeyedWorkQueue.class.getName());
+    private static final long MAXIMUM_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private final String name;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final int maxConcurrency;
+    private final Function<T, CompletionStage<?>> processor;
+    private final BinaryOperator<T> coalescer;
+    private final Map<String, T> waiting = new LinkedHashMap<>();
+    private final Set<String> processing = new HashSet<>();
+    private final Map<String, Integer> failures = new HashMap<>();
+    private final Map<String, Future<?>> delayedRetries = new HashMap<>();
+    private boolean shutDown;
+
+    /**
+     * Creates a queue that processes its items on the given executor, without a concurrency limit of its own.
+     */
+    public KeyedWorkQueue(String name, ScheduledExecutorService executor, Function<T, CompletionStage<?>> processor,
+            BinaryOperator<T> coalescer) {
+        this(name, executor, executor, Integer.MAX_VALUE, processor, coalescer);
+    }
+
+    /**
+     * Creates a queue that processes its items on the given executor.
+     *
+     * @param name used in the log and metrics
+     * @param executor the executor to process items on
+     * @param timer used to schedule retries. Only hands the retry back to the queue.
+     * @param maxConcurrency the maximum number of keys processed at the same time
+     * @param processor processes an item. The key is only released once the returned stage has completed.
+     * @param coalescer merges the waiting item (first argument) with the item that has just been added (second argument)
+     */
+    public KeyedWorkQueue(String name, Executor executor, ScheduledExecutorService timer, int maxConcurrency,
+            Function<T, CompletionStage<?>> processor, BinaryOperator<T> coalescer) {
+        this.name = name;
+        this.executor = executor;
+        this.timer = timer;
+        this.maxConcurrency = maxConcurrency;
+        this.processor = processor;
+        this.coalescer = coalescer;
+        CoordinatorMetrics.registerGauge("entando_work_queue_depth", this::getDepth, "queue", name);
+        CoordinatorMetrics.registerGauge("entando_work_queue_processing", this::getProcessingCount, "queue", name);
+    }
+
+    public synchronized void add(String key, T item) {
+        if (shutDown) {
+            return;
+        }
+        //A newer item supersedes a pending retry of an older one
+        cancelRetry(key);
+        failures.remove(key);
+        final T waitingItem = waiting.get(key);
+        if (waitingItem == null) {
+            waiting.put(key, item);
+            dispatchReadyKeys();
+        } else {
+            waiting.put(key, coalescer.apply(waitingItem, item));
+            CoordinatorMetrics.increment("entando_work_queue_coalesced_total", "queue", name);
+        }
+    }
+
+    /**
+     * Forgets about any item waiting for the given key. An item already being processed is not affected.
+     */
+    public synchronized void remove(String key) {
+        waiting.remove(key);
+        failures.remove(key);
+        cancelRetry(key);
+    }
+
+    public synchronized int getDepth() {
+        return waiting.size() + delayedRetries.size();
+    }
+
+    public synchronized boolean isProcessing(String key) {
+        return processing.contains(key);
+    }
+
+    public synchronized int getProcessingCount() {
+        return processing.size();
+    }
+
+    /**
+     * Waits for all the items currently being processed to complete.
+     *
+     * @return true if the queue became idle within the given time
+     */
+    public synchronized boolean awaitIdle(long time, TimeUnit timeUnit) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeUnit.toNanos(time);
+        while (!processing.isEmpty()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting and dispatching items and cancels all pending retries. Items already being processed are left to
+     * complete.
+     */
+    public synchronized void shutDown() {
+        shutDown = true;
+        waiting.clear();
+        delayedRetries.values().forEach(future -> future.cancel(false));
+        delayedRetries.clear();
+        CoordinatorMetrics.unregisterGauge("entando_work_queue_depth", "queue", name);
+        CoordinatorMetrics.unregisterGauge("entando_work_queue_processing", "queue", name);
+    }
+
+    private void dispatchReadyKeys() {
+        final Iterator<Map.Entry<String, T>> iterator = waiting.entrySet().iterator();
+        while (processing.size() < maxConcurrency && iterator.hasNext()) {
+            final Map.Entry<String, T> entry = iterator.next();
+            if (!processing.contains(entry.getKey())) {
+                iterator.remove();
+                final String key = entry.getKey();
+                final T item = entry.getValue();
+                processing.add(key);
+                final Runnable task = () -> process(key, item);
+                executor.execute(item instanceof Prioritized
+                        ? CoordinatorExecutors.withPriority(task, ((Prioritized) item).getPriority())
+                        : task);
+            }
+        }
+    }
+
+    private void process(String key, T item) {
+        CompletionStage<?> stage;
+        try {
+            stage = processor.apply(item);
+        } catch (RuntimeException e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((result, throwable) -> completed(key, item, throwable));
+    }
+
+    private synchronized void completed(String key, T item, Throwable throwable) {
+        processing.remove(key);
+        notifyAll();
+        if (shutDown) {
+            return;
+        }
+        if (throwable == null) {
+            failures.remove(key);
+        } else if (!waiting.containsKey(key) && !isCancellation(throwable)) {
+            scheduleRetry(key, item, throwable);
+        }
+        dispatchReadyKeys();
+    }
+
+    private static boolean isCancellation(Throwable throwable) {
+        return throwable instanceof CancellationException
+                || (throwable instanceof CompletionException && throwable.getCause() instanceof CancellationException);
+    }
+
+    private void scheduleRetry(String key, T item, Throwable throwable) {
+        final int failureCount = failures.merge(key, 1, Integer::sum);
+        if (failureCount > ControllerCoordinatorConfig.getWorkQueueMaximumRetries()) {
+            failures.remove(key);
+            CoordinatorMetrics.increment("entando_work_queue_dropped_total", "queue", name);
+            LOGGER.log(Level.SEVERE, throwable, () -> format("Giving up on %s in queue %s after %s attempts", key, name, failureCount));
+            return;
+        }
+        final long delay = Math.min(MAXIMUM_RETRY_DELAY_MILLIS,
+                ControllerCoordinatorConfig.getWorkQueueRetryDelayMillis() * (1L << Math.min(failureCount - 1, 20)));
+        CoordinatorMetrics.increment("entando_work_queue_retries_total", "queue", name);
+        LOGGER.log(Level.WARNING, throwable, () -> format("Processing %s in queue %s failed. Retrying in %sms", key, name, delay));
+        delayedRetries.put(key, timer.schedule(() -> retry(key, item), delay, TimeUnit.MILLISECONDS));
+    }
+
+    private synchronized void retry(String key, T item) {
+        delayedRetries.remove(key);
+        if (!shutDown && !waiting.containsKey(key)) {
+            waiting.put(key, item);
+            dispatchReadyKeys();
+        }
+    }
+
+    private void cancelRetry(String key) {
+        final Future<?> retry = delayedRetries.remove(key);
+        if (retry != null) {
+            retry.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Map;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+
+/**
+ * A SerializedEntandoResource whose spec is only parsed from the original JSON once it is accessed. Most watch events are
+ * discarded based on their metadata and status alone, so for large specs this avoids materializing maps that are never
+ * read. Serialization still includes the spec.
+ */
+@JsonIgnoreProperties(value = "spec", allowGetters = true, ignoreUnknown = true)
+public class LazySerializedEntandoResource extends SerializedEntandoResource {
+
+    @JsonIgnore
+    private volatile String specSource;
+
+    void retainSpecSource(String json) {
+        this.specSource = json;
+    }
+
+    @JsonIgnore
+    public boolean isSpecMaterialized() {
+        return specSource == null;
+    }
+
+    @Override
+    @JsonProperty("spec")
+    public Map<String, Object> getSpec() {
+        if (specSource != null) {
+            synchronized (this) {
+                if (specSource != null) {
+                    super.setSpec(SerializedResourceCodec.readSpec(specSource));
+                    specSource = null;
+                }
+            }
+        }
+        return super.getSpec();
+    }
+
+    @Override
+    public synchronized void setSpec(Map<String, Object> spec) {
+        this.specSource = null;
+        super.setSpec(spec);
+    }
+}
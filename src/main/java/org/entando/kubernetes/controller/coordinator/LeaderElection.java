@@ -0,0 +1,235 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseSpec;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Elects a single leader amongst the coordinator replicas using a Lease in the controller namespace, following the same protocol
+ * as client-go. The leader renews the Lease every retry period. The other replicas take the Lease over once they have not seen
+ * it change for the lease duration, measured on their own clock so that the replicas' clocks need not agree. A leader that
+ * cannot renew the Lease for two thirds of the lease duration stops leading before anyone else can take over. Attempts run on
+ * the lease timer, so that they never wait behind other work, and the callbacks are handed over to the housekeeping lane.
+ */
+public class LeaderElection {
+
+    public static final String LEASE_NAME = "entando-controller-coordinator";
+    private static final Logger LOGGER = Logger.getLogger(LeaderElection.class.getName());
+    private final SimpleKubernetesClient client;
+    private final String identity;
+    private final CoordinatorExecutors executors;
+    private final int leaseDurationSeconds;
+    private final long retryPeriodMillis;
+    private final Runnable onStartedLeading;
+    private final Runnable onStoppedLeading;
+    private final Object callbackLock = new Object();
+    private boolean leadingAsNotified;
+    private volatile boolean leading;
+    private boolean closed;
+    private String observedResourceVersion;
+    private long observedAt;
+    private long renewedAt;
+    private ScheduledFuture<?> ticker;
+
+    public LeaderElection(SimpleKubernetesClient client, String identity, CoordinatorExecutors executors, Runnable onStartedLeading,
+            Runnable onStoppedLeading) {
+        this(client, identity, executors, ControllerCoordinatorConfig.getLeaderElectionLeaseDurationSeconds(),
+                ControllerCoordinatorConfig.getLeaderElectionRetryPeriodMillis(), onStartedLeading, onStoppedLeading);
+    }
+
+    /**
+     * Creates an election for the given replica. The callbacks are invoked on the housekeeping lane, one at a time and in the
+     * order of the transitions. Transitions that are reversed before their callback runs are skipped.
+     */
+    public LeaderElection(SimpleKubernetesClient client, String identity, CoordinatorExecutors executors, int leaseDurationSeconds,
+            long retryPeriodMillis, Runnable onStartedLeading, Runnable onStoppedLeading) {
+        this.client = client;
+        this.identity = identity;
+        this.executors = executors;
+        this.leaseDurationSeconds = leaseDurationSeconds;
+        this.retryPeriodMillis = retryPeriodMillis;
+        this.onStartedLeading = onStartedLeading;
+        this.onStoppedLeading = onStoppedLeading;
+    }
+
+    /**
+     * Makes the first attempt to acquire the Lease straight away, so that a replica without competition leads from the start,
+     * and then keeps trying or renewing every retry period.
+     */
+    public synchronized void start() {
+        CoordinatorMetrics.registerGauge("entando_leader", () -> leading ? 1 : 0);
+        tick();
+        this.ticker = executors.getLeaseTimer().scheduleWithFixedDelay(this::tick, retryPeriodMillis, retryPeriodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isLeading() {
+        return leading;
+    }
+
+    public String getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Stops taking part in the election. A leader releases the Lease so that a standby replica can take over without waiting
+     * for it to expire.
+     */
+    public synchronized void close() {
+        closed = true;
+        Optional.ofNullable(ticker).ifPresent(future -> future.cancel(false));
+        if (leading) {
+            try {
+                final Lease current = client.loadControllerLease(LEASE_NAME);
+                if (current != null && identity.equals(current.getSpec().getHolderIdentity())) {
+                    current.getSpec().setHolderIdentity(null);
+                    current.getSpec().setLeaseDurationSeconds(1);
+                    client.updateControllerLease(current);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e, () -> format("Could not release the Lease %s. It will expire instead.", LEASE_NAME));
+            }
+            stopLeading();
+        }
+        CoordinatorMetrics.unregisterGauge("entando_leader");
+    }
+
+    private synchronized void tick() {
+        if (closed) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        try {
+            final Lease current = client.loadControllerLease(LEASE_NAME);
+            if (current == null) {
+                observe(client.createControllerLease(newLease()), now);
+                renewedAt = now;
+                startLeading();
+                return;
+            }
+            if (!Objects.equals(observedResourceVersion, current.getMetadata().getResourceVersion())) {
+                observe(current, now);
+            }
+            final LeaseSpec spec = Optional.ofNullable(current.getSpec()).orElseGet(LeaseSpec::new);
+            final String holder = spec.getHolderIdentity();
+            if (identity.equals(holder)) {
+                spec.setRenewTime(ZonedDateTime.now());
+                spec.setLeaseDurationSeconds(leaseDurationSeconds);
+                current.setSpec(spec);
+                observe(client.updateControllerLease(current), now);
+                renewedAt = now;
+                startLeading();
+            } else if (holder == null || holder.isEmpty() || now - observedAt >= TimeUnit.SECONDS.toMillis(durationOf(spec))) {
+                spec.setHolderIdentity(identity);
+                spec.setLeaseDurationSeconds(leaseDurationSeconds);
+                spec.setAcquireTime(ZonedDateTime.now());
+                spec.setRenewTime(ZonedDateTime.now());
+                spec.setLeaseTransitions(Optional.ofNullable(spec.getLeaseTransitions()).orElse(0) + 1);
+                current.setSpec(spec);
+                observe(client.updateControllerLease(current), now);
+                renewedAt = now;
+                LOGGER.log(Level.INFO, () -> format("Took over the Lease %s from %s", LEASE_NAME, holder));
+                startLeading();
+            } else {
+                stopLeading();
+            }
+        } catch (RuntimeException e) {
+            //Typically a conflict with another replica, which the next attempt will resolve
+            LOGGER.log(Level.FINE, e, () -> format("Could not acquire or renew the Lease %s", LEASE_NAME));
+            if (leading && now - renewedAt > TimeUnit.SECONDS.toMillis(leaseDurationSeconds) * 2 / 3) {
+                LOGGER.log(Level.WARNING, () -> format("Could not renew the Lease %s within the renew deadline", LEASE_NAME));
+                stopLeading();
+            }
+        }
+    }
+
+    private void observe(Lease lease, long now) {
+        this.observedResourceVersion = lease.getMetadata().getResourceVersion();
+        this.observedAt = now;
+    }
+
+    private int durationOf(LeaseSpec spec) {
+        return Optional.ofNullable(spec.getLeaseDurationSeconds()).orElse(leaseDurationSeconds);
+    }
+
+    private Lease newLease() {
+        return new LeaseBuilder()
+                .withNewMetadata()
+                .withName(LEASE_NAME)
+                .withNamespace(client.getControllerNamespace())
+                .endMetadata()
+                .withNewSpec()
+                .withHolderIdentity(identity)
+                .withLeaseDurationSeconds(leaseDurationSeconds)
+                .withAcquireTime(ZonedDateTime.now())
+                .withRenewTime(ZonedDateTime.now())
+                .withLeaseTransitions(0)
+                .endSpec()
+                .build();
+    }
+
+    private void startLeading() {
+        if (!leading) {
+            leading = true;
+            CoordinatorMetrics.increment("entando_leader_transitions");
+            LOGGER.log(Level.INFO, () -> format("%s is now leading", identity));
+            notifyTransition();
+        }
+    }
+
+    private void stopLeading() {
+        if (leading) {
+            leading = false;
+            LOGGER.log(Level.WARNING, () -> format("%s is no longer leading", identity));
+            notifyTransition();
+        }
+    }
+
+    /**
+     * Hands the callback over to the housekeeping lane, so that the next renewal does not wait for it. The callback brings the
+     * coordinator in line with the latest state rather than with the transition that queued it, as the lane may run tasks
+     * concurrently.
+     */
+    private void notifyTransition() {
+        try {
+            executors.getHousekeepingLane().execute(() -> {
+                synchronized (callbackLock) {
+                    final boolean current = leading;
+                    if (current != leadingAsNotified) {
+                        leadingAsNotified = current;
+                        (current ? onStartedLeading : onStoppedLeading).run();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, e, () -> format("The housekeeping lane has been shut down. %s is not notified of the transition",
+                    identity));
+        }
+    }
+}
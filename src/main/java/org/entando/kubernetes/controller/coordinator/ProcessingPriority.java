@@ -0,0 +1,32 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+public enum ProcessingPriority {
+    HIGH,
+    NORMAL,
+    LOW;
+
+    /**
+     * The head start, in milliseconds, that a task of this priority gets over a NORMAL task enqueued at the same time. Because
+     * the head start is bounded, a LOW task eventually gets ahead of NORMAL and HIGH tasks that were enqueued after it.
+     */
+    public long getHeadStartMillis(long agingMillis) {
+        return (NORMAL.ordinal() - ordinal()) * agingMillis;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Remembers the latest resourceVersion processed for each resource uid, so that duplicate events, and stale events arriving out
+ * of order after a relist, can be ignored. Numeric resourceVersions are kept as a per-uid high-water mark; anything else is
+ * compared for equality only. The index is bounded: the least recently used uids are evicted once the maximum size is
+ * reached, entries expire after a configurable time without activity, and uids that no longer exist can be purged.
+ */
+public class ResourceVersionIndex {
+
+    private final int maximumSize;
+    private final long timeToLiveMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public ResourceVersionIndex() {
+        this(ControllerCoordinatorConfig.getDedupIndexMaximumSize(),
+                TimeUnit.SECONDS.toMillis(ControllerCoordinatorConfig.getDedupIndexTimeToLiveSeconds()),
+                System::currentTimeMillis);
+    }
+
+    ResourceVersionIndex(int maximumSize, long timeToLiveMillis, LongSupplier clock) {
+        this.maximumSize = maximumSize;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clock = clock;
+        //Access order makes this an LRU map
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResourceVersionIndex.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Records the resourceVersion for the uid if it is newer than anything seen for the uid before.
+     *
+     * @return false if this resourceVersion, or a later one, has already been seen for the uid
+     */
+    public synchronized boolean markIfNew(String uid, String resourceVersion) {
+        final long now = clock.getAsLong();
+        final Entry entry = entries.get(uid);
+        if (entry == null || entry.isExpired(now, timeToLiveMillis)) {
+            entries.put(uid, new Entry(resourceVersion, now));
+            return true;
+        }
+        return entry.advanceTo(resourceVersion, now);
+    }
+
+    /**
+     * Records the resourceVersion for the uid, typically after the coordinator has updated the resource itself.
+     */
+    public synchronized void mark(String uid, String resourceVersion) {
+        final long now = clock.getAsLong();
+        final Entry entry = entries.get(uid);
+        if (entry == null || entry.isExpired(now, timeToLiveMillis)) {
+            entries.put(uid, new Entry(resourceVersion, now));
+        } else {
+            entry.advanceTo(resourceVersion, now);
+        }
+    }
+
+    public synchronized void remove(String uid) {
+        entries.remove(uid);
+    }
+
+    /**
+     * Removes all uids that do not satisfy the given predicate, as well as all expired entries.
+     *
+     * @return the number of entries removed
+     */
+    public synchronized int retainAll(Predicate<String> exists) {
+        final long now = clock.getAsLong();
+        final int sizeBefore = entries.size();
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now, timeToLiveMillis) || !exists.test(e.getKey()));
+        return sizeBefore - entries.size();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+
+        //Either the numeric high-water mark, or -1 with the opaque resourceVersion kept as is
+        private long highWaterMark;
+        private String opaqueResourceVersion;
+        private long lastSeenAt;
+
+        private Entry(String resourceVersion, long now) {
+            set(resourceVersion);
+            this.lastSeenAt = now;
+        }
+
+        private boolean isExpired(long now, long timeToLiveMillis) {
+            return now - lastSeenAt > timeToLiveMillis;
+        }
+
+        private boolean advanceTo(String resourceVersion, long now) {
+            final OptionalLong numericVersion = CoordinatorUtils.parseResourceVersion(resourceVersion);
+            final boolean isNew;
+            if (numericVersion.isPresent() && highWaterMark >= 0) {
+                isNew = numericVersion.getAsLong() > highWaterMark;
+            } else {
+                isNew = resourceVersion == null || !resourceVersion.equals(currentVersion());
+            }
+            if (isNew) {
+                set(resourceVersion);
+                lastSeenAt = now;
+            }
+            return isNew;
+        }
+
+        private String currentVersion() {
+            return highWaterMark >= 0 ? String.valueOf(highWaterMark) : opaqueResourceVersion;
+        }
+
+        private void set(String resourceVersion) {
+            final OptionalLong numericVersion = CoordinatorUtils.parseResourceVersion(resourceVersion);
+            if (numericVersion.isPresent()) {
+                this.highWaterMark = numericVersion.getAsLong();
+                this.opaqueResourceVersion = null;
+            } else {
+                this.highWaterMark = -1;
+                this.opaqueResourceVersion = resourceVersion;
+            }
+        }
+    }
+}
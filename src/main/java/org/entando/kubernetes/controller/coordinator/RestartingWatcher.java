@@ -35,31 +35,52 @@ public interface RestartingWatcher<T> extends Watcher<T> {
 
     void issueOperatorDeathEvent(Event event);
 
+    /**
+     * The governor that schedules the reconnects of this watcher.
+     */
+    WatchReconnectGovernor getReconnectGovernor();
+
+    /**
+     * Invoked when the server can no longer serve events from the resourceVersion the watch was started from (HTTP 410 Gone).
+     * By default, the watch is simply restarted.
+     */
+    default void onResourceVersionExpired() {
+        getRestartingAction().run();
+    }
+
     @Override
     default void onClose(WatcherException cause) {
-        final StringWriter stringWriter = new StringWriter();
-        cause.printStackTrace(new PrintWriter(stringWriter));
-        String message = stringWriter.toString();
-        if (message.contains("too old")) {
+        if (CoordinatorUtils.isHttpGone(cause)) {
             Logger.getLogger(getClass().getName())
                     .log(Level.WARNING, () -> "EntandoResourceObserver closed due to out of date resourceVersion. Reconnecting ... ");
-            getRestartingAction().run();
+            getReconnectGovernor().reconnect(this, this::onResourceVersionExpired, "gone");
         } else {
             Logger.getLogger(getClass().getName())
-                    .log(Level.SEVERE, cause, () -> "EntandoResourceObserver closed. Can't reconnect. The container should restart now.");
-            Event event = new EventBuilder()
-                    .withNewMetadata()
-                    .withName(EntandoOperatorSpiConfig.getControllerPodName() + "-restart-" + NameUtils.randomNumeric(4))
-                    .addToLabels("entando-operator-restarted", "true")
-                    .endMetadata()
-                    .withCount(1)
-                    .withFirstTimestamp(FormatUtils.format(LocalDateTime.now()))
-                    .withLastTimestamp(FormatUtils.format(LocalDateTime.now()))
-                    .withMessage(message)
-                    .build();
-            issueOperatorDeathEvent(event);
-            Liveness.dead();
+                    .log(Level.WARNING, cause, () -> "EntandoResourceObserver closed unexpectedly. Reconnecting ... ");
+            getReconnectGovernor().retry(this, getRestartingAction(), cause);
         }
+    }
 
+    /**
+     * Invoked once the watch has failed too many times in a row to keep trying. Issues the death event and fails the liveness
+     * probe so that the container gets restarted.
+     */
+    default void giveUp(Throwable cause) {
+        final StringWriter stringWriter = new StringWriter();
+        cause.printStackTrace(new PrintWriter(stringWriter));
+        Logger.getLogger(getClass().getName())
+                .log(Level.SEVERE, cause, () -> "EntandoResourceObserver closed. Can't reconnect. The container should restart now.");
+        Event event = new EventBuilder()
+                .withNewMetadata()
+                .withName(EntandoOperatorSpiConfig.getControllerPodName() + "-restart-" + NameUtils.randomNumeric(4))
+                .addToLabels("entando-operator-restarted", "true")
+                .endMetadata()
+                .withCount(1)
+                .withFirstTimestamp(FormatUtils.format(LocalDateTime.now()))
+                .withLastTimestamp(FormatUtils.format(LocalDateTime.now()))
+                .withMessage(stringWriter.toString())
+                .build();
+        issueOperatorDeathEvent(event);
+        Liveness.dead();
     }
 }
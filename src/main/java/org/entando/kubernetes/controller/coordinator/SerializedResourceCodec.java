@@ -0,0 +1,157 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.entando.kubernetes.controller.spi.common.ExceptionUtils.ioSafe;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+
+/**
+ * Shared, pre-configured Jackson readers and writers for Entando custom resources. ObjectMappers are expensive to create,
+ * and ObjectReaders and ObjectWriters are immutable and thread safe, so they are created once and shared. Conversions
+ * between the generic Map representation used by the raw custom resource client and SerializedEntandoResource go
+ * through Jackson's token buffers rather than an intermediate JSON String.
+ */
+public final class SerializedResourceCodec {
+
+    private static final String SPEC = "spec";
+    private static final String STATUS = "status";
+    private static final Set<String> ALWAYS_PATCHED = Set.of("phase", "observedGeneration");
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectReader RESOURCE_READER = OBJECT_MAPPER.readerFor(SerializedEntandoResource.class);
+    private static final ObjectReader LAZY_RESOURCE_READER = OBJECT_MAPPER.readerFor(LazySerializedEntandoResource.class);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+    private static final ObjectReader MAP_READER = OBJECT_MAPPER.readerFor(MAP_TYPE);
+    //NB! Resolve the serializer from the runtime type so that the spec of lazily decoded resources is included
+    private static final ObjectWriter RESOURCE_WRITER = OBJECT_MAPPER.writer();
+
+    private SerializedResourceCodec() {
+
+    }
+
+    /**
+     * Decodes a resource received from a watch, either lazily or in its entirety. Callers resolve the decoding mode once rather
+     * than for every event.
+     */
+    public static SerializedEntandoResource readWatchedResource(String json, boolean lazySpecDecoding) {
+        if (lazySpecDecoding) {
+            return readLazily(json);
+        }
+        return read(json);
+    }
+
+    /**
+     * Decodes the entire resource, including its spec.
+     */
+    public static SerializedEntandoResource read(String json) {
+        return ioSafe(() -> RESOURCE_READER.readValue(json));
+    }
+
+    /**
+     * Decodes the metadata and status of the resource only. The spec is skipped by the parser and only materialized
+     * from the original JSON when it is accessed for the first time.
+     */
+    public static LazySerializedEntandoResource readLazily(String json) {
+        return ioSafe(() -> {
+            final LazySerializedEntandoResource resource = LAZY_RESOURCE_READER.readValue(json);
+            resource.retainSpecSource(json);
+            return resource;
+        });
+    }
+
+    /**
+     * Converts the generic Map representation of a resource returned by the raw custom resource client.
+     */
+    public static SerializedEntandoResource fromMap(Map<String, Object> map) {
+        return OBJECT_MAPPER.convertValue(map, SerializedEntandoResource.class);
+    }
+
+    public static Map<String, Object> toMap(SerializedEntandoResource resource) {
+        return OBJECT_MAPPER.convertValue(resource, MAP_TYPE);
+    }
+
+    public static String toJson(SerializedEntandoResource resource) {
+        return ioSafe(() -> RESOURCE_WRITER.writeValueAsString(resource));
+    }
+
+    /**
+     * Builds a JSON merge patch that only contains the entries of the status that differ between the two representations of
+     * the resource. The phase and observedGeneration are always included, as the original representation may be older than
+     * the state on the server. Entries that were removed are sent as null, which is how a merge patch removes them.
+     */
+    @SuppressWarnings("unchecked")
+    public static String toStatusMergePatch(Map<String, Object> original, SerializedEntandoResource updated) {
+        final Map<String, Object> originalStatus = (Map<String, Object>) original.getOrDefault(STATUS, Collections.emptyMap());
+        final Map<String, Object> updatedStatus = (Map<String, Object>) toMap(updated).getOrDefault(STATUS, Collections.emptyMap());
+        final Map<String, Object> delta = mergePatchOf(originalStatus, updatedStatus);
+        ALWAYS_PATCHED.stream().filter(updatedStatus::containsKey).forEach(key -> delta.put(key, updatedStatus.get(key)));
+        //Map.of does not allow the null values of removed entries
+        return ioSafe(() -> RESOURCE_WRITER.writeValueAsString(Collections.singletonMap(STATUS, delta)));
+    }
+
+    /**
+     * Nested objects are merged by the server, so they are compared entry by entry. Anything else, including lists, is
+     * replaced as a whole.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mergePatchOf(Map<String, Object> original, Map<String, Object> updated) {
+        final Map<String, Object> delta = new LinkedHashMap<>();
+        updated.forEach((key, value) -> {
+            final Object originalValue = original.get(key);
+            if (value instanceof Map && originalValue instanceof Map) {
+                final Map<String, Object> nested = mergePatchOf((Map<String, Object>) originalValue, (Map<String, Object>) value);
+                if (!nested.isEmpty()) {
+                    delta.put(key, nested);
+                }
+            } else if (!Objects.equals(value, originalValue) || !original.containsKey(key)) {
+                delta.put(key, value);
+            }
+        });
+        original.keySet().stream().filter(key -> !updated.containsKey(key)).forEach(key -> delta.put(key, null));
+        return delta;
+    }
+
+    static Map<String, Object> readSpec(String json) {
+        return ioSafe(() -> {
+            try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json)) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        final String fieldName = parser.getCurrentName();
+                        parser.nextToken();
+                        if (SPEC.equals(fieldName)) {
+                            return MAP_READER.readValue(parser);
+                        }
+                        parser.skipChildren();
+                    }
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseSpec;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Splits the namespaces amongst the coordinator replicas. Every replica keeps a Lease of its own in the controller namespace
+ * and considers the holders of the Leases that it has seen renewed within their lease duration to be the members. The
+ * namespaces are assigned to the members with a ConsistentHashRing, so that a replica joining or leaving only moves a share of
+ * the namespaces. A replica that cannot renew its own Lease for two thirds of the lease duration gives up all of its
+ * namespaces, before the other members could consider it gone. Renewals run on the lease timer, and the rebalancing that follows
+ * a change of members is handed over to the housekeeping lane.
+ * <p>
+ * Each replica works from its own view of the Leases, so right after a change of members the previous owner of a namespace may
+ * not have noticed yet that it lost it. A namespace is therefore given up as soon as the ring assigns it elsewhere, but only
+ * taken on once the ring has assigned it to this replica for a full lease duration. By then the previous owner has either seen
+ * the change, or has failed to renew its Lease for long enough to have given up all of its namespaces.
+ */
+public class ShardMembership {
+
+    public static final String MEMBER_LEASE_PREFIX = "entando-coordinator-member-";
+    public static final Map<String, String> MEMBER_LABELS = Map.of("entando.org/coordinator-member", "true");
+    private static final Logger LOGGER = Logger.getLogger(ShardMembership.class.getName());
+    private final SimpleKubernetesClient client;
+    private final String identity;
+    private final String leaseName;
+    private final CoordinatorExecutors executors;
+    private final int leaseDurationSeconds;
+    private final long retryPeriodMillis;
+    private final Runnable ownershipChangedDispatcher;
+    private final Map<String, Observation> observations = new HashMap<>();
+    private volatile ConsistentHashRing ring = ConsistentHashRing.EMPTY;
+    //The rings adopted within the last lease duration, and the one adopted before them, oldest first
+    private volatile List<Adoption> adoptions = List.of();
+    private boolean closed;
+    private long renewedAt;
+    private ScheduledFuture<?> ticker;
+
+    public ShardMembership(SimpleKubernetesClient client, String identity, CoordinatorExecutors executors,
+            Runnable onOwnershipChanged) {
+        this(client, identity, executors, ControllerCoordinatorConfig.getLeaderElectionLeaseDurationSeconds(),
+                ControllerCoordinatorConfig.getLeaderElectionRetryPeriodMillis(), onOwnershipChanged);
+    }
+
+    /**
+     * Creates the membership of the given replica. The callback is invoked on the housekeeping lane whenever the members change.
+     * Changes that follow each other before the callback has started are coalesced into one invocation.
+     */
+    public ShardMembership(SimpleKubernetesClient client, String identity, CoordinatorExecutors executors, int leaseDurationSeconds,
+            long retryPeriodMillis, Runnable onOwnershipChanged) {
+        this.client = client;
+        this.identity = identity;
+        this.leaseName = MEMBER_LEASE_PREFIX + CoordinatorUtils.sha256Of(Map.of("identity", identity)).substring(0, 10);
+        this.executors = executors;
+        this.leaseDurationSeconds = leaseDurationSeconds;
+        this.retryPeriodMillis = retryPeriodMillis;
+        this.ownershipChangedDispatcher = CoordinatorExecutors.coalescing(executors.getHousekeepingLane(), onOwnershipChanged);
+    }
+
+    /**
+     * Joins straight away, so that the replica knows its namespaces before it starts observing, and then keeps renewing its
+     * Lease and following the other members every retry period.
+     */
+    public synchronized void start() {
+        CoordinatorMetrics.registerGauge("entando_shard_members", () -> ring.getMembers().size());
+        tick();
+        this.ticker = executors.getLeaseTimer().scheduleWithFixedDelay(this::tick, retryPeriodMillis, retryPeriodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns true if the namespace has been assigned to this replica by every ring adopted within the last lease duration.
+     */
+    public boolean owns(String namespace) {
+        final long handOverStart = nowMillis() - TimeUnit.SECONDS.toMillis(leaseDurationSeconds);
+        final List<Adoption> current = adoptions;
+        for (int i = current.size() - 1; i >= 0; i--) {
+            final Adoption adoption = current.get(i);
+            if (!adoption.ring.ownerOf(namespace).map(identity::equals).orElse(false)) {
+                return false;
+            }
+            if (adoption.adoptedAt <= handOverStart) {
+                return true;
+            }
+        }
+        //Not assigned to this replica for long enough yet
+        return false;
+    }
+
+    public Set<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    /**
+     * Leaves the group by deleting this replica's Lease, so that the remaining members take its namespaces over at their next
+     * renewal rather than once the Lease has expired.
+     */
+    public synchronized void close() {
+        closed = true;
+        Optional.ofNullable(ticker).ifPresent(future -> future.cancel(false));
+        try {
+            client.deleteControllerLease(leaseName);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, e, () -> format("Could not delete the Lease %s. It will expire instead.", leaseName));
+        }
+        ring = ConsistentHashRing.EMPTY;
+        adoptions = List.of();
+        CoordinatorMetrics.unregisterGauge("entando_shard_members");
+    }
+
+    private synchronized void tick() {
+        if (closed) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        try {
+            renewOwnLease(now);
+            final Set<String> members = new TreeSet<>();
+            members.add(identity);
+            final Set<String> seen = new HashSet<>();
+            for (Lease lease : client.loadControllerLeases(MEMBER_LABELS)) {
+                final String name = lease.getMetadata().getName();
+                final String resourceVersion = lease.getMetadata().getResourceVersion();
+                seen.add(name);
+                final Observation observation = observations.merge(name, new Observation(resourceVersion, now),
+                        (previous, next) -> previous.resourceVersion.equals(next.resourceVersion) ? previous : next);
+                final String member = Optional.ofNullable(lease.getSpec()).map(LeaseSpec::getHolderIdentity).orElse(null);
+                if (member != null && now - observation.observedAt < TimeUnit.SECONDS.toMillis(durationOf(lease))) {
+                    members.add(member);
+                } else if (!name.equals(leaseName)) {
+                    //Left behind by a replica that died
+                    client.deleteControllerLease(name);
+                }
+            }
+            observations.keySet().retainAll(seen);
+            updateRing(members);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, e, () -> format("Could not renew the Lease %s or load the other members", leaseName));
+            if (now - renewedAt > TimeUnit.SECONDS.toMillis(leaseDurationSeconds) * 2 / 3) {
+                updateRing(Set.of());
+            }
+        }
+    }
+
+    private void renewOwnLease(long now) {
+        final Lease current = client.loadControllerLease(leaseName);
+        if (current == null) {
+            client.createControllerLease(new LeaseBuilder()
+                    .withNewMetadata()
+                    .withName(leaseName)
+                    .withNamespace(client.getControllerNamespace())
+                    .withLabels(MEMBER_LABELS)
+                    .endMetadata()
+                    .withNewSpec()
+                    .withHolderIdentity(identity)
+                    .withLeaseDurationSeconds(leaseDurationSeconds)
+                    .withAcquireTime(ZonedDateTime.now())
+                    .withRenewTime(ZonedDateTime.now())
+                    .endSpec()
+                    .build());
+        } else {
+            current.getSpec().setHolderIdentity(identity);
+            current.getSpec().setLeaseDurationSeconds(leaseDurationSeconds);
+            current.getSpec().setRenewTime(ZonedDateTime.now());
+            client.updateControllerLease(current);
+        }
+        renewedAt = now;
+    }
+
+    private void updateRing(Set<String> members) {
+        if (!members.equals(ring.getMembers())) {
+            ring = new ConsistentHashRing(members);
+            adopt(ring);
+            CoordinatorMetrics.increment("entando_shard_rebalances");
+            LOGGER.log(Level.INFO, () -> format("The coordinator replicas sharing the namespaces are now %s", members));
+            //Give up the namespaces that moved away now, and take on the ones that moved here once they have been handed over
+            ownershipChangedDispatcher.run();
+            executors.getLeaseTimer().schedule(ownershipChangedDispatcher, leaseDurationSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void adopt(ConsistentHashRing adopted) {
+        final long now = nowMillis();
+        final long handOverStart = now - TimeUnit.SECONDS.toMillis(leaseDurationSeconds);
+        final List<Adoption> retained = new ArrayList<>();
+        for (Adoption adoption : adoptions) {
+            if (adoption.adoptedAt <= handOverStart) {
+                //Only the last ring adopted before the hand-over period still matters
+                retained.clear();
+            }
+            retained.add(adoption);
+        }
+        retained.add(new Adoption(adopted, now));
+        adoptions = List.copyOf(retained);
+    }
+
+    //The same clock as the lease timer, so that the scheduled rebalance never runs before the hand-over period has passed
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private int durationOf(Lease lease) {
+        return Optional.ofNullable(lease.getSpec().getLeaseDurationSeconds()).orElse(leaseDurationSeconds);
+    }
+
+    private static class Adoption {
+
+        private final ConsistentHashRing ring;
+        private final long adoptedAt;
+
+        private Adoption(ConsistentHashRing ring, long adoptedAt) {
+            this.ring = ring;
+            this.adoptedAt = adoptedAt;
+        }
+    }
+
+    private static class Observation {
+
+        private final String resourceVersion;
+        private final long observedAt;
+
+        private Observation(String resourceVersion, long observedAt) {
+            this.resourceVersion = resourceVersion;
+            this.observedAt = observedAt;
+        }
+    }
+}
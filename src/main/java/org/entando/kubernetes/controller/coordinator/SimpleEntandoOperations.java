@@ -19,7 +19,8 @@ package org.entando.kubernetes.controller.coordinator;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
+import java.util.Set;
+import java.util.function.Consumer;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
 
 public interface SimpleEntandoOperations extends DeathEventIssuer {
@@ -28,16 +29,41 @@ public interface SimpleEntandoOperations extends DeathEventIssuer {
 
     SimpleEntandoOperations inAnyNamespace();
 
-    Watch watch(SerializedResourceWatcher rldEntandoResourceObserver);
+    /**
+     * Returns operations that list and watch the resources in all namespaces with a single request each, but only keep and pass
+     * on the resources in the given namespaces. This requires access to the resources in all namespaces.
+     */
+    SimpleEntandoOperations inNamespaces(Set<String> namespaces);
+
+    default Watch watch(SerializedResourceWatcher rldEntandoResourceObserver) {
+        return watch(rldEntandoResourceObserver, null);
+    }
+
+    /**
+     * Watches the resources from the given resourceVersion, typically the one returned by the list that the observer's state was
+     * built from, so that the events between the list and the watch are neither missed nor replayed.
+     */
+    Watch watch(SerializedResourceWatcher rldEntandoResourceObserver, String resourceVersion);
 
     List<SerializedEntandoResource> list();
 
+    /**
+     * Lists the resources from the server a page at a time and brings the local store in line with each page as it arrives. The
+     * resources on each page that were added or modified compared to the store are handed to the pageConsumer once the page has
+     * been applied, and the resources found to be deleted once the last page has arrived are handed to the deletionConsumer, so
+     * that only one page needs to be held in memory at a time.
+     *
+     * @return the resourceVersion of the list, if known
+     */
+    String relistInPages(Consumer<List<SerializedEntandoResource>> pageConsumer,
+            Consumer<List<SerializedEntandoResource>> deletionConsumer);
+
+    EntandoResourceStore getResourceStore();
+
     SerializedEntandoResource removeAnnotation(SerializedEntandoResource r, String name);
 
     SerializedEntandoResource putAnnotation(SerializedEntandoResource r, String name, String value);
 
-    void removeSuccessfullyCompletedPods(SerializedEntandoResource resource) throws TimeoutException;
-
     CustomResourceDefinitionContext getDefinitionContext();
 
     String getControllerNamespace();
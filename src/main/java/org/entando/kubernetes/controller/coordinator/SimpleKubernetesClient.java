@@ -18,14 +18,17 @@ package org.entando.kubernetes.controller.coordinator;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinition;
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CompletionStage;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
 import org.entando.kubernetes.controller.support.common.EntandoOperatorConfig;
 import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
@@ -46,14 +49,70 @@ public interface SimpleKubernetesClient extends DeathEventIssuer {
 
     Pod startPod(Pod pod);
 
-    void removePodsAndWait(String namespace, Map<String, String> labels) throws TimeoutException;
+    /**
+     * Deletes the given pods, one request per pod, without waiting for them to disappear. Pods that were not given are not
+     * affected, even if they carry the same labels.
+     */
+    void deletePods(String namespace, Collection<Pod> pods);
+
+    /**
+     * Deletes the pods with the given labels. The result completes once the pods are gone, or fails with a TimeoutException once
+     * the pod shutdown timeout has expired.
+     */
+    CompletionStage<Void> removePods(String namespace, Map<String, String> labels);
+
+    /**
+     * Returns the index of the deployer pods in the controller namespace, starting it if necessary.
+     */
+    DeployerPodIndex getDeployerPodIndex();
+
+    /**
+     * Returns the governor that schedules the reconnects of all the watches started through this client.
+     */
+    WatchReconnectGovernor getWatchReconnectGovernor();
+
+    List<Pod> loadPods(String namespace, Map<String, String> labels);
+
+    /**
+     * Lists the pods with the given labels, along with the resourceVersion of the list to start watching them from.
+     */
+    PodList listPods(String namespace, Map<String, String> labels);
+
+    /**
+     * Watches the pods with the given labels from the given resourceVersion, typically that of a list, so that no changes are
+     * missed between the list and the watch.
+     */
+    Watch watchPods(String namespace, Map<String, String> labels, String resourceVersion, Watcher<Pod> podWatcher);
 
     ConfigMap findOrCreateControllerConfigMap(String name);
 
     ConfigMap patchControllerConfigMap(ConfigMap configMap);
 
+    List<ConfigMap> loadControllerConfigMaps(Map<String, String> labels);
+
+    void deleteControllerConfigMap(String name);
+
     void watchControllerConfigMap(String s, Watcher<ConfigMap> configMapWatcher);
 
+    void watchControllerSecret(String s, Watcher<Secret> secretWatcher);
+
+    Lease loadControllerLease(String name);
+
+    /**
+     * Creates the given Lease, failing with a KubernetesClientException if it already exists.
+     */
+    Lease createControllerLease(Lease lease);
+
+    /**
+     * Replaces the given Lease, failing with a KubernetesClientException if it has been modified since the resourceVersion in
+     * its metadata.
+     */
+    Lease updateControllerLease(Lease lease);
+
+    List<Lease> loadControllerLeases(Map<String, String> labels);
+
+    void deleteControllerLease(String name);
+
     Watch watchCustomResourceDefinitions(Watcher<CustomResourceDefinition> customResourceDefinitionWatcher);
 
     Collection<CustomResourceDefinition> loadCustomResourceDefinitionsOfInterest();
@@ -61,4 +120,9 @@ public interface SimpleKubernetesClient extends DeathEventIssuer {
     SimpleEntandoOperations getOperations(CustomResourceDefinitionContext context);
 
     void deleteControllerSecret(String secretName);
+
+    /**
+     * Emits the events that are still pending and stops the background work of the client.
+     */
+    void close();
 }
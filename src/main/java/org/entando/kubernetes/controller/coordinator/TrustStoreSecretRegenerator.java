@@ -16,40 +16,167 @@
 
 package org.entando.kubernetes.controller.coordinator;
 
+import static java.lang.String.format;
+
+import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.Secret;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfig;
 import org.entando.kubernetes.controller.spi.common.TrustStoreHelper;
 
-public class TrustStoreSecretRegenerator {
-
-    private static final AtomicReference<Secret> LAST_CA_SECRET = new AtomicReference<>();
+/**
+ * Keeps the truststore Secret in the controller namespace in sync with the certificate authority Secret. The CA Secret is watched
+ * and the truststore is only rebuilt when the content of the CA Secret changes, as determined by a fingerprint that is also
+ * recorded on the truststore Secret so that a restarted coordinator does not rebuild it either. The truststore Secret is
+ * watched too, so that it is rebuilt if it is deleted or no longer carries the fingerprint of the current CA Secret. Controller
+ * launches never need to touch either Secret.
+ */
+public class TrustStoreSecretRegenerator implements RestartingWatcher<Secret> {
 
-    private TrustStoreSecretRegenerator() {
+    private static final Logger LOGGER = Logger.getLogger(TrustStoreSecretRegenerator.class.getName());
+    private static final String NO_CA = "";
+    private final SimpleKubernetesClient client;
+    private final Executor executor;
+    private final Optional<String> caSecretName;
+    private final BooleanSupplier mayWrite;
+    private final TrustStoreWatcher trustStoreWatcher = new TrustStoreWatcher();
+    private String lastFingerprint;
+    private volatile boolean closed;
 
+    /**
+     * Brings the truststore up to date before returning, so that the first controllers launched can rely on it, and then keeps
+     * it up to date on the given executor. Whoever starts writing calls {@link #verify()}.
+     */
+    public TrustStoreSecretRegenerator(SimpleKubernetesClient client, Executor executor, BooleanSupplier mayWrite) {
+        this.client = client;
+        this.executor = executor;
+        this.mayWrite = mayWrite;
+        this.caSecretName = EntandoOperatorSpiConfig.getCertificateAuthoritySecretName();
+        reconcile(caSecretName.map(client::loadControllerSecret).orElse(null));
+        getRestartingAction().run();
+        caSecretName.ifPresent(name -> trustStoreWatcher.getRestartingAction().run());
     }
 
+    /**
+     * Brings the truststore up to date with the current CA Secret straight away.
+     */
     public static void regenerateIfNecessary(SimpleKubernetesClient client) {
-        Optional<Secret> caSecret = EntandoOperatorSpiConfig.getCertificateAuthoritySecretName()
-                .flatMap(name -> Optional.ofNullable(client.loadControllerSecret(name)));
-        LAST_CA_SECRET.getAndUpdate(lastSecret -> {
-            if (caSecret.isPresent()) {
-                Secret newValue = caSecret.get();
-                if (lastSecret == null
-                        || client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET) == null
-                        || !lastSecret.getMetadata().getUid().equals(newValue.getMetadata().getUid())
-                        || !lastSecret.getMetadata().getResourceVersion().equals(newValue.getMetadata().getResourceVersion())
-                ) {
-                    client.overwriteControllerSecret(TrustStoreHelper.newTrustStoreSecret(newValue));
-                    return newValue;
-                } else {
-                    return lastSecret;
-                }
-            } else {
+        reconcile(client, EntandoOperatorSpiConfig.getCertificateAuthoritySecretName().map(client::loadControllerSecret).orElse(null),
+                null);
+    }
+
+    @Override
+    public void eventReceived(Action action, Secret caSecret) {
+        if (!closed) {
+            executor.execute(() -> reconcile(action == Action.DELETED ? null : caSecret));
+        }
+    }
+
+    @Override
+    public Runnable getRestartingAction() {
+        return () -> caSecretName.ifPresent(name -> client.watchControllerSecret(name, this));
+    }
+
+    @Override
+    public void issueOperatorDeathEvent(Event event) {
+        client.issueOperatorDeathEvent(event);
+    }
+
+    @Override
+    public WatchReconnectGovernor getReconnectGovernor() {
+        return client.getWatchReconnectGovernor();
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Rebuilds the truststore Secret straight away if it is missing or does not carry the fingerprint of the current CA Secret.
+     */
+    public void verify() {
+        reconcile(caSecretName.map(client::loadControllerSecret).orElse(null), true);
+    }
+
+    void reconcile(Secret caSecret) {
+        reconcile(caSecret, false);
+    }
+
+    private synchronized void reconcile(Secret caSecret, boolean verifyTrustStore) {
+        if (!mayWrite.getAsBoolean()) {
+            return;
+        }
+        try {
+            //Without the last fingerprint, the fingerprint recorded on the truststore Secret is verified instead
+            lastFingerprint = reconcile(client, caSecret, verifyTrustStore ? null : lastFingerprint);
+        } catch (RuntimeException e) {
+            //The next change to the CA Secret or the next restart of the watch will try again
+            LOGGER.log(Level.SEVERE, e, () -> "Could not regenerate the truststore Secret");
+        }
+    }
+
+    private static String reconcile(SimpleKubernetesClient client, Secret caSecret, String lastFingerprint) {
+        final String fingerprint = caSecret == null ? NO_CA : CoordinatorUtils.sha256Of(
+                Optional.ofNullable(caSecret.getData()).orElse(Map.of()));
+        if (fingerprint.equals(lastFingerprint)) {
+            return fingerprint;
+        }
+        if (caSecret == null) {
+            if (client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET) != null) {
                 client.deleteControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET);
-                return null;
             }
-        });
+        } else if (!fingerprint.equals(fingerprintOf(client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET)))) {
+            final Secret trustStoreSecret = TrustStoreHelper.newTrustStoreSecret(caSecret);
+            final Map<String, String> annotations = new HashMap<>(
+                    Optional.ofNullable(trustStoreSecret.getMetadata().getAnnotations()).orElse(Map.of()));
+            annotations.put(AnnotationNames.CA_FINGERPRINT.getName(), fingerprint);
+            trustStoreSecret.getMetadata().setAnnotations(annotations);
+            client.overwriteControllerSecret(trustStoreSecret);
+            CoordinatorMetrics.increment("entando_truststore_regenerations");
+            LOGGER.log(Level.INFO, () -> format("Regenerated the truststore Secret from the CA Secret %s",
+                    caSecret.getMetadata().getName()));
+        }
+        return fingerprint;
+    }
+
+    private static String fingerprintOf(Secret trustStoreSecret) {
+        return Optional.ofNullable(trustStoreSecret)
+                .map(secret -> secret.getMetadata().getAnnotations())
+                .map(annotations -> annotations.get(AnnotationNames.CA_FINGERPRINT.getName()))
+                .orElse(null);
+    }
+
+    /**
+     * Rebuilds the truststore Secret when it is deleted or changed by something other than this regenerator.
+     */
+    private class TrustStoreWatcher implements RestartingWatcher<Secret> {
+
+        @Override
+        public void eventReceived(Action action, Secret trustStoreSecret) {
+            if (!closed) {
+                executor.execute(TrustStoreSecretRegenerator.this::verify);
+            }
+        }
+
+        @Override
+        public Runnable getRestartingAction() {
+            return () -> client.watchControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET, this);
+        }
+
+        @Override
+        public void issueOperatorDeathEvent(Event event) {
+            client.issueOperatorDeathEvent(event);
+        }
+
+        @Override
+        public WatchReconnectGovernor getReconnectGovernor() {
+            return client.getWatchReconnectGovernor();
+        }
     }
 }
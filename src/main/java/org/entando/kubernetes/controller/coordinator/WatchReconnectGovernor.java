@@ -0,0 +1,147 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static java.lang.String.format;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coordinates the reconnection of all the watches the coordinator keeps open. When the API server restarts, every watch is
+ * closed at the same time. Rather than having them all reconnect immediately, reconnects are delayed with exponential
+ * backoff and jitter, and only a limited number of them are allowed to run at the same time. A watcher is only given up on
+ * once it has failed a configurable number of times in a row. Re-opening the watch is not enough to start the count again, as
+ * a watch may be closed as soon as it has been opened. Only once the watch has delivered an event, or has stayed open for a
+ * while, are its earlier failures forgotten.
+ */
+public class WatchReconnectGovernor {
+
+    private static final Logger LOGGER = Logger.getLogger(WatchReconnectGovernor.class.getName());
+    private final Map<RestartingWatcher<?>, Integer> consecutiveFailures = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<RestartingWatcher<?>, Long> reconnectedAt = Collections.synchronizedMap(new WeakHashMap<>());
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger pendingReconnects = new AtomicInteger();
+    private final AtomicInteger activeReconnects = new AtomicInteger();
+    private final Supplier<Integer> pendingReconnectsGauge = pendingReconnects::get;
+    private final Supplier<Integer> activeReconnectsGauge = activeReconnects::get;
+
+    public WatchReconnectGovernor() {
+        this(ControllerCoordinatorConfig.getMaximumConcurrentWatchReconnects());
+    }
+
+    public WatchReconnectGovernor(int maximumConcurrentReconnects) {
+        //The pool size is what caps the number of reconnects running at the same time
+        this.scheduler = Executors.newScheduledThreadPool(maximumConcurrentReconnects, runnable -> {
+            final Thread thread = new Thread(runnable, "watch-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CoordinatorMetrics.registerGauge("entando_watch_reconnects_pending", pendingReconnectsGauge);
+        CoordinatorMetrics.registerGauge("entando_watch_reconnects_active", activeReconnectsGauge);
+    }
+
+    /**
+     * Schedules a reconnect that is part of normal operation, such as after the server closed the watch gracefully or after
+     * the resourceVersion expired. These are not counted as failures.
+     */
+    public void reconnect(RestartingWatcher<?> watcher, Runnable reconnectAction, String reason) {
+        schedule(watcher, reconnectAction, reason, jitter(ControllerCoordinatorConfig.getWatchReconnectInitialDelayMillis()));
+    }
+
+    /**
+     * Schedules a reconnect after the watch failed, backing off exponentially with the number of consecutive failures. Once the
+     * failure threshold has been reached, the watcher gives up, which results in the container being restarted.
+     */
+    public void retry(RestartingWatcher<?> watcher, Runnable reconnectAction, Throwable cause) {
+        final Long lastReconnect = reconnectedAt.get(watcher);
+        if (lastReconnect != null
+                && System.currentTimeMillis() - lastReconnect >= ControllerCoordinatorConfig.getWatchStableIntervalMillis()) {
+            consecutiveFailures.remove(watcher);
+        }
+        final int failures = consecutiveFailures.merge(watcher, 1, Integer::sum);
+        if (failures >= ControllerCoordinatorConfig.getWatchFailureThreshold()) {
+            consecutiveFailures.remove(watcher);
+            CoordinatorMetrics.increment("entando_watch_escalations_total", "watcher", nameOf(watcher));
+            watcher.giveUp(cause);
+        } else {
+            schedule(watcher, reconnectAction, "failure", jitter(backoff(failures)));
+        }
+    }
+
+    /**
+     * To be called when the watch has delivered an event or bookmark, which shows that the reconnect really succeeded.
+     */
+    public void confirmHealthy(RestartingWatcher<?> watcher) {
+        consecutiveFailures.remove(watcher);
+    }
+
+    public void shutDown() {
+        scheduler.shutdownNow();
+        CoordinatorMetrics.unregisterGauge("entando_watch_reconnects_pending", pendingReconnectsGauge);
+        CoordinatorMetrics.unregisterGauge("entando_watch_reconnects_active", activeReconnectsGauge);
+    }
+
+    private void schedule(RestartingWatcher<?> watcher, Runnable reconnectAction, String reason, long delay) {
+        LOGGER.log(Level.INFO, () -> format("Reconnecting %s in %sms (%s)", nameOf(watcher), delay, reason));
+        CoordinatorMetrics.increment("entando_watch_reconnects_total", "watcher", nameOf(watcher), "reason", reason);
+        CoordinatorMetrics.recordMillis("entando_watch_reconnect_delay", delay, "watcher", nameOf(watcher));
+        pendingReconnects.incrementAndGet();
+        scheduler.schedule(() -> {
+            pendingReconnects.decrementAndGet();
+            activeReconnects.incrementAndGet();
+            try {
+                reconnectedAt.put(watcher, System.currentTimeMillis());
+                reconnectAction.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e, () -> format("Could not reconnect %s", nameOf(watcher)));
+                retry(watcher, reconnectAction, e);
+            } finally {
+                activeReconnects.decrementAndGet();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    static long backoff(int consecutiveFailures) {
+        final long initialDelay = ControllerCoordinatorConfig.getWatchReconnectInitialDelayMillis();
+        final long maximumDelay = ControllerCoordinatorConfig.getWatchReconnectMaximumDelayMillis();
+        final int doublings = Math.min(Math.max(consecutiveFailures - 1, 0), 20);
+        return Math.min(maximumDelay, initialDelay * (1L << doublings));
+    }
+
+    /**
+     * Picks a random delay between half the given delay and the full delay, so that watchers that failed at the same time do
+     * not all reconnect at the same time.
+     */
+    static long jitter(long delay) {
+        final long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    private static String nameOf(RestartingWatcher<?> watcher) {
+        return watcher.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.controller.support.common.EntandoOperatorConfigProperty;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class CompletedPodSweeperTest {
+
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final CoordinatorExecutors executors = new CoordinatorExecutors(1, 1);
+    private final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(
+            new TestResource().withNames("my-namespace", "my-resource"));
+    private CompletedPodSweeper sweeper;
+
+    @BeforeEach
+    void activateGarbageCollection() {
+        System.setProperty(EntandoOperatorConfigProperty.ENTANDO_K8S_OPERATOR_GC_CONTROLLER_PODS.getJvmSystemProperty(), "true");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_CONTROLLER_REMOVAL_DELAY.getJvmSystemProperty(), "60");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        sweeper.close();
+        client.getDeployerPodIndex().close();
+        executors.shutDown();
+        System.clearProperty(EntandoOperatorConfigProperty.ENTANDO_K8S_OPERATOR_GC_CONTROLLER_PODS.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_CONTROLLER_REMOVAL_DELAY.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_SUCCESSFUL_DEPLOYER_HISTORY_LIMIT.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_FAILED_DEPLOYER_HISTORY_LIMIT.getJvmSystemProperty());
+    }
+
+    @Test
+    void shouldOnlyRemovePodsThatCompletedLongerThanTheRemovalDelayAgo() {
+        startCompletedPod("recent", CompletedPodSweeper.SUCCEEDED, 10);
+        startCompletedPod("old", CompletedPodSweeper.SUCCEEDED, 120);
+        startRunningPod("running");
+        sweeper = new CompletedPodSweeper(client, client.getDeployerPodIndex(), executors);
+        sweeper.sweep();
+        assertThat(podExists("recent")).isTrue();
+        assertThat(podExists("old")).isFalse();
+        assertThat(podExists("running")).isTrue();
+    }
+
+    @Test
+    void shouldKeepTheMostRecentPodsOfEachResource() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_SUCCESSFUL_DEPLOYER_HISTORY_LIMIT.getJvmSystemProperty(), "1");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_FAILED_DEPLOYER_HISTORY_LIMIT.getJvmSystemProperty(), "2");
+        startCompletedPod("succeeded-1", CompletedPodSweeper.SUCCEEDED, 300);
+        startCompletedPod("succeeded-2", CompletedPodSweeper.SUCCEEDED, 200);
+        startCompletedPod("succeeded-3", CompletedPodSweeper.SUCCEEDED, 100);
+        startCompletedPod("failed-1", CompletedPodSweeper.FAILED, 300);
+        startCompletedPod("failed-2", CompletedPodSweeper.FAILED, 200);
+        startCompletedPod("failed-3", CompletedPodSweeper.FAILED, 100);
+        sweeper = new CompletedPodSweeper(client, client.getDeployerPodIndex(), executors);
+        sweeper.sweep();
+        assertThat(podExists("succeeded-1")).isFalse();
+        assertThat(podExists("succeeded-2")).isFalse();
+        assertThat(podExists("succeeded-3")).isTrue();
+        assertThat(podExists("failed-1")).isFalse();
+        assertThat(podExists("failed-2")).isTrue();
+        assertThat(podExists("failed-3")).isTrue();
+    }
+
+    @Test
+    void shouldOnlyRemoveThePodsItHasSeenEvenIfNoneAreRetained() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_SUCCESSFUL_DEPLOYER_HISTORY_LIMIT.getJvmSystemProperty(), "0");
+        startCompletedPod("seen", CompletedPodSweeper.SUCCEEDED, 120);
+        //Given an index that has not caught up with the pods that completed after it was loaded
+        final Map<String, String> labels = CoordinatorUtils.podLabelsFor(resource);
+        final DeployerPodIndex laggingIndex = new DeployerPodIndex(client.getControllerNamespace(), labels,
+                () -> client.listPods(client.getControllerNamespace(), labels),
+                (resourceVersion, watcher) -> () -> {
+                },
+                client, client.getWatchReconnectGovernor());
+        startCompletedPod("not-seen-yet", CompletedPodSweeper.SUCCEEDED, 120);
+        try {
+            sweeper = new CompletedPodSweeper(client, laggingIndex, executors);
+            sweeper.sweep();
+            //Then only the pod in the index was removed
+            assertThat(podExists("seen")).isFalse();
+            assertThat(podExists("not-seen-yet")).isTrue();
+        } finally {
+            laggingIndex.close();
+        }
+    }
+
+    @Test
+    void shouldKeepFailedPodsAndSuccessfulPodsWithoutGarbageCollectionByDefault() {
+        System.clearProperty(EntandoOperatorConfigProperty.ENTANDO_K8S_OPERATOR_GC_CONTROLLER_PODS.getJvmSystemProperty());
+        startCompletedPod("succeeded", CompletedPodSweeper.SUCCEEDED, 300);
+        startCompletedPod("failed", CompletedPodSweeper.FAILED, 300);
+        sweeper = new CompletedPodSweeper(client, client.getDeployerPodIndex(), executors);
+        sweeper.sweep();
+        assertThat(podExists("succeeded")).isTrue();
+        assertThat(podExists("failed")).isTrue();
+    }
+
+    private boolean podExists(String name) {
+        return client.loadPods(client.getControllerNamespace(), CoordinatorUtils.podLabelsFor(resource)).stream()
+                .anyMatch(pod -> pod.getMetadata().getName().equals(name));
+    }
+
+    private void startRunningPod(String name) {
+        client.startPod(new PodBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withNamespace(client.getControllerNamespace())
+                .withLabels(CoordinatorUtils.podLabelsFor(resource))
+                .endMetadata()
+                .withNewStatus()
+                .withPhase("Running")
+                .endStatus()
+                .build());
+    }
+
+    private void startCompletedPod(String name, String phase, long secondsAgo) {
+        final Map<String, String> labels = CoordinatorUtils.podLabelsFor(resource);
+        client.startPod(new PodBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withNamespace(client.getControllerNamespace())
+                .withLabels(labels)
+                .endMetadata()
+                .withNewStatus()
+                .withPhase(phase)
+                .addNewContainerStatus()
+                .withName("deployer")
+                .withNewState()
+                .withNewTerminated()
+                .withFinishedAt(Instant.now().minus(secondsAgo, ChronoUnit.SECONDS).truncatedTo(ChronoUnit.SECONDS).toString())
+                .endTerminated()
+                .endState()
+                .endContainerStatus()
+                .endStatus()
+                .build());
+    }
+}
@@ -41,6 +41,7 @@ class ConfigListenerTest {
     void resetConfigMap() {
         EntandoOperatorConfigBase.setConfigMap(null);
         System.clearProperty(EntandoOperatorSpiConfigProperty.ENTANDO_CONTROLLER_POD_NAME.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty());
     }
 
     @Test
@@ -64,6 +65,8 @@ class ConfigListenerTest {
     @Test
     void shouldKillTheOperator() {
         System.setProperty(EntandoOperatorSpiConfigProperty.ENTANDO_CONTROLLER_POD_NAME.getJvmSystemProperty(), "my-pod");
+        //Give up on the first failure
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "1");
         //Given the operator is alive and listening to K8S resource events
         final File file = Paths.get("/tmp/EntandoControllerCoordinator.ready").toFile();
         Liveness.alive();
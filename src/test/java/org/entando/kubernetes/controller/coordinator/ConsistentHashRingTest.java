@@ -0,0 +1,64 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class ConsistentHashRingTest {
+
+    private static final List<String> NAMESPACES = IntStream.range(0, 1000).mapToObj(i -> "tenant-" + i).collect(Collectors.toList());
+
+    @Test
+    void shouldAssignEveryNamespaceToTheSameMemberRegardlessOfTheOrderOfTheMembers() {
+        final ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"));
+        final ConsistentHashRing sameMembers = new ConsistentHashRing(List.of("c", "a", "b"));
+        NAMESPACES.forEach(namespace -> assertThat(ring.ownerOf(namespace)).isEqualTo(sameMembers.ownerOf(namespace)));
+        assertThat(ConsistentHashRing.EMPTY.ownerOf("tenant-1")).isEmpty();
+    }
+
+    @Test
+    void shouldSpreadTheNamespacesEvenly() {
+        final Map<String, Long> namespacesPerMember = assign(new ConsistentHashRing(List.of("a", "b", "c", "d")));
+        assertThat(namespacesPerMember).hasSize(4);
+        //Within 30% of a perfectly even split
+        namespacesPerMember.values().forEach(count -> assertThat(count).isBetween(175L, 325L));
+    }
+
+    @Test
+    void shouldOnlyMoveTheNamespacesOfTheMemberThatLeft() {
+        final ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c", "d"));
+        final ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c"));
+        NAMESPACES.stream()
+                .filter(namespace -> !before.ownerOf(namespace).orElseThrow().equals("d"))
+                .forEach(namespace -> assertThat(after.ownerOf(namespace)).isEqualTo(before.ownerOf(namespace)));
+    }
+
+    private static Map<String, Long> assign(ConsistentHashRing ring) {
+        return NAMESPACES.stream().map(namespace -> ring.ownerOf(namespace).orElseThrow())
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+}
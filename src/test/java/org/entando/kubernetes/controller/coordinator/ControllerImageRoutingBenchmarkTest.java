@@ -0,0 +1,94 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+import static java.util.Optional.ofNullable;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.qameta.allure.Description;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils.Measurement;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("benchmark")})
+class ControllerImageRoutingBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 200_000;
+    private static final int ROUTES = 200;
+
+    @Test
+    @Description("Compares resolving the controller image of a capability from the routing table with resolving it from the "
+            + "overrides and the derived images on every launch")
+    void compareLookupCost() {
+        final Map<String, String> derived = derivedImages();
+        final Map<String, String> overrides = Map.of("dbms.capability.org", "override/dbms");
+        final SerializedEntandoResource capability = ControllerImageRoutingTableTest.mysqlCapability();
+        final ControllerImageRoutingTable table = ControllerImageRoutingTable.build(derived, overrides);
+        final Measurement before = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> resolveOnEveryLaunch(capability, derived, overrides));
+        final Measurement after = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> table.resolve(capability));
+        attachment("Resolving from the overrides and derived images", before.toString());
+        attachment("Resolving from the routing table", after.toString());
+        assertThat(table.resolve(capability)).isEqualTo(resolveOnEveryLaunch(capability, derived, overrides));
+    }
+
+    @Test
+    @Description("Measures rebuilding the routing table, which happens on every change to the CRDs or the overrides")
+    void measureRebuildCost() {
+        final Map<String, String> derived = derivedImages();
+        final Map<String, String> overrides = Map.of("dbms.capability.org", "override/dbms");
+        final Measurement rebuild = BenchmarkUtils.measure(100, 2_000, () -> ControllerImageRoutingTable.build(derived, overrides));
+        attachment("Rebuilding a routing table with " + ROUTES + " derived routes", rebuild.toString());
+    }
+
+    private static Map<String, String> derivedImages() {
+        final Map<String, String> derived = new HashMap<>();
+        for (int i = 0; i < ROUTES; i++) {
+            derived.put("Kind" + i + ".entando.org", "derived/image-" + i);
+            derived.put("impl" + i + ".capability" + i + ".capability.org", "derived/impl-" + i);
+        }
+        derived.put("mysql.dbms.capability.org", "derived/mysql");
+        return derived;
+    }
+
+    /**
+     * The resolution that used to be performed for every launch.
+     */
+    private static String resolveOnEveryLaunch(SerializedEntandoResource pc, Map<String, String> derived, Map<String, String> overrides) {
+        return ofNullable(resolveCapabilityFromMap(pc, overrides)).orElse(resolveCapabilityFromMap(pc, derived));
+    }
+
+    private static String resolveCapabilityFromMap(SerializedEntandoResource pc, Map<String, String> controllerImageMap) {
+        Optional<String> implementation = Optional.ofNullable((String) pc.getSpec().get("implementation"));
+        String capability = (String) pc.getSpec().get("capability");
+        final Optional<Map<String, String>> nullableMap = ofNullable(controllerImageMap);
+        return implementation
+                .flatMap(impl -> nullableMap
+                        .flatMap(map -> ofNullable(map.get((impl + "." + capability + EntandoControllerCoordinator.CAPABILITY_ORG)
+                                .toLowerCase(Locale.ROOT)))))
+                .orElse(nullableMap.map(map -> map.get((capability + EntandoControllerCoordinator.CAPABILITY_ORG)
+                        .toLowerCase(Locale.ROOT))).orElse(null));
+    }
+}
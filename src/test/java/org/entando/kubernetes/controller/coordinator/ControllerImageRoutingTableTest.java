@@ -0,0 +1,80 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.entando.kubernetes.model.capability.ProvidedCapabilityBuilder;
+import org.entando.kubernetes.model.capability.StandardCapability;
+import org.entando.kubernetes.model.capability.StandardCapabilityImplementation;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class ControllerImageRoutingTableTest {
+
+    @Test
+    void shouldRouteCustomResourcesByKindAndGroup() {
+        final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(
+                new TestResource().withNames("my-namespace", "my-resource"));
+        final String key = CoordinatorUtils.keyOf(resource);
+        assertThat(ControllerImageRoutingTable.build(Map.of(key, "derived/image"), Map.of()).resolve(resource))
+                .isEqualTo("derived/image");
+        assertThat(ControllerImageRoutingTable.build(Map.of(key, "derived/image"), Map.of(key, "override/image")).resolve(resource))
+                .isEqualTo("override/image");
+        assertThat(ControllerImageRoutingTable.EMPTY.resolve(resource)).isEqualTo(CoordinatorUtils.NO_IMAGE);
+    }
+
+    @Test
+    void shouldPreferOverridesOverDerivedImagesForCapabilities() {
+        final SerializedEntandoResource capability = mysqlCapability();
+        //The derived image for the implementation applies if nothing was overridden
+        assertThat(ControllerImageRoutingTable.build(
+                Map.of("mysql.dbms.capability.org", "derived/mysql", "dbms.capability.org", "derived/dbms"), Map.of())
+                .resolve(capability)).isEqualTo("derived/mysql");
+        //But an override for the capability takes precedence over a derived image for the implementation
+        assertThat(ControllerImageRoutingTable.build(
+                Map.of("mysql.dbms.capability.org", "derived/mysql"), Map.of("dbms.capability.org", "override/dbms"))
+                .resolve(capability)).isEqualTo("override/dbms");
+        //And an override for the implementation takes precedence over everything else
+        assertThat(ControllerImageRoutingTable.build(
+                Map.of("mysql.dbms.capability.org", "derived/mysql"),
+                Map.of("dbms.capability.org", "override/dbms", "mysql.dbms.capability.org", "override/mysql"))
+                .resolve(capability)).isEqualTo("override/mysql");
+        //And the capability is used if there is nothing for the implementation
+        assertThat(ControllerImageRoutingTable.build(Map.of("dbms.capability.org", "derived/dbms"), null)
+                .resolve(capability)).isEqualTo("derived/dbms");
+    }
+
+    static SerializedEntandoResource mysqlCapability() {
+        return CoordinatorTestUtils.toSerializedResource(new ProvidedCapabilityBuilder()
+                .withNewMetadata()
+                .withName("my-capability")
+                .withNamespace("my-namespace")
+                .endMetadata()
+                .withNewSpec()
+                .withCapability(StandardCapability.DBMS)
+                .withImplementation(StandardCapabilityImplementation.MYSQL)
+                .endSpec()
+                .build());
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import io.fabric8.kubernetes.client.WatcherException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class ControllerResourceCacheTest {
+
+    private final Map<String, ConfigMap> server = new ConcurrentHashMap<>();
+    private final Map<String, Watcher<ConfigMap>> watches = new ConcurrentHashMap<>();
+    private final Map<String, Integer> openWatches = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch slowServer = new CountDownLatch(1);
+    private final AtomicLong now = new AtomicLong();
+    private final ControllerResourceCache<ConfigMap> cache = new ControllerResourceCache<>("configmaps",
+            name -> {
+                loads.incrementAndGet();
+                if (name.startsWith("slow")) {
+                    await(slowServer);
+                }
+                return server.get(name);
+            },
+            (name, watcher) -> {
+                watches.put(name, watcher);
+                openWatches.merge(name, 1, Integer::sum);
+                return () -> {
+                    watches.remove(name, watcher);
+                    openWatches.merge(name, -1, Integer::sum);
+                };
+            },
+            configMap -> new ConfigMapBuilder(configMap).build(),
+            event -> {
+            },
+            new WatchReconnectGovernor(),
+            1000L,
+            now::get);
+
+    @Test
+    void shouldOnlyLoadTheResourceOnce() {
+        server.put("my-config", configMap("my-config", "1", "value1"));
+        final long hitsBefore = CoordinatorMetrics.getCount("entando_cache_hits", "cache", "configmaps");
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value1");
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value1");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(CoordinatorMetrics.getCount("entando_cache_hits", "cache", "configmaps")).isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void shouldTrackChangesAndAbsenceThroughTheWatch() {
+        //Given the cache knows the ConfigMap does not exist
+        assertThat(cache.get("my-config")).isNull();
+        final long version = cache.getVersion();
+        //When it is created
+        watches.get("my-config").eventReceived(Action.ADDED, configMap("my-config", "2", "value2"));
+        //Then it is read from memory
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value2");
+        assertThat(cache.getVersion()).isGreaterThan(version);
+        //And events are applied in the order they arrive, whatever their resourceVersions look like
+        watches.get("my-config").eventReceived(Action.MODIFIED, configMap("my-config", "10", "value10"));
+        watches.get("my-config").eventReceived(Action.MODIFIED, configMap("my-config", "9a", "value9a"));
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value9a");
+        //And deletions are reflected
+        watches.get("my-config").eventReceived(Action.DELETED, configMap("my-config", "3", "value2"));
+        assertThat(cache.get("my-config")).isNull();
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnCopies() {
+        server.put("my-config", configMap("my-config", "1", "value1"));
+        cache.get("my-config").getData().put("key", "modified");
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value1");
+    }
+
+    @Test
+    void shouldNotifyListenersOfTheCurrentStateAndChanges() {
+        server.put("my-config", configMap("my-config", "1", "value1"));
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final Watcher<ConfigMap> listener = new Watcher<>() {
+            @Override
+            public void eventReceived(Action action, ConfigMap resource) {
+                received.add(action.name() + ":" + resource.getData().get("key"));
+            }
+
+            @Override
+            public void onClose(WatcherException cause) {
+            }
+        };
+        cache.addListener("my-config", listener);
+        //Registering the same listener again has no effect
+        cache.addListener("my-config", listener);
+        watches.get("my-config").eventReceived(Action.MODIFIED, configMap("my-config", "2", "value2"));
+        assertThat(received).containsExactly("ADDED:value1", "MODIFIED:value2");
+    }
+
+    @Test
+    void shouldApplyWritesImmediately() {
+        server.put("my-config", configMap("my-config", "1", "value1"));
+        cache.get("my-config");
+        cache.put(configMap("my-config", "2", "value2"));
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value2");
+        //A write that did not change the resource is ignored
+        final long version = cache.getVersion();
+        cache.put(configMap("my-config", "2", "value2"));
+        assertThat(cache.getVersion()).isEqualTo(version);
+        cache.remove("my-config");
+        assertThat(cache.get("my-config")).isNull();
+    }
+
+    @Test
+    void shouldNotBlockOtherReadsWhileLoading() throws Exception {
+        server.put("slow-config", configMap("slow-config", "1", "slow"));
+        server.put("my-config", configMap("my-config", "1", "value1"));
+        //Given two readers are waiting for a slow server
+        final CompletableFuture<ConfigMap> first = CompletableFuture.supplyAsync(() -> cache.get("slow-config"));
+        final CompletableFuture<ConfigMap> second = CompletableFuture.supplyAsync(() -> cache.get("slow-config"));
+        //Then other names can still be read
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value1");
+        //And once the server responds both readers get the resource
+        slowServer.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).getData()).containsEntry("key", "slow");
+        assertThat(second.get(10, TimeUnit.SECONDS).getData()).containsEntry("key", "slow");
+        //But only one watch remains open for it
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(openWatches).containsEntry("slow-config", 1).containsEntry("my-config", 1);
+    }
+
+    @Test
+    void shouldStopWatchingNamesThatAreNoLongerRead() {
+        server.put("my-config", configMap("my-config", "1", "value1"));
+        server.put("other-config", configMap("other-config", "1", "value1"));
+        cache.get("my-config");
+        cache.get("other-config");
+        //Given only one of the names is read again within the idle period
+        now.set(600L);
+        cache.get("other-config");
+        //When the idle period has passed
+        now.set(1000L);
+        cache.get("other-config");
+        //Then the other name is evicted and its watch closed
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(watches).containsOnlyKeys("other-config");
+        //And it is loaded again when it is read again
+        assertThat(cache.get("my-config").getData()).containsEntry("key", "value1");
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldKeepWatchingNamesWithListeners() {
+        server.put("my-config", configMap("my-config", "1", "value1"));
+        final List<String> received = new CopyOnWriteArrayList<>();
+        cache.addListener("my-config", new Watcher<>() {
+            @Override
+            public void eventReceived(Action action, ConfigMap resource) {
+                received.add(action.name());
+            }
+
+            @Override
+            public void onClose(WatcherException cause) {
+            }
+        });
+        now.set(5000L);
+        cache.get("other-config");
+        assertThat(watches).containsOnlyKeys("my-config", "other-config");
+        watches.get("my-config").eventReceived(Action.MODIFIED, configMap("my-config", "2", "value2"));
+        assertThat(received).containsExactly("ADDED", "MODIFIED");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ConfigMap configMap(String name, String resourceVersion, String value) {
+        return new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withResourceVersion(resourceVersion)
+                .endMetadata()
+                .addToData("key", value)
+                .build();
+    }
+}
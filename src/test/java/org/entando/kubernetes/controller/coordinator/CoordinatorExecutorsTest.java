@@ -0,0 +1,162 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class CoordinatorExecutorsTest {
+
+    private final CoordinatorExecutors executors = new CoordinatorExecutors(1, 1);
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutDown() {
+        executors.shutDown();
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_PROCESSING_PRIORITY_AGING_SECONDS.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_PROCESSING_PRIORITY_BY_KIND.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_STARTUP_PARALLELISM.getJvmSystemProperty());
+    }
+
+    @Test
+    void shouldStartHigherPriorityLaunchesFirst() throws InterruptedException {
+        //Given the only launch thread is busy
+        final CountDownLatch busy = blockLaunchLane();
+        //When launches of different priorities are queued
+        executors.getLaunchLane().execute(CoordinatorExecutors.withPriority(() -> started.add("low"), ProcessingPriority.LOW));
+        executors.getLaunchLane().execute(() -> started.add("normal"));
+        executors.getLaunchLane().execute(CoordinatorExecutors.withPriority(() -> started.add("high"), ProcessingPriority.HIGH));
+        busy.countDown();
+        //Then they are started in order of priority
+        await().atMost(5, TimeUnit.SECONDS).until(() -> started.size() == 3);
+        assertThat(started).containsExactly("high", "normal", "low");
+    }
+
+    @Test
+    void shouldNotStarveLowPriorityLaunches() throws InterruptedException {
+        //Given priorities only give a head start of one second
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_PROCESSING_PRIORITY_AGING_SECONDS.getJvmSystemProperty(), "1");
+        final CountDownLatch busy = blockLaunchLane();
+        //When a low priority launch has waited for longer than the head start of the high priority launches
+        executors.getLaunchLane().execute(CoordinatorExecutors.withPriority(() -> started.add("low"), ProcessingPriority.LOW));
+        TimeUnit.MILLISECONDS.sleep(2100);
+        executors.getLaunchLane().execute(CoordinatorExecutors.withPriority(() -> started.add("high"), ProcessingPriority.HIGH));
+        busy.countDown();
+        //Then it is started first
+        await().atMost(5, TimeUnit.SECONDS).until(() -> started.size() == 2);
+        assertThat(started).containsExactly("low", "high");
+    }
+
+    @Test
+    void shouldNotQueuePeriodicWorkThatIsStillWaiting() throws InterruptedException {
+        //Given the only housekeeping thread is busy
+        final CountDownLatch busy = blockLane(executors.getHousekeepingLane());
+        //When a coalesced task is triggered several times while it waits
+        final Runnable resync = CoordinatorExecutors.coalescing(executors.getHousekeepingLane(), () -> started.add("resync"));
+        resync.run();
+        resync.run();
+        resync.run();
+        assertThat(executors.getHousekeepingLane().getQueueDepth()).isEqualTo(1);
+        busy.countDown();
+        //Then it only runs once
+        await().atMost(5, TimeUnit.SECONDS).until(() -> executors.getHousekeepingLane().getActiveCount() == 0 && started.size() == 1);
+        //And it is queued again once it has started
+        resync.run();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> started.size() == 2);
+    }
+
+    @Test
+    void shouldResolvePriorityFromTheAnnotationOrTheKind() {
+        final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(
+                new TestResource().withNames("my-namespace", "my-resource"));
+        assertThat(CoordinatorUtils.resolveProcessingPriority(resource)).isEqualTo(ProcessingPriority.NORMAL);
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_PROCESSING_PRIORITY_BY_KIND.getJvmSystemProperty(),
+                "TestResource=low");
+        assertThat(CoordinatorUtils.resolveProcessingPriority(resource)).isEqualTo(ProcessingPriority.LOW);
+        resource.getMetadata().setAnnotations(new HashMap<>());
+        resource.getMetadata().getAnnotations().put(AnnotationNames.PROCESSING_PRIORITY.getName(), "High");
+        assertThat(CoordinatorUtils.resolveProcessingPriority(resource)).isEqualTo(ProcessingPriority.HIGH);
+        resource.getMetadata().getAnnotations().put(AnnotationNames.PROCESSING_PRIORITY.getName(), "urgent");
+        assertThat(CoordinatorUtils.resolveProcessingPriority(resource)).isEqualTo(ProcessingPriority.LOW);
+        assertThat(ControllerCoordinatorConfig.getDefaultProcessingPriorityFor("EntandoKeycloakServer")).isEqualTo(ProcessingPriority.HIGH);
+        assertThat(ControllerCoordinatorConfig.getDefaultProcessingPriorityFor("EntandoPlugin")).isEqualTo(ProcessingPriority.LOW);
+    }
+
+    @Test
+    void shouldRunStartupTasksConcurrentlyAndReturnTheResultsInOrder() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_STARTUP_PARALLELISM.getJvmSystemProperty(), "3");
+        //Given three tasks that can only complete once all of them have started
+        final CountDownLatch allStarted = new CountDownLatch(3);
+        //When they are run in parallel
+        final List<String> results = CoordinatorExecutors.inParallel("test", List.of("a", "b", "c"), item -> {
+            allStarted.countDown();
+            try {
+                return allStarted.await(5, TimeUnit.SECONDS) ? item.toUpperCase(Locale.ROOT) : "timed out";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "interrupted";
+            }
+        });
+        //Then they ran concurrently and the results are in the order of the items
+        assertThat(results).containsExactly("A", "B", "C");
+    }
+
+    @Test
+    void shouldPropagateTheFailureOfAStartupTask() {
+        assertThatThrownBy(() -> CoordinatorExecutors.inParallel("test", List.of("a", "b"), item -> {
+            if (item.equals("b")) {
+                throw new IllegalStateException("b failed");
+            }
+            return item;
+        })).isInstanceOf(IllegalStateException.class).hasMessage("b failed");
+    }
+
+    private CountDownLatch blockLaunchLane() throws InterruptedException {
+        return blockLane(executors.getLaunchLane());
+    }
+
+    private CountDownLatch blockLane(CoordinatorExecutors.Lane lane) throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch busy = new CountDownLatch(1);
+        lane.execute(() -> {
+            running.countDown();
+            try {
+                busy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        running.await(5, TimeUnit.SECONDS);
+        return busy;
+    }
+}
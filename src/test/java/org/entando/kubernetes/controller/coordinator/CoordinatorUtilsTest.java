@@ -19,6 +19,9 @@ package org.entando.kubernetes.controller.coordinator;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.WatcherException;
 import java.util.HashMap;
 import java.util.Locale;
 import org.entando.kubernetes.model.app.EntandoApp;
@@ -42,4 +45,22 @@ class CoordinatorUtilsTest {
         assertThat(CoordinatorUtils.resolveProcessingInstruction(app), is(OperatorProcessingInstruction.NONE));
     }
 
+    @Test
+    void testIsHttpGone() {
+        assertThat(CoordinatorUtils.isHttpGone(new WatcherException("Closed")), is(false));
+        assertThat(CoordinatorUtils.isHttpGone(new WatcherException("Gone", new KubernetesClientException("Gone", 410, null))), is(true));
+        assertThat(CoordinatorUtils.isHttpGone(new WatcherException("Gone",
+                new KubernetesClientException(new StatusBuilder().withCode(410).build()))), is(true));
+        assertThat(CoordinatorUtils.isHttpGone(new WatcherException("Gone", new KubernetesClientException("Forbidden", 403, null))),
+                is(false));
+    }
+
+    @Test
+    void testIsOlderResourceVersion() {
+        assertThat(CoordinatorUtils.isOlderResourceVersion("9", "10"), is(true));
+        assertThat(CoordinatorUtils.isOlderResourceVersion("10", "10"), is(false));
+        assertThat(CoordinatorUtils.isOlderResourceVersion("abc", "10"), is(false));
+        assertThat(CoordinatorUtils.isOlderResourceVersion(null, "10"), is(false));
+    }
+
 }
@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import io.fabric8.kubernetes.client.WatcherException;
+import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class CustomResourceStringWatcherTest {
+
+    private final SimpleKubernetesClientDouble clientDouble = new SimpleKubernetesClientDouble();
+    private final CustomResourceDefinitionContext definitionContext = CustomResourceDefinitionContext
+            .fromCustomResourceType(TestResource.class);
+    private final List<Action> actionsReceived = new CopyOnWriteArrayList<>();
+    private final AtomicInteger watchesStarted = new AtomicInteger();
+
+    private CustomResourceStringWatcher startWatching() {
+        final SimpleEntandoOperations operations = clientDouble.getOperations(definitionContext).inNamespace(clientDouble.getNamespace());
+        return new CustomResourceStringWatcher((action, resource) -> actionsReceived.add(action), definitionContext,
+                watcher -> {
+                    watchesStarted.incrementAndGet();
+                    return () -> {
+                    };
+                }, operations, clientDouble.getWatchReconnectGovernor());
+    }
+
+    @Test
+    void shouldTrackBookmarksWithoutPassingThemOn() throws Exception {
+        final CustomResourceStringWatcher watcher = startWatching();
+        watcher.eventReceived(Action.BOOKMARK, new ObjectMapper().writeValueAsString(Map.of(
+                "kind", "TestResource",
+                "apiVersion", "test.org/v1",
+                "metadata", Map.of("resourceVersion", "42"))));
+        assertThat(actionsReceived).isEmpty();
+        assertThat(watcher.getLastResourceVersion()).isEqualTo("42");
+    }
+
+    @Test
+    void shouldResumeAfterAGracefulCloseUnlessClosedLocally() throws InterruptedException {
+        final CustomResourceStringWatcher watcher = startWatching();
+        assertThat(watchesStarted).hasValue(1);
+        watcher.onClose();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> watchesStarted.get() == 2);
+        watcher.close();
+        watcher.onClose();
+        TimeUnit.MILLISECONDS.sleep(ControllerCoordinatorConfig.getWatchReconnectInitialDelayMillis() * 2);
+        assertThat(watchesStarted).hasValue(2);
+    }
+
+    @Test
+    void shouldRelistAndRestartWhenTheResourceVersionHasExpired() {
+        //Given a resource was created while the watch was not receiving events
+        final CustomResourceStringWatcher watcher = startWatching();
+        clientDouble.createOrPatchEntandoResource(CoordinatorTestUtils.toSerializedResource(
+                new TestResource().withNames(clientDouble.getNamespace(), "missed-resource")));
+        //When the server reports that our resourceVersion is gone
+        watcher.onClose(new WatcherException("Gone", new KubernetesClientException("too old", HttpURLConnection.HTTP_GONE, null)));
+        //Then the watch is restarted
+        await().atMost(5, TimeUnit.SECONDS).until(() -> watchesStarted.get() == 2);
+        //And the missed resource is passed on from the relist
+        assertThat(actionsReceived).containsExactly(Action.MODIFIED);
+    }
+}
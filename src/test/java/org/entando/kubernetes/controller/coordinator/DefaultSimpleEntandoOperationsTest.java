@@ -22,8 +22,6 @@ import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
 
-import io.fabric8.kubernetes.api.model.Pod;
-import io.fabric8.kubernetes.api.model.PodBuilder;
 import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.NamespacedKubernetesClient;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
@@ -37,8 +35,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
-import org.entando.kubernetes.controller.spi.common.PodResult;
-import org.entando.kubernetes.controller.spi.common.PodResult.State;
 import org.entando.kubernetes.fluentspi.TestResource;
 import org.entando.kubernetes.test.common.ValueHolder;
 import org.junit.jupiter.api.Tag;
@@ -53,7 +49,6 @@ import org.junit.jupiter.migrationsupport.rules.EnableRuleMigrationSupport;
 @EnableRuleMigrationSupport
 class DefaultSimpleEntandoOperationsTest extends ControllerCoordinatorAdapterTestBase {
 
-    public static final String MY_POD = "my-pod";
     DefaultSimpleEntandoOperations myClient;
 
     protected NamespacedKubernetesClient getNamespacedKubernetesClient() {
@@ -72,54 +67,12 @@ class DefaultSimpleEntandoOperationsTest extends ControllerCoordinatorAdapterTes
                             client,
                             definitionContext,
                             client.customResource(definitionContext),
-                            true);
+                            true,
+                            new WatchReconnectGovernor());
                 });
         return this.myClient;
     }
 
-    @Test
-    @Description("Should delete pods and wait until they have been successfully deleted ")
-    void shouldRemoveSuccessfullyCompletedPods() {
-        awaitDefaultToken(MY_APP_NAMESPACE_1);
-        final TestResource testResource = new TestResource().withNames(MY_APP_NAMESPACE_1, "my-test-resource");
-        step("Given I have a TestResource", () -> attachment("TestResource", objectMapper.writeValueAsString(testResource)));
-        step("And I have started a service pod with the label associated with this resource that will complete after 1 second", () -> {
-            final Pod startedPod = getFabric8Client().pods().inNamespace(MY_APP_NAMESPACE_1).create(new PodBuilder()
-                    .withNewMetadata()
-                    .withName(MY_POD)
-                    .withNamespace(MY_APP_NAMESPACE_1)
-                    .addToLabels(CoordinatorUtils.podLabelsFor(testResource))
-                    .endMetadata()
-                    .withNewSpec()
-                    .addNewContainer()
-                    .withImage("busybox")
-                    .withName("busybox")
-                    .withArgs("/bin/sh", "-c", "sleep 3")
-                    .endContainer()
-                    .withRestartPolicy("Never")
-                    .endSpec()
-                    .build());
-
-            attachment("Started Pod", objectMapper.writeValueAsString(startedPod));
-        });
-        step("And I have waited for the pod to be ready", () -> {
-            await().ignoreExceptions().atMost(60, TimeUnit.SECONDS).until(
-                    () -> PodResult.of(getPodInNamespace(MY_APP_NAMESPACE_1, MY_POD)).getState() != State.CREATING);
-
-            attachment("Started Pod", objectMapper.writeValueAsString(getPodInNamespace(MY_APP_NAMESPACE_1, MY_POD)));
-        });
-        step("When I remove all the successfully completed pods", () -> {
-            getMyOperations().removeSuccessfullyCompletedPods(CoordinatorTestUtils.toSerializedResource(testResource));
-        });
-        step("Then that pod will be absent immediately after the call finished", () -> {
-            assertThat(getPodInNamespace(MY_APP_NAMESPACE_1, MY_POD)).isNull();
-        });
-    }
-
-    private Pod getPodInNamespace(String ns, String podName) {
-        return getFabric8Client().pods().inNamespace(ns).withName(podName).fromServer().get();
-    }
-
     @Test
     @Description("Should add and remove annotations")
     void shouldAndAndRemoveAnnotations() {
@@ -0,0 +1,201 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinitionBuilder;
+import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinitionVersionBuilder;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises the status updates of the DefaultSimpleKubernetesClient against an HTTP client that answers the requests itself,
+ * so that the requests sent to the API server can be inspected without a cluster.
+ */
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class DefaultSimpleKubernetesClientStatusTest {
+
+    private static final String STATUS_URL = "https://localhost:8443/apis/test.org/v1/namespaces/my-namespace/testresources/my-app/status";
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CustomResourceDefinitionContext definitionContext = CustomResourceDefinitionContext
+            .fromCustomResourceType(TestResource.class);
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> responseCodes = new ConcurrentHashMap<>();
+    private final Map<String, String> responseBodies = new ConcurrentHashMap<>();
+    private final DefaultSimpleKubernetesClient client = new DefaultSimpleKubernetesClient(new DefaultKubernetesClient(
+            new OkHttpClient.Builder().addInterceptor(chain -> respondTo(chain.request())).build(),
+            new ConfigBuilder().withMasterUrl("https://localhost:8443/").withNamespace("entando-controller").build()));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMergePatchThePhaseOntoTheStatusSubresource() throws IOException {
+        //Given the CRD has a status subresource
+        respondWithCustomResourceDefinition(true);
+        //And the server patches the status
+        final SerializedEntandoResource resource = resource(EntandoDeploymentPhase.SUCCESSFUL);
+        respondWith("PATCH " + STATUS_URL, 200, SerializedResourceCodec.toJson(resource(EntandoDeploymentPhase.REQUESTED)));
+        //When I update the phase
+        final SerializedEntandoResource updated = client.updatePhase(resource, EntandoDeploymentPhase.REQUESTED);
+        //Then a merge patch was sent to the status subresource
+        final RecordedRequest patch = requestTo("PATCH " + STATUS_URL);
+        assertThat(patch.contentType).startsWith("application/merge-patch+json");
+        final Map<String, Object> status = (Map<String, Object>) objectMapper.readValue(patch.body, Map.class).get("status");
+        assertThat(status).containsEntry("phase", objectMapper.convertValue(EntandoDeploymentPhase.REQUESTED, String.class));
+        //And the resource in the response was returned without any further requests for the resource
+        assertThat(updated.getStatus().getPhase()).isEqualTo(EntandoDeploymentPhase.REQUESTED);
+        assertThat(requests).filteredOn(request -> request.url.contains("/testresources/")).hasSize(1);
+    }
+
+    @Test
+    void shouldLeaveTheRetriesToTheWorkQueue() {
+        //Given the CRD has a status subresource
+        respondWithCustomResourceDefinition(true);
+        //And the server is too busy to patch the status
+        respondWith("PATCH " + STATUS_URL, 429, "{\"kind\":\"Status\",\"code\":429}");
+        //When I update the phase
+        final SerializedEntandoResource resource = resource(EntandoDeploymentPhase.SUCCESSFUL);
+        assertThatThrownBy(() -> client.updatePhase(resource, EntandoDeploymentPhase.REQUESTED)).isInstanceOf(RuntimeException.class);
+        //Then the patch was sent only once, without waiting to retry it on the calling thread
+        assertThat(requests).filteredOn(request -> request.method.equals("PATCH")).hasSize(1);
+    }
+
+    @Test
+    void shouldApplyTheChangeToAFreshCopyWhenFallingBackToAStatusUpdate() {
+        //Given the resource is in the store
+        final SerializedEntandoResource resource = resource(EntandoDeploymentPhase.SUCCESSFUL);
+        final EntandoResourceStore store = client.getOperations(definitionContext).getResourceStore();
+        store.upsert(resource(EntandoDeploymentPhase.SUCCESSFUL));
+        final SerializedEntandoResource stored = store.get("my-namespace", "my-app").orElseThrow(IllegalStateException::new);
+        //And the CRD has no status subresource that can be patched
+        respondWithCustomResourceDefinition(false);
+        //When I update the phase
+        final SerializedEntandoResource updated = client.updatePhase(resource, EntandoDeploymentPhase.REQUESTED);
+        //Then the status was updated the old way
+        assertThat(requestTo("PUT " + STATUS_URL)).isNotNull();
+        assertThat(requests).filteredOn(request -> request.method.equals("PATCH")).isEmpty();
+        assertThat(updated.getStatus().getPhase()).isEqualTo(EntandoDeploymentPhase.REQUESTED);
+        //Without modifying the state that was held in the store
+        assertThat(stored.getStatus().getPhase()).isEqualTo(EntandoDeploymentPhase.SUCCESSFUL);
+    }
+
+    private SerializedEntandoResource resource(EntandoDeploymentPhase phase) {
+        final TestResource testResource = new TestResource().withNames("my-namespace", "my-app");
+        testResource.getMetadata().setUid("my-app-uid");
+        testResource.getMetadata().setResourceVersion("1");
+        testResource.getMetadata().setGeneration(1L);
+        final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(testResource);
+        resource.getStatus().updateDeploymentPhase(phase, 1L);
+        resource.setDefinition(definitionContext);
+        return resource;
+    }
+
+    private void respondWithCustomResourceDefinition(boolean statusSubresource) {
+        final CustomResourceDefinitionVersionBuilder version = new CustomResourceDefinitionVersionBuilder()
+                .withName(definitionContext.getVersion())
+                .withServed(true)
+                .withStorage(true);
+        if (statusSubresource) {
+            version.withNewSubresources().withNewStatus().endStatus().endSubresources();
+        }
+        respondWith("GET https://localhost:8443/apis/apiextensions.k8s.io/v1/customresourcedefinitions/" + definitionContext.getName(),
+                200, Serialization.asJson(new CustomResourceDefinitionBuilder()
+                        .withNewMetadata().withName(definitionContext.getName()).endMetadata()
+                        .withNewSpec()
+                        .withGroup(definitionContext.getGroup())
+                        .withVersions(version.build())
+                        .endSpec()
+                        .build()));
+    }
+
+    private void respondWith(String request, int code, String body) {
+        responseCodes.put(request, code);
+        responseBodies.put(request, body);
+    }
+
+    private RecordedRequest requestTo(String request) {
+        return requests.stream().filter(recorded -> request.equals(recorded.method + " " + recorded.url)).findFirst()
+                .orElseThrow(() -> new AssertionError("No request was sent for " + request + " in " + requests));
+    }
+
+    /**
+     * Answers with the configured response, and otherwise echoes the request body, which is what the API server does for the
+     * events and the status updates in these tests.
+     */
+    private Response respondTo(Request request) throws IOException {
+        final Buffer buffer = new Buffer();
+        if (request.body() != null) {
+            request.body().writeTo(buffer);
+        }
+        final RecordedRequest recorded = new RecordedRequest(request.method(), request.url().toString(),
+                request.body() == null || request.body().contentType() == null ? null : request.body().contentType().toString(),
+                buffer.readUtf8());
+        requests.add(recorded);
+        final String key = recorded.method + " " + recorded.url;
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(responseCodes.getOrDefault(key, 200))
+                .message("OK")
+                .body(ResponseBody.create(JSON, responseBodies.getOrDefault(key, recorded.body.isEmpty() ? "{}" : recorded.body)))
+                .build();
+    }
+
+    private static class RecordedRequest {
+
+        private final String method;
+        private final String url;
+        private final String contentType;
+        private final String body;
+
+        private RecordedRequest(String method, String url, String contentType, String body) {
+            this.method = method;
+            this.url = url;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + url;
+        }
+    }
+}
@@ -64,6 +64,7 @@ import org.entando.kubernetes.controller.spi.common.NameUtils;
 import org.entando.kubernetes.controller.spi.common.PodResult;
 import org.entando.kubernetes.controller.spi.common.PodResult.State;
 import org.entando.kubernetes.controller.support.client.impl.integrationtesthelpers.TestFixturePreparation;
+import org.entando.kubernetes.controller.support.common.EntandoOperatorConfigProperty;
 import org.entando.kubernetes.fluentspi.BasicDeploymentSpecBuilder;
 import org.entando.kubernetes.fluentspi.TestResource;
 import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
@@ -134,13 +135,63 @@ class DefaultSimpleKubernetesClientTest extends ControllerCoordinatorAdapterTest
                     .writeValueAsString(getFabric8Client().pods().inNamespace(MY_APP_NAMESPACE_1).withName(MY_POD).fromServer().get()));
         });
         step("When I delete and wait for pods with the label 'pod-label=123'", () -> {
-            getMyClient().removePodsAndWait(MY_APP_NAMESPACE_1, Map.of("pod-label", "123"));
+            CoordinatorUtils.await(getMyClient().removePods(MY_APP_NAMESPACE_1, Map.of("pod-label", "123")));
         });
         step("Then that pod will be absent immediately after the call finished", () -> {
             assertThat(getFabric8Client().pods().inNamespace(MY_APP_NAMESPACE_1).withName(MY_POD).fromServer().get()).isNull();
         });
     }
 
+    @Test
+    @Description("Should remove successfully completed deployer pods once the sweeper has seen them complete")
+    void shouldRemoveSuccessfullyCompletedPods() {
+        awaitDefaultToken(MY_APP_NAMESPACE_1);
+        final TestResource testResource = new TestResource().withNames(MY_APP_NAMESPACE_1, "my-test-resource");
+        final CoordinatorExecutors executors = new CoordinatorExecutors(1, 1);
+        System.setProperty(EntandoOperatorConfigProperty.ENTANDO_K8S_OPERATOR_GC_CONTROLLER_PODS.getJvmSystemProperty(), "true");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_CONTROLLER_REMOVAL_DELAY.getJvmSystemProperty(), "0");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_SUCCESSFUL_DEPLOYER_HISTORY_LIMIT.getJvmSystemProperty(), "0");
+        final CompletedPodSweeper sweeper = new CompletedPodSweeper(getMyClient(), getMyClient().getDeployerPodIndex(), executors);
+        try {
+            step("Given I have a TestResource", () -> attachment("TestResource", objectMapper.writeValueAsString(testResource)));
+            step("And I have started a deployer pod with the labels associated with this resource that will complete after 3 seconds",
+                    () -> {
+                        final Pod startedPod = getMyClient().startPod(new PodBuilder()
+                                .withNewMetadata()
+                                .withName(MY_POD)
+                                .withNamespace(MY_APP_NAMESPACE_1)
+                                .addToLabels(CoordinatorUtils.podLabelsFor(testResource))
+                                .endMetadata()
+                                .withNewSpec()
+                                .addNewContainer()
+                                .withImage("busybox")
+                                .withName("busybox")
+                                .withArgs("/bin/sh", "-c", "sleep 3")
+                                .endContainer()
+                                .withRestartPolicy("Never")
+                                .endSpec()
+                                .build());
+                        attachment("Started Pod", objectMapper.writeValueAsString(startedPod));
+                    });
+            step("And the deployer pod index has seen the pod complete successfully", () -> {
+                await().atMost(60, TimeUnit.SECONDS).until(() -> getMyClient().getDeployerPodIndex().getPods().stream()
+                        .anyMatch(pod -> pod.getMetadata().getName().equals(MY_POD)
+                                && CompletedPodSweeper.SUCCEEDED.equals(pod.getStatus().getPhase())));
+            });
+            step("When the completed pod sweeper sweeps the controller namespace", sweeper::sweep);
+            step("Then that pod will be removed from the cluster", () -> {
+                await().atMost(30, TimeUnit.SECONDS).until(
+                        () -> getFabric8Client().pods().inNamespace(MY_APP_NAMESPACE_1).withName(MY_POD).fromServer().get() == null);
+            });
+        } finally {
+            sweeper.close();
+            executors.shutDown();
+            System.clearProperty(EntandoOperatorConfigProperty.ENTANDO_K8S_OPERATOR_GC_CONTROLLER_PODS.getJvmSystemProperty());
+            System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_CONTROLLER_REMOVAL_DELAY.getJvmSystemProperty());
+            System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_SUCCESSFUL_DEPLOYER_HISTORY_LIMIT.getJvmSystemProperty());
+        }
+    }
+
     @Test
     @Description("Should track phase updates on the status of opaque custom resources and in Kubernetes events")
     void shouldUpdateStatusOfOpaqueCustomResource() throws IOException {
@@ -169,7 +220,8 @@ class DefaultSimpleKubernetesClientTest extends ControllerCoordinatorAdapterTest
             assertThat(actual.getStatus().getPhase()).isEqualTo(EntandoDeploymentPhase.SUCCESSFUL);
             attachResource("TestResource", actual);
         });
-        step("And a PHASE_CHANGE event has been issued to Kubernetes", () -> {
+        step("And a PHASE_CHANGE event has been issued to Kubernetes in the background", () -> {
+            await().atMost(10, TimeUnit.SECONDS).until(() -> !getMyClient().listEventsFor(testResource.get()).isEmpty());
             final List<Event> events = getMyClient().listEventsFor(testResource.get());
             attachResources("Events", events);
             assertThat(events).allMatch(event -> event.getInvolvedObject().getName().equals(testResource.get().getMetadata().getName()));
@@ -0,0 +1,109 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.fabric8.kubernetes.client.Watcher.Action;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import org.entando.kubernetes.controller.coordinator.DeployerLaunch.State;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.controller.support.client.doubles.AbstractK8SClientDouble;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class DeployerLaunchTest {
+
+    private CompletableFuture<Void> removal = CompletableFuture.completedFuture(null);
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble() {
+        @Override
+        public CompletionStage<Void> removePods(String namespace, Map<String, String> labels) {
+            return super.removePods(namespace, labels).thenCompose(ignored -> removal);
+        }
+    };
+    private final DeployerPodAdmission admission = new DeployerPodAdmission(client.getDeployerPodIndex(), 1, Integer.MAX_VALUE);
+
+    @AfterEach
+    void closeIndex() {
+        client.getDeployerPodIndex().close();
+    }
+
+    @Test
+    void shouldStartTheDeployerPod() {
+        final SerializedEntandoResource resource = resource("first");
+        final DeployerLaunch launch = launchFor(resource);
+        assertThat(launch.start()).isCompleted();
+        assertThat(launch.getState()).isEqualTo(State.STARTED);
+        assertThat(client.loadPod(AbstractK8SClientDouble.CONTROLLER_NAMESPACE, CoordinatorUtils.podLabelsFor(resource))).isNotNull();
+    }
+
+    @Test
+    void shouldGiveUpItsPlaceInTheQueueWhenCancelledWhileWaitingForASlot() {
+        //Given the only deployer slot is taken
+        assertThat(launchFor(resource("first")).start()).isCompleted();
+        final DeployerLaunch launch = launchFor(resource("second"));
+        final CompletableFuture<Void> result = launch.start().toCompletableFuture();
+        assertThat(launch.getState()).isEqualTo(State.WAITING_FOR_SLOT);
+        assertThat(admission.getQueueDepth()).isEqualTo(1);
+        //When the launch is superseded
+        launch.cancel();
+        //Then it stops without ever starting its pod
+        assertThat(result).isCompletedExceptionally();
+        assertThat(launch.getState()).isEqualTo(State.CANCELLED);
+        assertThat(admission.getQueueDepth()).isZero();
+        assertThat(client.loadPod(AbstractK8SClientDouble.CONTROLLER_NAMESPACE, CoordinatorUtils.podLabelsFor(resource("second"))))
+                .isNull();
+    }
+
+    @Test
+    void shouldReleaseItsPermitWhenCancelledWhileWaitingForObsoletePodsToDisappear() {
+        //Given the obsolete pods take long to disappear
+        removal = new CompletableFuture<>();
+        final SerializedEntandoResource resource = resource("first");
+        final DeployerLaunch launch = launchFor(resource);
+        final CompletableFuture<Void> result = launch.start().toCompletableFuture();
+        assertThat(launch.getState()).isEqualTo(State.REMOVING_OBSOLETE_PODS);
+        assertThat(admission.getGrantedCount()).isEqualTo(1);
+        //When the launch is superseded
+        launch.cancel();
+        //Then it stops without waiting for the pods
+        assertThat(result).isCompletedExceptionally();
+        assertThat(launch.getState()).isEqualTo(State.CANCELLED);
+        assertThat(admission.getGrantedCount()).isZero();
+        //And it does not start the pod when the obsolete pods eventually disappear
+        removal.complete(null);
+        assertThat(client.loadPod(AbstractK8SClientDouble.CONTROLLER_NAMESPACE, CoordinatorUtils.podLabelsFor(resource))).isNull();
+    }
+
+    private DeployerLaunch launchFor(SerializedEntandoResource resource) {
+        return new DeployerLaunch(Action.ADDED, resource, client, admission,
+                new ControllerExecutor(client.getControllerNamespace(), client, "entando/my-controller"), Runnable::run);
+    }
+
+    private SerializedEntandoResource resource(String name) {
+        return client.createOrPatchEntandoResource(CoordinatorTestUtils.toSerializedResource(
+                new TestResource().withNames("my-namespace", name)));
+    }
+}
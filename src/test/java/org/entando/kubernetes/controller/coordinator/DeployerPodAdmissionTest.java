@@ -0,0 +1,157 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import java.util.concurrent.CompletableFuture;
+import org.entando.kubernetes.controller.coordinator.DeployerPodAdmission.Permit;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class DeployerPodAdmissionTest {
+
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final DeployerPodIndex podIndex = new DeployerPodIndex(client);
+
+    @AfterEach
+    void closeIndex() {
+        podIndex.close();
+    }
+
+    @Test
+    void shouldQueueLaunchesUntilRunningDeployersComplete() {
+        //Given at most two deployers may run at the same time
+        final DeployerPodAdmission admission = new DeployerPodAdmission(podIndex, 2, Integer.MAX_VALUE);
+        //And two deployers have already been started
+        final Pod first = startDeployerFor(admission, resource("ns1", "first"));
+        startDeployerFor(admission, resource("ns2", "second"));
+        assertThat(podIndex.countActive(pod -> true)).isEqualTo(2);
+        //When a third launch is requested
+        final CompletableFuture<Permit> third = admission.admit(resource("ns3", "third"));
+        //Then it has to wait
+        assertThat(third).isNotDone();
+        assertThat(admission.getQueueDepth()).isEqualTo(1);
+        //Until one of the running deployers completes
+        client.updatePodStatus(new PodBuilder(first).editOrNewStatus().withPhase("Succeeded").endStatus().build());
+        assertThat(third).isCompleted();
+        assertThat(admission.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void shouldLimitRunningDeployersPerNamespace() {
+        //Given at most one deployer may run per namespace
+        final DeployerPodAdmission admission = new DeployerPodAdmission(podIndex, 10, 1);
+        startDeployerFor(admission, resource("ns1", "first"));
+        //Then a launch in the same namespace has to wait
+        final CompletableFuture<Permit> sameNamespace = admission.admit(resource("ns1", "second"));
+        assertThat(sameNamespace).isNotDone();
+        //But a launch in another namespace is admitted even though it queued up behind it
+        assertThat(admission.admit(resource("ns2", "third"))).isCompleted();
+        assertThat(sameNamespace).isNotDone();
+        assertThat(admission.getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStopAdmittingOnceTheGlobalLimitIsReached() {
+        //Given at most two deployers may run, and one per namespace
+        final DeployerPodAdmission admission = new DeployerPodAdmission(podIndex, 2, 1);
+        startDeployerFor(admission, resource("ns1", "first"));
+        final CompletableFuture<Permit> sameNamespace = admission.admit(resource("ns1", "second"));
+        //When launches in two other namespaces are requested
+        final CompletableFuture<Permit> otherNamespace = admission.admit(resource("ns2", "third"));
+        final CompletableFuture<Permit> yetAnotherNamespace = admission.admit(resource("ns3", "fourth"));
+        //Then only the first of them fits within the global limit
+        assertThat(otherNamespace).isCompleted();
+        assertThat(yetAnotherNamespace).isNotDone();
+        assertThat(sameNamespace).isNotDone();
+    }
+
+    @Test
+    void shouldNotCountTheDeployerThatWillBeReplaced() {
+        //Given at most one deployer may run
+        final DeployerPodAdmission admission = new DeployerPodAdmission(podIndex, 1, 1);
+        final SerializedEntandoResource resource = resource("ns1", "first");
+        startDeployerFor(admission, resource);
+        //Then a new launch for the same resource is admitted because it replaces the running deployer
+        assertThat(admission.admit(resource)).isCompleted();
+        //But a launch for another resource is not
+        assertThat(admission.admit(resource("ns1", "second"))).isNotDone();
+    }
+
+    @Test
+    void shouldAdmitTheNextLaunchWhenAPermitIsReleased() {
+        //Given at most one deployer may run
+        final DeployerPodAdmission admission = new DeployerPodAdmission(podIndex, 1, 1);
+        final Permit permit = admission.admit(resource("ns1", "first")).join();
+        final CompletableFuture<Permit> next = admission.admit(resource("ns1", "second"));
+        assertThat(next).isNotDone();
+        //When the launch fails and the permit is released
+        permit.release();
+        //Then the next launch is admitted
+        assertThat(next).isCompleted();
+        assertThat(admission.getGrantedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldGiveUpThePlaceInTheQueueWhenTheLaunchIsCancelled() {
+        //Given at most one deployer may run
+        final DeployerPodAdmission admission = new DeployerPodAdmission(podIndex, 1, 1);
+        startDeployerFor(admission, resource("ns1", "first"));
+        final CompletableFuture<Permit> second = admission.admit(resource("ns1", "second"));
+        final CompletableFuture<Permit> third = admission.admit(resource("ns1", "third"));
+        assertThat(admission.getQueueDepth()).isEqualTo(2);
+        //When the launch of the second resource is cancelled because its resource was deleted
+        second.cancel(false);
+        //Then it no longer waits
+        assertThat(admission.getQueueDepth()).isEqualTo(1);
+        //And the third is next in line
+        podIndex.getPods().forEach(pod -> client.updatePodStatus(
+                new PodBuilder(pod).editOrNewStatus().withPhase("Succeeded").endStatus().build()));
+        assertThat(third).isCompleted();
+        assertThat(admission.getQueueDepth()).isZero();
+    }
+
+    private Pod startDeployerFor(DeployerPodAdmission admission, SerializedEntandoResource resource) {
+        final Permit permit = admission.admit(resource).join();
+        final Pod pod = client.startPod(new PodBuilder()
+                .withNewMetadata()
+                .withName(resource.getMetadata().getName() + "-deployer")
+                .withNamespace(client.getControllerNamespace())
+                .addToLabels(CoordinatorUtils.podLabelsFor(resource))
+                .endMetadata()
+                .withNewStatus()
+                .withPhase("Running")
+                .endStatus()
+                .build());
+        permit.podStarted(pod.getMetadata().getName());
+        return pod;
+    }
+
+    private SerializedEntandoResource resource(String namespace, String name) {
+        return CoordinatorTestUtils.toSerializedResource(new TestResource().withNames(namespace, name));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.entando.kubernetes.test.common.PodBehavior;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class DeployerPodIndexTest implements PodBehavior {
+
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final DeployerPodIndex podIndex = client.getDeployerPodIndex();
+
+    @AfterEach
+    void closeIndex() {
+        podIndex.close();
+    }
+
+    @Test
+    void shouldCompleteOnceThePodsAreGone() {
+        final SerializedEntandoResource resource = resource("first");
+        final Map<String, String> labels = CoordinatorUtils.podLabelsFor(resource);
+        startDeployerFor(resource);
+        final CompletableFuture<Void> gone = podIndex.whenGone(labels);
+        assertThat(gone).isNotDone();
+        //Deleting the pods of another resource makes no difference
+        startDeployerFor(resource("second"));
+        client.removePods(client.getControllerNamespace(), CoordinatorUtils.podLabelsFor(resource("second")));
+        assertThat(gone).isNotDone();
+        client.removePods(client.getControllerNamespace(), labels);
+        assertThat(gone).isCompleted();
+        //And there is nothing to wait for when there are no pods
+        assertThat(podIndex.whenGone(labels)).isCompleted();
+    }
+
+    @Test
+    void shouldStartWatchingFromTheResourceVersionOfTheList() {
+        final List<String> watchedFrom = new CopyOnWriteArrayList<>();
+        final DeployerPodIndex index = new DeployerPodIndex(client.getControllerNamespace(), DeployerPodIndex.deployerLabels(),
+                () -> new PodListBuilder().withNewMetadata().withResourceVersion("42").endMetadata().build(),
+                (resourceVersion, watcher) -> {
+                    watchedFrom.add(resourceVersion);
+                    return () -> {
+                    };
+                },
+                client, client.getWatchReconnectGovernor());
+        try {
+            assertThat(watchedFrom).containsExactly("42");
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void shouldOnlyCoverDeployerPodsInTheControllerNamespace() {
+        final Map<String, String> labels = CoordinatorUtils.podLabelsFor(resource("first"));
+        assertThat(podIndex.covers(client.getControllerNamespace(), labels)).isTrue();
+        assertThat(podIndex.covers("other-namespace", labels)).isFalse();
+        assertThat(podIndex.covers(client.getControllerNamespace(), Map.of("pod-label", "123"))).isFalse();
+    }
+
+    @Test
+    void shouldCancelPendingWaitsWhenClosed() {
+        final SerializedEntandoResource resource = resource("first");
+        startDeployerFor(resource);
+        final CompletableFuture<Void> gone = podIndex.whenGone(CoordinatorUtils.podLabelsFor(resource));
+        podIndex.close();
+        assertThat(gone).isCancelled();
+    }
+
+    @Test
+    void shouldOnlyRemoveTheRunningPodsGaugeWhenTheSharedIndexIsClosed() {
+        startDeployerFor(resource("first"));
+        final Map<String, String> labels = CoordinatorUtils.podLabelsFor(resource("first"));
+        final DeployerPodIndex transientIndex = new DeployerPodIndex(client.getControllerNamespace(), labels,
+                () -> client.listPods(client.getControllerNamespace(), labels),
+                (resourceVersion, watcher) -> client.watchPods(client.getControllerNamespace(), labels, resourceVersion, watcher),
+                client, client.getWatchReconnectGovernor());
+        transientIndex.close();
+        assertThat(CoordinatorMetrics.getGaugeValue("entando_deployer_pods_running")).isEqualTo(1);
+        podIndex.close();
+        assertThat(CoordinatorMetrics.getGaugeValue("entando_deployer_pods_running")).isNull();
+    }
+
+    private Pod startDeployerFor(SerializedEntandoResource resource) {
+        return client.startPod(new PodBuilder()
+                .withNewMetadata()
+                .withName(resource.getMetadata().getName() + "-deployer")
+                .withNamespace(client.getControllerNamespace())
+                .withLabels(CoordinatorUtils.podLabelsFor(resource))
+                .endMetadata()
+                .withNewStatus()
+                .withPhase("Running")
+                .endStatus()
+                .build());
+    }
+
+    private SerializedEntandoResource resource(String name) {
+        return CoordinatorTestUtils.toSerializedResource(new TestResource().withNames("my-namespace", name));
+    }
+}
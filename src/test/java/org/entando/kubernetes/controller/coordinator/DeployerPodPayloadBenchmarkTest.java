@@ -0,0 +1,80 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import io.qameta.allure.Description;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("benchmark")})
+class DeployerPodPayloadBenchmarkTest {
+
+    private static final int RELATED_IMAGES = 40;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    void clearProperties() {
+        for (int i = 0; i < RELATED_IMAGES; i++) {
+            System.clearProperty(relatedImageProperty(i));
+        }
+    }
+
+    @Test
+    @Description("Compares the payload of deployer pods that reference the shared variables from a ConfigMap with pods that "
+            + "inline every ENTANDO_ and RELATED_IMAGE variable")
+    void comparePodPayloadSize() throws JsonProcessingException {
+        for (int i = 0; i < RELATED_IMAGES; i++) {
+            System.setProperty(relatedImageProperty(i), "registry.hub.docker.com/entando/image-" + i
+                    + "@sha256:5f1b0e2c44f3d1a8f1e2b9a7c3d4e5f60718293a4b5c6d7e8f9a0b1c2d3e4f5a");
+        }
+        final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(
+                new TestResource().withNames("my-namespace", "my-app"));
+        final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+        final Pod inlined = new DeployerPodTemplates(new SimpleKubernetesClientDouble() {
+            @Override
+            public ConfigMap findOrCreateControllerConfigMap(String name) {
+                if (name.startsWith(DeployerPodTemplates.SHARED_ENV_CONFIGMAP_PREFIX)) {
+                    throw new IllegalStateException("Inline the variables");
+                }
+                return super.findOrCreateControllerConfigMap(name);
+            }
+        }, () -> true).templateFor("entando/my-controller", resource).stamp(Action.ADDED, resource, client.getControllerNamespace());
+        final Pod referenced = new DeployerPodTemplates(client, () -> true).templateFor("entando/my-controller", resource)
+                .stamp(Action.ADDED, resource, client.getControllerNamespace());
+        final int before = objectMapper.writeValueAsBytes(inlined).length;
+        final int after = objectMapper.writeValueAsBytes(referenced).length;
+        attachment("Pod payload with the shared variables inlined", before + " bytes");
+        attachment("Pod payload with the shared variables in a ConfigMap", after + " bytes");
+    }
+
+    private static String relatedImageProperty(int i) {
+        return "related.image.entando.benchmark." + i;
+    }
+}
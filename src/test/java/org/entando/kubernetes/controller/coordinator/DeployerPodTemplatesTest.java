@@ -0,0 +1,184 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfigProperty;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class DeployerPodTemplatesTest {
+
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final DeployerPodTemplates templates = new DeployerPodTemplates(client, () -> true);
+
+    @AfterEach
+    void clearProperties() {
+        System.clearProperty("entando.test.template.property");
+    }
+
+    @Test
+    void shouldReuseTheTemplateForTheSameImage() {
+        final DeployerPodTemplates.Template template = templates.templateFor("entando/my-controller", resource("first"));
+        assertThat(templates.templateFor("entando/my-controller", resource("second"))).isSameAs(template);
+        assertThat(templates.templateFor("entando/other-controller", resource("first"))).isNotSameAs(template);
+        assertThat(templates.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldOnlyBuildSeparateTemplatesForImageOverrideAnnotations() {
+        final DeployerPodTemplates.Template template = templates.templateFor("entando/my-controller", resource("first"));
+        final SerializedEntandoResource applied = resource("second");
+        applied.getMetadata().setAnnotations(Map.of("kubectl.kubernetes.io/last-applied-configuration", "{}"));
+        assertThat(templates.templateFor("entando/my-controller", applied)).isSameAs(template);
+        final SerializedEntandoResource overridden = resource("third");
+        overridden.getMetadata().setAnnotations(Map.of("entando.org/my-controller-image", "test/my-controller:7.0.0"));
+        assertThat(templates.templateFor("entando/my-controller", overridden)).isNotSameAs(template);
+        assertThat(templates.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldDiscardTemplatesWhenTheOperatorConfigChanges() {
+        System.setProperty("entando.test.template.property", "before");
+        final DeployerPodTemplates.Template template = templates.templateFor("entando/my-controller", resource("first"));
+        final ConfigListener configListener = new ConfigListener(client);
+        final ConfigMap config = new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName(CoordinatorUtils.ENTANDO_OPERATOR_CONFIG)
+                .withNamespace(client.getControllerNamespace())
+                .endMetadata()
+                .addToData("entando.test.template.property", "after")
+                .build();
+        configListener.eventReceived(Action.MODIFIED, config);
+        System.setProperty("entando.test.template.property", "after");
+        final DeployerPodTemplates.Template rebuilt = templates.templateFor("entando/my-controller", resource("first"));
+        configListener.eventReceived(Action.DELETED, config);
+        assertThat(rebuilt).isNotSameAs(template);
+        assertThat(rebuilt.getSharedEnvVars()).contains(new EnvVar("ENTANDO_TEST_TEMPLATE_PROPERTY", "after", null));
+    }
+
+    @Test
+    void shouldOnlyStampResourceSpecificFieldsPerLaunch() {
+        final DeployerPodTemplates.Template template = templates.templateFor("entando/my-controller", resource("first"));
+        final Pod first = template.stamp(Action.ADDED, resource("first"), client.getControllerNamespace());
+        final Pod second = template.stamp(Action.MODIFIED, resource("second"), client.getControllerNamespace());
+        assertThat(first.getSpec().getContainers().get(0).getImage()).isEqualTo(template.getImageUri());
+        assertThat(envOf(first)).containsEntry(EntandoOperatorSpiConfigProperty.ENTANDO_RESOURCE_NAME.name(), "first")
+                .containsEntry("ENTANDO_RESOURCE_ACTION", "ADDED");
+        assertThat(envOf(second)).containsEntry(EntandoOperatorSpiConfigProperty.ENTANDO_RESOURCE_NAME.name(), "second")
+                .containsEntry("ENTANDO_RESOURCE_ACTION", "MODIFIED");
+        assertThat(first.getMetadata().getLabels()).containsAllEntriesOf(CoordinatorUtils.podLabelsFor(resource("first")));
+    }
+
+    @Test
+    void shouldReferenceTheSharedVariablesFromAContentHashedConfigMap() {
+        System.setProperty("entando.test.template.property", "shared");
+        final DeployerPodTemplates.Template template = templates.templateFor("entando/my-controller", resource("first"));
+        final String configMapName = template.getSharedEnvConfigMap().orElseThrow();
+        assertThat(configMapName).startsWith(DeployerPodTemplates.SHARED_ENV_CONFIGMAP_PREFIX);
+        assertThat(client.findOrCreateControllerConfigMap(configMapName).getData())
+                .containsEntry("ENTANDO_TEST_TEMPLATE_PROPERTY", "shared");
+        final Pod pod = template.stamp(Action.ADDED, resource("first"), client.getControllerNamespace());
+        assertThat(pod.getSpec().getContainers().get(0).getEnvFrom().get(0).getConfigMapRef().getName()).isEqualTo(configMapName);
+        assertThat(envOf(pod)).doesNotContainKey("ENTANDO_TEST_TEMPLATE_PROPERTY")
+                .containsEntry(EntandoOperatorSpiConfigProperty.ENTANDO_RESOURCE_NAME.name(), "first");
+        //Different content gets a different ConfigMap, leaving the one referenced by existing pods untouched
+        System.setProperty("entando.test.template.property", "changed");
+        new ConfigListener(client).eventReceived(Action.DELETED, new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName(CoordinatorUtils.ENTANDO_OPERATOR_CONFIG)
+                .withNamespace(client.getControllerNamespace())
+                .endMetadata()
+                .withData(Map.of())
+                .build());
+        assertThat(templates.templateFor("entando/my-controller", resource("first")).getSharedEnvConfigMap())
+                .isPresent().isNotEqualTo(Optional.of(configMapName));
+        assertThat(client.findOrCreateControllerConfigMap(configMapName).getData())
+                .containsEntry("ENTANDO_TEST_TEMPLATE_PROPERTY", "shared");
+    }
+
+    @Test
+    void shouldDeleteSupersededSharedVariablesThatNoActivePodReads() {
+        final String first = publishSharedVariables("first");
+        client.startPod(templates.templateFor("entando/my-controller", resource("first"))
+                .stamp(Action.ADDED, resource("first"), client.getControllerNamespace()));
+        final String second = publishSharedVariables("second");
+        final String third = publishSharedVariables("third");
+        final String fourth = publishSharedVariables("fourth");
+        assertThat(client.loadControllerConfigMaps(DeployerPodTemplates.SHARED_ENV_LABELS))
+                .extracting(configMap -> configMap.getMetadata().getName())
+                //The first one is still read by the pod, and the third one might be about to be
+                .containsExactlyInAnyOrder(first, third, fourth)
+                .doesNotContain(second);
+    }
+
+    @Test
+    void shouldInlineTheSharedVariablesWhenTheConfigMapCannotBeWritten() {
+        System.setProperty("entando.test.template.property", "inlined");
+        final DeployerPodTemplates.Template template = new DeployerPodTemplates(new SimpleKubernetesClientDouble() {
+            @Override
+            public ConfigMap findOrCreateControllerConfigMap(String name) {
+                if (name.startsWith(DeployerPodTemplates.SHARED_ENV_CONFIGMAP_PREFIX)) {
+                    throw new IllegalStateException("Forbidden");
+                }
+                return super.findOrCreateControllerConfigMap(name);
+            }
+        }, () -> true).templateFor("entando/my-controller", resource("first"));
+        assertThat(template.getSharedEnvConfigMap()).isEmpty();
+        final Pod pod = template.stamp(Action.ADDED, resource("first"), client.getControllerNamespace());
+        assertThat(pod.getSpec().getContainers().get(0).getEnvFrom()).isEmpty();
+        assertThat(envOf(pod)).containsEntry("ENTANDO_TEST_TEMPLATE_PROPERTY", "inlined");
+    }
+
+    private String publishSharedVariables(String value) {
+        System.setProperty("entando.test.template.property", value);
+        new ConfigListener(client).eventReceived(Action.DELETED, new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName(CoordinatorUtils.ENTANDO_OPERATOR_CONFIG)
+                .withNamespace(client.getControllerNamespace())
+                .endMetadata()
+                .withData(Map.of())
+                .build());
+        return templates.templateFor("entando/my-controller", resource("first")).getSharedEnvConfigMap().orElseThrow();
+    }
+
+    private Map<String, String> envOf(Pod pod) {
+        return pod.getSpec().getContainers().get(0).getEnv().stream()
+                .filter(envVar -> envVar.getValue() != null)
+                .collect(Collectors.toMap(EnvVar::getName, EnvVar::getValue));
+    }
+
+    private SerializedEntandoResource resource(String name) {
+        return CoordinatorTestUtils.toSerializedResource(new TestResource().withNames("my-namespace", name));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.fabric8.kubernetes.client.Watcher.Action;
+import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleEntandoOperationsDouble;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.controller.support.common.EntandoOperatorConfigProperty;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class EntandoResourceObserverTest {
+
+    private static final String NAMESPACE = "my-namespace";
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final CustomResourceDefinitionContext definitionContext = CustomResourceDefinitionContext
+            .fromCustomResourceType(TestResource.class);
+    private final SimpleEntandoOperationsDouble operations = (SimpleEntandoOperationsDouble) client.getOperations(definitionContext);
+    private final CoordinatorExecutors executors = new CoordinatorExecutors();
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+    private final List<String> superseded = new CopyOnWriteArrayList<>();
+    private EntandoResourceObserver observer;
+
+    @BeforeEach
+    void startObserving() {
+        System.setProperty(EntandoOperatorConfigProperty.ENTANDO_NAMESPACES_TO_OBSERVE.getJvmSystemProperty(), NAMESPACE);
+        observer = new EntandoResourceObserver(operations, (action, resource) -> {
+            processed.add(resource.getMetadata().getName() + ":" + resource.getMetadata().getResourceVersion());
+            return CompletableFuture.completedFuture(null);
+        }, resource -> superseded.add(resource.getMetadata().getName()), new CrdNameMapSync(client, List.of(), () -> true), 1L, executors);
+    }
+
+    @AfterEach
+    void shutDown() throws TimeoutException {
+        observer.shutDownAndWait(5, TimeUnit.SECONDS);
+        executors.shutDown();
+        System.clearProperty(EntandoOperatorConfigProperty.ENTANDO_NAMESPACES_TO_OBSERVE.getJvmSystemProperty());
+    }
+
+    @Test
+    void shouldProcessAnEventThatIsAsRecentAsTheStore() {
+        final SerializedEntandoResource event = resource("5", Map.of());
+        operations.getResourceStore().upsert(event);
+        observer.eventReceived(Action.MODIFIED, event);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.contains("my-app:5"));
+    }
+
+    @Test
+    void shouldEvaluateTheCriteriaAgainstTheMoreRecentStateInTheStore() {
+        //E.g. the coordinator has already written a newer version that the watch has not delivered yet
+        operations.getResourceStore().upsert(resource("7", Map.of(AnnotationNames.PROCESSING_INSTRUCTION.getName(), "ignore")));
+        observer.eventReceived(Action.MODIFIED, resource("5", Map.of()));
+        await().during(Duration.ofMillis(500)).atMost(2, TimeUnit.SECONDS).until(processed::isEmpty);
+    }
+
+    @Test
+    void shouldCancelTheLaunchOfADeletedResourceWhateverTheCriteria() {
+        //The deletion would not pass the criteria, but a launch that is still waiting for it has to be given up
+        observer.eventReceived(Action.DELETED, resource("6", Map.of(AnnotationNames.PROCESSING_INSTRUCTION.getName(), "ignore")));
+        assertThat(superseded).containsExactly("my-app");
+        assertThat(processed).isEmpty();
+    }
+
+    private static SerializedEntandoResource resource(String resourceVersion, Map<String, String> annotations) {
+        final TestResource resource = new TestResource().withNames(NAMESPACE, "my-app");
+        resource.getMetadata().setUid("my-app-uid");
+        resource.getMetadata().setGeneration(1L);
+        resource.getMetadata().setResourceVersion(resourceVersion);
+        resource.getMetadata().setAnnotations(annotations);
+        return CoordinatorTestUtils.toSerializedResource(resource);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+import static java.lang.String.format;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleEntandoOperationsDouble;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.support.common.EntandoOperatorConfigProperty;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class EntandoResourceObserverWatchModeTest {
+
+    private static final List<String> OBSERVED_NAMESPACES = List.of("tenant-1", "tenant-2", "tenant-3");
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final CustomResourceDefinitionContext definitionContext = CustomResourceDefinitionContext
+            .fromCustomResourceType(TestResource.class);
+    private final SimpleEntandoOperationsDouble operations = (SimpleEntandoOperationsDouble) client.getOperations(definitionContext);
+    private final CoordinatorExecutors executors = new CoordinatorExecutors();
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+    private EntandoResourceObserver observer;
+
+    @BeforeEach
+    void observeSeveralNamespaces() {
+        System.setProperty(EntandoOperatorConfigProperty.ENTANDO_NAMESPACES_TO_OBSERVE.getJvmSystemProperty(),
+                String.join(",", OBSERVED_NAMESPACES));
+        createResource("tenant-1", "existing");
+        createResource("unobserved", "existing");
+    }
+
+    @AfterEach
+    void shutDown() throws TimeoutException {
+        if (observer != null) {
+            observer.shutDownAndWait(5, TimeUnit.SECONDS);
+        }
+        executors.shutDown();
+        System.clearProperty(EntandoOperatorConfigProperty.ENTANDO_NAMESPACES_TO_OBSERVE.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_MULTIPLEXED_WATCHES_ENABLED.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LIST_PAGE_SIZE.getJvmSystemProperty());
+    }
+
+    @Test
+    void shouldWatchEveryNamespaceSeparatelyByDefault() {
+        startObserving();
+        assertThat(observer.getWatchMode()).isEqualTo("per-namespace");
+        assertThat(observer.getWatchCount()).isEqualTo(OBSERVED_NAMESPACES.size());
+        assertThat(operations.getListRequestCount()).isEqualTo(OBSERVED_NAMESPACES.size());
+        assertOnlyObservedNamespacesProcessed();
+    }
+
+    @Test
+    void shouldWatchAllObservedNamespacesThroughASingleFilteredWatch() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_MULTIPLEXED_WATCHES_ENABLED.getJvmSystemProperty(), "true");
+        startObserving();
+        assertThat(observer.getWatchMode()).isEqualTo("multiplexed");
+        assertThat(observer.getWatchCount()).isEqualTo(1);
+        assertThat(operations.getListRequestCount()).isEqualTo(1);
+        assertOnlyObservedNamespacesProcessed();
+        assertThat(operations.getResourceStore().listInNamespace("unobserved")).isEmpty();
+    }
+
+    @Test
+    void shouldFallBackToAWatchPerNamespaceWhenNotAllowedToAccessAllNamespaces() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_MULTIPLEXED_WATCHES_ENABLED.getJvmSystemProperty(), "true");
+        operations.denyAccessInAllNamespaces();
+        startObserving();
+        assertThat(observer.getWatchMode()).isEqualTo("per-namespace");
+        assertThat(observer.getWatchCount()).isEqualTo(OBSERVED_NAMESPACES.size());
+        assertOnlyObservedNamespacesProcessed();
+    }
+
+    @Test
+    void shouldListTheResourcesOnePageAtATime() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_MULTIPLEXED_WATCHES_ENABLED.getJvmSystemProperty(), "true");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LIST_PAGE_SIZE.getJvmSystemProperty(), "1");
+        createResource("tenant-2", "second");
+        createResource("tenant-3", "third");
+        startObserving();
+        //One request per resource in the observed namespaces
+        assertThat(operations.getListRequestCount()).isEqualTo(3);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.containsAll(List.of("tenant-1/existing", "tenant-2/second",
+                "tenant-3/third")));
+        assertThat(operations.getResourceStore().size()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldStartEachWatchFromTheResourceVersionOfItsList() {
+        startObserving();
+        assertThat(operations.getWatchResourceVersions()).isEqualTo(operations.getListResourceVersions());
+        assertThat(operations.getWatchResourceVersions()).contains(String.valueOf(operations.getResourceStore()
+                .get("tenant-1", "existing").orElseThrow().getMetadata().getResourceVersion()));
+    }
+
+    private void startObserving() {
+        final long start = System.currentTimeMillis();
+        observer = new EntandoResourceObserver(operations, (action, resource) -> {
+            processed.add(resource.getMetadata().getNamespace() + "/" + resource.getMetadata().getName());
+            return CompletableFuture.completedFuture(null);
+        }, new CrdNameMapSync(client, List.of(), () -> true), 1L, executors);
+        attachment("Startup", format("Mode: %s%nWatch connections: %s%nList requests: %s%nStartup time: %sms%n",
+                observer.getWatchMode(), observer.getWatchCount(), operations.getListRequestCount(), System.currentTimeMillis() - start));
+    }
+
+    private void assertOnlyObservedNamespacesProcessed() {
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.contains("tenant-1/existing"));
+        createResource("tenant-2", "added");
+        createResource("unobserved", "added");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.contains("tenant-2/added"));
+        assertThat(processed).noneMatch(resource -> resource.startsWith("unobserved/"));
+    }
+
+    private void createResource(String namespace, String name) {
+        final TestResource resource = new TestResource().withNames(namespace, name);
+        resource.getMetadata().setGeneration(1L);
+        client.createOrPatchEntandoResource(CoordinatorTestUtils.toSerializedResource(resource));
+    }
+}
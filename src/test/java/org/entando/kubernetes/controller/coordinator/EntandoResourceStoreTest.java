@@ -0,0 +1,120 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.fabric8.kubernetes.api.model.OwnerReferenceBuilder;
+import io.fabric8.kubernetes.client.Watcher.Action;
+import java.util.List;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class EntandoResourceStoreTest {
+
+    private final EntandoResourceStore store = new EntandoResourceStore();
+
+    @Test
+    void shouldIndexResourcesByNameNamespaceAndOwner() {
+        //Given I have a resource that is owned by another resource
+        final SerializedEntandoResource owned = resource("my-namespace", "owned", "uid-1", "10");
+        owned.getMetadata().setOwnerReferences(List.of(new OwnerReferenceBuilder().withUid("owner-uid").withName("owner").build()));
+        //When the store receives it
+        store.apply(Action.ADDED, owned);
+        store.apply(Action.ADDED, resource("other-namespace", "other", "uid-2", "11"));
+        //Then I can find it by name, uid, namespace and owner
+        assertThat(store.get("my-namespace", "owned")).containsSame(owned);
+        assertThat(store.getByUid("uid-1")).containsSame(owned);
+        assertThat(store.listInNamespace("my-namespace")).containsExactly(owned);
+        assertThat(store.listOwnedBy("owner-uid")).containsExactly(owned);
+        assertThat(store.size()).isEqualTo(2);
+        //And when it is deleted it disappears from all the indices
+        store.apply(Action.DELETED, owned);
+        assertThat(store.get("my-namespace", "owned")).isEmpty();
+        assertThat(store.listInNamespace("my-namespace")).isEmpty();
+        assertThat(store.listOwnedBy("owner-uid")).isEmpty();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldIgnoreStaleResourceVersions() {
+        final SerializedEntandoResource latest = resource("my-namespace", "my-resource", "uid-1", "20");
+        store.apply(Action.MODIFIED, latest);
+        assertThat(store.upsert(resource("my-namespace", "my-resource", "uid-1", "19"))).isFalse();
+        assertThat(store.get("my-namespace", "my-resource")).containsSame(latest);
+        final SerializedEntandoResource newer = resource("my-namespace", "my-resource", "uid-1", "21");
+        assertThat(store.upsert(newer)).isTrue();
+        assertThat(store.get("my-namespace", "my-resource")).containsSame(newer);
+    }
+
+    @Test
+    void shouldReportTheDifferencesWhenReplacingTheContentsOfANamespace() {
+        //Given the store has three resources, one of them in another namespace
+        store.upsert(resource("my-namespace", "unchanged", "uid-1", "1"));
+        store.upsert(resource("my-namespace", "modified", "uid-2", "2"));
+        store.upsert(resource("my-namespace", "deleted", "uid-3", "3"));
+        final SerializedEntandoResource elsewhere = resource("other-namespace", "elsewhere", "uid-4", "4");
+        store.upsert(elsewhere);
+        //When I replace the contents of my-namespace with a fresh list
+        final EntandoResourceStore.Delta delta = store.replace("my-namespace", List.of(
+                resource("my-namespace", "unchanged", "uid-1", "1"),
+                resource("my-namespace", "modified", "uid-2", "5"),
+                resource("my-namespace", "added", "uid-5", "6")));
+        //Then the differences are reported
+        assertThat(delta.getAdded()).extracting(r -> r.getMetadata().getName()).containsExactly("added");
+        assertThat(delta.getModified()).extracting(r -> r.getMetadata().getName()).containsExactly("modified");
+        assertThat(delta.getDeleted()).extracting(r -> r.getMetadata().getName()).containsExactly("deleted");
+        //And resources in other namespaces are left alone
+        assertThat(store.get("other-namespace", "elsewhere")).containsSame(elsewhere);
+        assertThat(store.get("my-namespace", "modified").get().getMetadata().getResourceVersion()).isEqualTo("5");
+        //And replacing it with the same list again reports no differences
+        assertThat(store.replace("my-namespace", store.listInNamespace("my-namespace")).isEmpty()).isTrue();
+    }
+
+    @Test
+    void shouldReplaceTheContentsOfANamespaceOnePageAtATime() {
+        //Given the store has two resources
+        store.upsert(resource("my-namespace", "listed", "uid-1", "1"));
+        store.upsert(resource("my-namespace", "deleted", "uid-2", "2"));
+        //When a paginated list arrives
+        final EntandoResourceStore.Replacement replacement = store.startReplacement("my-namespace");
+        //Then only the resources on each page that are new or changed are handed back
+        assertThat(replacement.applyPage(List.of(resource("my-namespace", "listed", "uid-1", "1"),
+                resource("my-namespace", "added", "uid-3", "3")))).extracting(r -> r.getMetadata().getName()).containsExactly("added");
+        assertThat(replacement.applyPage(List.of(resource("my-namespace", "added-later", "uid-4", "4"))))
+                .extracting(r -> r.getMetadata().getName()).containsExactly("added-later");
+        //And a watch event brings in a resource that was created after the list was taken
+        store.apply(Action.ADDED, resource("my-namespace", "created-after-list", "uid-5", "6"));
+        //And only the resources that were on none of the pages, and are older than the list, are removed once it is complete
+        assertThat(replacement.complete("5")).extracting(r -> r.getMetadata().getName()).containsExactly("deleted");
+        assertThat(store.listInNamespace("my-namespace")).extracting(r -> r.getMetadata().getName())
+                .containsExactlyInAnyOrder("listed", "added", "added-later", "created-after-list");
+    }
+
+    private SerializedEntandoResource resource(String namespace, String name, String uid, String resourceVersion) {
+        final SerializedEntandoResource resource = CoordinatorTestUtils
+                .toSerializedResource(new TestResource().withNames(namespace, name));
+        resource.getMetadata().setUid(uid);
+        resource.getMetadata().setResourceVersion(resourceVersion);
+        return resource;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class EventSinkTest {
+
+    private final KubernetesClient client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+    private final List<Event> sent = new CopyOnWriteArrayList<>();
+    private EventSink eventSink;
+
+    @BeforeEach
+    void recordSentEvents() {
+        when(client.v1().events().inNamespace(anyString()).createOrReplace(any(Event.class))).thenAnswer(invocation -> {
+            final Event event = invocation.getArgument(0);
+            sent.add(event);
+            return event;
+        });
+        //Flushed explicitly by the tests
+        eventSink = new EventSink(client, 2, 10, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @AfterEach
+    void closeSink() {
+        eventSink.close();
+    }
+
+    @Test
+    void shouldEmitThePendingEventsWhenClosed() {
+        //Given two events are waiting to be flushed
+        eventSink.emit(event("my-app-1", "The deployment was updated to requested", "2021-01-01T00:00:00Z"));
+        eventSink.emit(event("my-app-2", "The deployment was updated to successful", "2021-01-01T00:00:05Z"));
+        //When the sink is closed
+        eventSink.close();
+        //Then they are sent before it stops
+        assertThat(sent).hasSize(2);
+        assertThat(eventSink.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void shouldOnlyRemoveItsOwnQueueDepthGauge() {
+        //Given another sink has since registered the queue depth gauge
+        final EventSink otherSink = new EventSink(client, 2, 10, TimeUnit.HOURS.toMillis(1));
+        otherSink.emit(event("my-app-1", "The deployment was updated to requested", "2021-01-01T00:00:00Z"));
+        //When the first sink is closed
+        eventSink.close();
+        //Then the gauge still reports the queue of the other sink
+        assertThat(CoordinatorMetrics.getGaugeValue("entando_event_queue_depth")).isEqualTo(1);
+        otherSink.close();
+        assertThat(CoordinatorMetrics.getGaugeValue("entando_event_queue_depth")).isNull();
+    }
+
+    @Test
+    void shouldAggregateRepeatedEventsBeforeTheyAreFlushed() {
+        //Given the same event occurred twice
+        eventSink.emit(event("my-app-1", "The deployment was updated to requested", "2021-01-01T00:00:00Z"));
+        eventSink.emit(event("my-app-2", "The deployment was updated to requested", "2021-01-01T00:00:05Z"));
+        //Then only one event is waiting
+        assertThat(eventSink.getQueueDepth()).isEqualTo(1);
+        //And when it is flushed
+        eventSink.flush();
+        //Then a single event is sent with a count of two and the timestamp of the last occurrence
+        assertThat(sent).hasSize(1);
+        assertThat(sent.get(0).getMetadata().getName()).isEqualTo("my-app-1");
+        assertThat(sent.get(0).getCount()).isEqualTo(2);
+        assertThat(sent.get(0).getLastTimestamp()).isEqualTo("2021-01-01T00:00:05Z");
+    }
+
+    @Test
+    void shouldIncrementTheExistingEventOfASeries() {
+        //Given an event has already been sent
+        eventSink.emit(event("my-app-1", "The deployment was updated to requested", "2021-01-01T00:00:00Z"));
+        eventSink.flush();
+        //When the same event occurs again
+        eventSink.emit(event("my-app-2", "The deployment was updated to requested", "2021-01-01T00:01:00Z"));
+        eventSink.flush();
+        //Then the original event is updated rather than creating a new one
+        assertThat(sent).hasSize(2);
+        assertThat(sent.get(1).getMetadata().getName()).isEqualTo("my-app-1");
+        assertThat(sent.get(1).getCount()).isEqualTo(2);
+        assertThat(sent.get(1).getLastTimestamp()).isEqualTo("2021-01-01T00:01:00Z");
+    }
+
+    @Test
+    void shouldDropEventsWhenTheQueueIsFull() {
+        final long droppedBefore = CoordinatorMetrics.getCount("entando_events_dropped");
+        //Given the queue can only hold two series
+        eventSink.emit(event("my-app-1", "first", "2021-01-01T00:00:00Z"));
+        eventSink.emit(event("my-app-2", "second", "2021-01-01T00:00:00Z"));
+        //When a third series is emitted
+        eventSink.emit(event("my-app-3", "third", "2021-01-01T00:00:00Z"));
+        //Then it is dropped without blocking
+        assertThat(eventSink.getQueueDepth()).isEqualTo(2);
+        assertThat(CoordinatorMetrics.getCount("entando_events_dropped")).isEqualTo(droppedBefore + 1);
+        //But new occurrences of the queued series are still aggregated
+        eventSink.emit(event("my-app-4", "first", "2021-01-01T00:00:10Z"));
+        eventSink.flush();
+        assertThat(sent).hasSize(2);
+        assertThat(sent.get(0).getCount()).isEqualTo(2);
+    }
+
+    private Event event(String name, String message, String timestamp) {
+        return new EventBuilder()
+                .withNewMetadata()
+                .withNamespace("my-namespace")
+                .withName(name)
+                .endMetadata()
+                .withNewInvolvedObject()
+                .withKind("TestResource")
+                .withNamespace("my-namespace")
+                .withName("my-app")
+                .withUid("my-uid")
+                .endInvolvedObject()
+                .withCount(1)
+                .withFirstTimestamp(timestamp)
+                .withLastTimestamp(timestamp)
+                .withType("Normal")
+                .withReason("PhaseUpdated")
+                .withAction("PHASE_CHANGE")
+                .withMessage(message)
+                .build();
+    }
+}
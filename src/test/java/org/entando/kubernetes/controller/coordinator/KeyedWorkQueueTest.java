@@ -0,0 +1,152 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class KeyedWorkQueueTest {
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WORK_QUEUE_RETRY_DELAY_MILLIS.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WORK_QUEUE_MAXIMUM_RETRIES.getJvmSystemProperty());
+    }
+
+    @Test
+    void shouldOnlyProcessTheLatestItemWaitingForAKey() {
+        //Given the processing of the first item for a key has not completed yet
+        final CompletableFuture<Void> firstProcessing = new CompletableFuture<>();
+        final KeyedWorkQueue<String> queue = new KeyedWorkQueue<>("test", executor, item -> {
+            processed.add(item);
+            return item.equals("v1") ? firstProcessing : CompletableFuture.completedFuture(null);
+        }, (waiting, latest) -> latest);
+        queue.add("uid", "v1");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 1);
+        //When three more items are added for the same key
+        queue.add("uid", "v2");
+        queue.add("uid", "v3");
+        queue.add("uid", "v4");
+        //Then none of them are processed while the first one is still busy
+        assertThat(queue.isProcessing("uid")).isTrue();
+        assertThat(queue.getDepth()).isEqualTo(1);
+        assertThat(processed).containsExactly("v1");
+        //And only the latest one is processed once the first one completes
+        firstProcessing.complete(null);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 2);
+        assertThat(processed).containsExactly("v1", "v4");
+    }
+
+    @Test
+    void shouldProcessDifferentKeysConcurrently() {
+        final CompletableFuture<Void> neverCompletes = new CompletableFuture<>();
+        final KeyedWorkQueue<String> queue = new KeyedWorkQueue<>("test", executor, item -> {
+            processed.add(item);
+            return neverCompletes;
+        }, (waiting, latest) -> latest);
+        queue.add("uid1", "a");
+        queue.add("uid2", "b");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 2);
+    }
+
+    @Test
+    void shouldRetryFailedItemsUpToTheMaximum() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WORK_QUEUE_RETRY_DELAY_MILLIS.getJvmSystemProperty(), "10");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WORK_QUEUE_MAXIMUM_RETRIES.getJvmSystemProperty(), "2");
+        final AtomicInteger attempts = new AtomicInteger();
+        final KeyedWorkQueue<String> queue = new KeyedWorkQueue<>("test", executor, item -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Failed");
+        }, (waiting, latest) -> latest);
+        queue.add("uid", "v1");
+        //The first attempt plus two retries
+        await().atMost(5, TimeUnit.SECONDS).until(() -> attempts.get() == 3);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> queue.getDepth() == 0 && !queue.isProcessing("uid"));
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void shouldForgetRemovedItems() {
+        final CompletableFuture<Void> firstProcessing = new CompletableFuture<>();
+        final KeyedWorkQueue<String> queue = new KeyedWorkQueue<>("test", executor, item -> {
+            processed.add(item);
+            return firstProcessing;
+        }, (waiting, latest) -> latest);
+        queue.add("uid", "v1");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 1);
+        queue.add("uid", "v2");
+        queue.remove("uid");
+        firstProcessing.complete(null);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !queue.isProcessing("uid"));
+        assertThat(processed).containsExactly("v1");
+    }
+
+    @Test
+    void shouldNotExceedTheConcurrencyLimitOfTheQueue() {
+        //Given a queue with a bulkhead of two on a lane with more threads than that
+        final CoordinatorExecutors executors = new CoordinatorExecutors(4, 1);
+        final CompletableFuture<Void> blocked = new CompletableFuture<>();
+        final KeyedWorkQueue<String> queue = new KeyedWorkQueue<>("test", executors.getLaunchLane(), executors.getTimer(), 2,
+                item -> {
+                    processed.add(item);
+                    return blocked;
+                }, (waiting, latest) -> latest);
+        //When three keys are added
+        queue.add("uid1", "a");
+        queue.add("uid2", "b");
+        queue.add("uid3", "c");
+        //Then only two of them are processed
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 2);
+        assertThat(queue.getProcessingCount()).isEqualTo(2);
+        assertThat(queue.getDepth()).isEqualTo(1);
+        //And the third one follows once they complete
+        blocked.complete(null);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 3);
+        assertThat(processed).containsExactly("a", "b", "c");
+        executors.shutDown();
+    }
+
+    @Test
+    void shouldResolvePerKindLimits() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LAUNCH_CONCURRENCY_BY_KIND.getJvmSystemProperty(),
+                "EntandoPlugin=3,EntandoApp=1");
+        try {
+            assertThat(ControllerCoordinatorConfig.getLaunchConcurrencyFor("EntandoPlugin")).isEqualTo(3);
+            assertThat(ControllerCoordinatorConfig.getLaunchConcurrencyFor("EntandoApp")).isEqualTo(1);
+            assertThat(ControllerCoordinatorConfig.getLaunchConcurrencyFor("EntandoKeycloakServer")).isEqualTo(Integer.MAX_VALUE);
+        } finally {
+            System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LAUNCH_CONCURRENCY_BY_KIND.getJvmSystemProperty());
+        }
+    }
+}
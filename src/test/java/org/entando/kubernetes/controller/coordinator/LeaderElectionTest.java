@@ -0,0 +1,124 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.qameta.allure.Description;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class LeaderElectionTest {
+
+    private static final int LEASE_DURATION_SECONDS = 1;
+    private static final long RETRY_PERIOD_MILLIS = 100L;
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final CoordinatorExecutors firstExecutors = new CoordinatorExecutors(1, 1);
+    private final CoordinatorExecutors secondExecutors = new CoordinatorExecutors(1, 1);
+    private final AtomicInteger promotions = new AtomicInteger();
+    private final AtomicInteger demotions = new AtomicInteger();
+    private final LeaderElection first = electionFor("first", firstExecutors);
+    private final LeaderElection second = electionFor("second", secondExecutors);
+
+    @AfterEach
+    void shutDown() {
+        second.close();
+        first.close();
+        firstExecutors.shutDown();
+        secondExecutors.shutDown();
+    }
+
+    @Test
+    void shouldOnlyHaveOneLeaderAtATime() {
+        first.start();
+        second.start();
+        assertThat(first.isLeading()).isTrue();
+        assertThat(second.isLeading()).isFalse();
+        //Well beyond the lease duration, the leader keeps renewing the Lease
+        await().during(2, TimeUnit.SECONDS).atMost(3, TimeUnit.SECONDS).until(() -> first.isLeading() && !second.isLeading());
+        await().atMost(1, TimeUnit.SECONDS).until(() -> promotions.get() == 1);
+        assertThat(client.loadControllerLease(LeaderElection.LEASE_NAME).getSpec().getHolderIdentity()).isEqualTo("first");
+    }
+
+    @Test
+    @Description("A standby replica should take over once the leader's Lease has expired when the leader stops without releasing it")
+    void shouldFailOverOnceTheLeaseExpires() {
+        first.start();
+        second.start();
+        assertThat(first.isLeading()).isTrue();
+        //The leader's process dies without releasing the Lease
+        firstExecutors.shutDown();
+        final long diedAt = System.currentTimeMillis();
+        await().atMost(5, TimeUnit.SECONDS).until(second::isLeading);
+        final long failoverMillis = System.currentTimeMillis() - diedAt;
+        attachment("Failover time after the leader died", failoverMillis + " ms");
+        assertThat(failoverMillis).isLessThan(TimeUnit.SECONDS.toMillis(LEASE_DURATION_SECONDS) + 10 * RETRY_PERIOD_MILLIS);
+        assertThat(client.loadControllerLease(LeaderElection.LEASE_NAME).getSpec().getLeaseTransitions()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("A standby replica should take over within a retry period when the leader shuts down and releases its Lease")
+    void shouldFailOverQuicklyWhenTheLeaderReleasesTheLease() {
+        first.start();
+        second.start();
+        first.close();
+        assertThat(first.isLeading()).isFalse();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> demotions.get() == 1);
+        final long releasedAt = System.currentTimeMillis();
+        await().atMost(2, TimeUnit.SECONDS).until(second::isLeading);
+        final long failoverMillis = System.currentTimeMillis() - releasedAt;
+        attachment("Failover time after the leader released the Lease", failoverMillis + " ms");
+        assertThat(failoverMillis).isLessThan(TimeUnit.SECONDS.toMillis(LEASE_DURATION_SECONDS));
+    }
+
+    @Test
+    @Description("The leader should keep renewing its Lease while the housekeeping lane is busy")
+    void shouldKeepRenewingWhileTheHousekeepingLaneIsBusy() {
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            firstExecutors.getHousekeepingLane().execute(() -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            first.start();
+            second.start();
+            await().during(2, TimeUnit.SECONDS).atMost(3, TimeUnit.SECONDS).until(() -> first.isLeading() && !second.isLeading());
+            //Only the callback waits for the lane
+            assertThat(promotions.get()).isZero();
+        } finally {
+            release.countDown();
+        }
+        await().atMost(2, TimeUnit.SECONDS).until(() -> promotions.get() == 1);
+    }
+
+    private LeaderElection electionFor(String identity, CoordinatorExecutors executors) {
+        return new LeaderElection(client, identity, executors, LEASE_DURATION_SECONDS, RETRY_PERIOD_MILLIS,
+                promotions::incrementAndGet, demotions::incrementAndGet);
+    }
+}
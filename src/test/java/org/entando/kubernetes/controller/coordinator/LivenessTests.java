@@ -26,6 +26,7 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinition;
 import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinitionBuilder;
 import io.fabric8.kubernetes.client.WatcherException;
+import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
 import io.qameta.allure.Description;
 import io.qameta.allure.Feature;
 import io.qameta.allure.Issue;
@@ -44,6 +45,7 @@ import org.entando.kubernetes.controller.support.client.impl.integrationtesthelp
 import org.entando.kubernetes.controller.support.common.EntandoOperatorConfigProperty;
 import org.entando.kubernetes.fluentspi.BasicDeploymentSpecBuilder;
 import org.entando.kubernetes.fluentspi.TestResource;
+import org.entando.kubernetes.model.capability.ProvidedCapability;
 import org.entando.kubernetes.model.common.DbmsVendor;
 import org.entando.kubernetes.test.common.CommonLabels;
 import org.entando.kubernetes.test.common.FluentTraversals;
@@ -98,6 +100,7 @@ class LivenessTests implements FluentIntegrationTesting, FluentTraversals,
         LogInterceptor.getLogEntries().clear();
         System.clearProperty(EntandoOperatorConfigProperty.ENTANDO_NAMESPACES_TO_OBSERVE.getJvmSystemProperty());
         System.clearProperty(ControllerCoordinatorProperty.ENTANDO_STORE_LOG_ENTRIES.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty());
         LogInterceptor.reset();
     }
 
@@ -109,6 +112,7 @@ class LivenessTests implements FluentIntegrationTesting, FluentTraversals,
         step("Given the Coordinator observes its own namespace", () -> {
             System.setProperty(EntandoOperatorConfigProperty.ENTANDO_NAMESPACES_TO_OBSERVE.getJvmSystemProperty(),
                     clientDouble.getNamespace());
+            System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "1");
             coordinator.onStartup(new StartupEvent());
         });
         ValueHolder<SerializedEntandoResource> testResource = new ValueHolder<>();
@@ -132,4 +136,30 @@ class LivenessTests implements FluentIntegrationTesting, FluentTraversals,
         });
 
     }
+
+    @Test
+    @Description("Should only report readiness once the observers of all CRDs are in sync, and report how long each stage of the startup "
+            + "took")
+    void shouldOnlyReportReadinessOnceAllObserversAreInSync() {
+        final File file = Paths.get("/tmp/EntandoControllerCoordinator.ready").toFile();
+        step("Given the Coordinator is not ready yet", () -> {
+            Liveness.dead();
+            assertThat(file).doesNotExist();
+        });
+        step("When the Coordinator has started up", () -> {
+            System.setProperty(EntandoOperatorConfigProperty.ENTANDO_NAMESPACES_TO_OBSERVE.getJvmSystemProperty(),
+                    clientDouble.getNamespace());
+            coordinator.onStartup(new StartupEvent());
+        });
+        step("Then the observers of all the CRDs have been started", () -> {
+            assertThat(coordinator.getObserver(CustomResourceDefinitionContext.fromCustomResourceType(TestResource.class))).isNotNull();
+            assertThat(coordinator.getObserver(CustomResourceDefinitionContext.fromCustomResourceType(ProvidedCapability.class)))
+                    .isNotNull();
+        });
+        step("And the readiness probe succeeds", () -> assertThat(file).exists());
+        step("And the time taken by each stage of the startup is reported", () -> {
+            attachment("Startup timings", coordinator.getStartupTimings().toString());
+            assertThat(coordinator.getStartupTimings()).containsOnlyKeys("watchers", "membership", "crds", "observers", "total");
+        });
+    }
 }
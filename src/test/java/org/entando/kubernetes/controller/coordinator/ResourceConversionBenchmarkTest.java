@@ -0,0 +1,101 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qameta.allure.Description;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils.Measurement;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("benchmark")})
+class ResourceConversionBenchmarkTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    @Description("Compares converting the Map returned by the raw client through the shared codec and through a JSON String")
+    void compareMapConversion() throws IOException {
+        final Map<String, Object> map = asMap(resource());
+        final Measurement before = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> roundTripThroughString(map));
+        final Measurement after = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> SerializedResourceCodec.fromMap(map));
+        attachment("Map to resource via a JSON String", before.toString());
+        attachment("Map to resource via the shared codec", after.toString());
+    }
+
+    @Test
+    @Description("Compares the conversions performed for a phase update through the shared codec and through JSON Strings")
+    void comparePhaseUpdateConversions() throws IOException {
+        final Map<String, Object> map = asMap(resource());
+        final Measurement before = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> {
+            try {
+                final SerializedEntandoResource ser = roundTripThroughString(map);
+                ser.getStatus().updateDeploymentPhase(EntandoDeploymentPhase.REQUESTED, 1L);
+                OBJECT_MAPPER.writeValueAsString(ser);
+                return roundTripThroughString(map);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        final Measurement after = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> {
+            final SerializedEntandoResource ser = SerializedResourceCodec.fromMap(map);
+            ser.getStatus().updateDeploymentPhase(EntandoDeploymentPhase.REQUESTED, 1L);
+            SerializedResourceCodec.toJson(ser);
+            return SerializedResourceCodec.fromMap(map);
+        });
+        attachment("Phase update conversions via JSON Strings", before.toString());
+        attachment("Phase update conversions via the shared codec", after.toString());
+    }
+
+    private static SerializedEntandoResource roundTripThroughString(Map<String, Object> map) {
+        try {
+            return OBJECT_MAPPER.readValue(OBJECT_MAPPER.writeValueAsString(map), SerializedEntandoResource.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> asMap(SerializedEntandoResource resource) throws IOException {
+        return OBJECT_MAPPER.readValue(OBJECT_MAPPER.writeValueAsString(resource), new TypeReference<Map<String, Object>>() {
+        });
+    }
+
+    private static SerializedEntandoResource resource() {
+        final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(
+                new TestResource().withNames("my-namespace", "my-resource"));
+        final Map<String, Object> spec = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            spec.put("property" + i, "value" + i);
+        }
+        resource.setSpec(spec);
+        return resource;
+    }
+}
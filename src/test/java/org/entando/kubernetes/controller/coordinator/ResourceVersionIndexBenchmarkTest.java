@@ -0,0 +1,72 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.qameta.allure.Description;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("benchmark")})
+class ResourceVersionIndexBenchmarkTest {
+
+    private static final int RESOURCES = 20_000;
+    private static final int VERSIONS_PER_RESOURCE = 10;
+
+    @Test
+    @Description("Compares the heap retained per resource by the resourceVersion index and by a deque of the last ten versions")
+    void compareRetainedHeapPerResource() {
+        final List<String> uids = new ArrayList<>();
+        for (int i = 0; i < RESOURCES; i++) {
+            uids.add(UUID.randomUUID().toString());
+        }
+        final List<Object> retained = new ArrayList<>();
+        final long dequeBytes = BenchmarkUtils.retainedHeap(() -> {
+            final Map<String, Deque<String>> cache = new ConcurrentHashMap<>();
+            for (String uid : uids) {
+                final Deque<String> versions = cache.computeIfAbsent(uid, key -> new ConcurrentLinkedDeque<>());
+                for (int v = 0; v < VERSIONS_PER_RESOURCE; v++) {
+                    versions.offer(String.valueOf(100_000 + v));
+                }
+            }
+            retained.add(cache);
+        });
+        final long indexBytes = BenchmarkUtils.retainedHeap(() -> {
+            final ResourceVersionIndex index = new ResourceVersionIndex(RESOURCES, Long.MAX_VALUE, System::currentTimeMillis);
+            for (String uid : uids) {
+                for (int v = 0; v < VERSIONS_PER_RESOURCE; v++) {
+                    index.markIfNew(uid, String.valueOf(100_000 + v));
+                }
+            }
+            retained.add(index);
+        });
+        attachment("Bytes per resource with a deque of versions", String.valueOf(dequeBytes / RESOURCES));
+        attachment("Bytes per resource with the resourceVersion index", String.valueOf(indexBytes / RESOURCES));
+        assertThat(retained).hasSize(2);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class ResourceVersionIndexTest {
+
+    private final AtomicLong clock = new AtomicLong(1000L);
+    private final ResourceVersionIndex index = new ResourceVersionIndex(3, 60_000L, clock::get);
+
+    @Test
+    void shouldIgnoreDuplicateAndStaleNumericVersions() {
+        assertThat(index.markIfNew("uid-1", "10")).isTrue();
+        assertThat(index.markIfNew("uid-1", "10")).isFalse();
+        //An older version arriving after a relist
+        assertThat(index.markIfNew("uid-1", "9")).isFalse();
+        assertThat(index.markIfNew("uid-1", "11")).isTrue();
+        //Versions recorded by the coordinator itself raise the high-water mark
+        index.mark("uid-1", "15");
+        assertThat(index.markIfNew("uid-1", "14")).isFalse();
+        assertThat(index.markIfNew("uid-1", "16")).isTrue();
+    }
+
+    @Test
+    void shouldOnlyCompareOpaqueVersionsForEquality() {
+        assertThat(index.markIfNew("uid-1", "abc")).isTrue();
+        assertThat(index.markIfNew("uid-1", "abc")).isFalse();
+        assertThat(index.markIfNew("uid-1", "abb")).isTrue();
+    }
+
+    @Test
+    void shouldEvictTheLeastRecentlyUsedUids() {
+        index.markIfNew("uid-1", "1");
+        index.markIfNew("uid-2", "2");
+        index.markIfNew("uid-3", "3");
+        //uid-1 is used again, so uid-2 becomes the eldest
+        index.markIfNew("uid-1", "1");
+        index.markIfNew("uid-4", "4");
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.markIfNew("uid-1", "1")).isFalse();
+        assertThat(index.markIfNew("uid-2", "2")).isTrue();
+    }
+
+    @Test
+    void shouldExpireAndPurgeEntries() {
+        index.markIfNew("uid-1", "1");
+        index.markIfNew("uid-2", "2");
+        index.markIfNew("uid-3", "3");
+        //uid-3 no longer exists
+        assertThat(index.retainAll(Set.of("uid-1", "uid-2")::contains)).isEqualTo(1);
+        assertThat(index.size()).isEqualTo(2);
+        //After the time to live, the entries are treated as unknown
+        clock.addAndGet(60_001L);
+        assertThat(index.markIfNew("uid-1", "1")).isTrue();
+        assertThat(index.retainAll(uid -> true)).isEqualTo(1);
+        assertThat(index.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.HashMap;
+import java.util.Map;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class SerializedResourceCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    void resetProperties() {
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LAZY_SPEC_DECODING.getJvmSystemProperty());
+    }
+
+    @Test
+    void shouldOnlyMaterializeTheSpecWhenAccessed() throws Exception {
+        //Given I have a resource with a spec, a generation and a phase
+        final String json = objectMapper.writeValueAsString(resourceWithSpec());
+        //When I decode it lazily
+        final LazySerializedEntandoResource resource = SerializedResourceCodec.readLazily(json);
+        //Then its metadata and status are available
+        assertThat(resource.getMetadata().getName()).isEqualTo("my-resource");
+        assertThat(resource.getMetadata().getGeneration()).isEqualTo(3L);
+        assertThat(resource.getStatus().getPhase()).isEqualTo(EntandoDeploymentPhase.SUCCESSFUL);
+        //But its spec has not been parsed yet
+        assertThat(resource.isSpecMaterialized()).isFalse();
+        //And the spec is parsed as soon as it is accessed
+        assertThat(resource.getSpec()).containsEntry("replicas", 2);
+        assertThat(resource.isSpecMaterialized()).isTrue();
+    }
+
+    @Test
+    void shouldSerializeTheSpecEvenIfNeverAccessed() throws Exception {
+        final String json = objectMapper.writeValueAsString(resourceWithSpec());
+        final LazySerializedEntandoResource resource = SerializedResourceCodec.readLazily(json);
+        final SerializedEntandoResource roundTripped = SerializedResourceCodec.read(objectMapper.writeValueAsString(resource));
+        assertThat(roundTripped.getSpec()).containsEntry("replicas", 2);
+        assertThat(roundTripped.getMetadata().getName()).isEqualTo("my-resource");
+    }
+
+    @Test
+    void shouldDecodeEagerlyWhenLazyDecodingIsSwitchedOff() throws Exception {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_LAZY_SPEC_DECODING.getJvmSystemProperty(), "false");
+        final String json = objectMapper.writeValueAsString(resourceWithSpec());
+        final SerializedEntandoResource resource = SerializedResourceCodec.readWatchedResource(json,
+                ControllerCoordinatorConfig.isLazySpecDecoding());
+        assertThat(resource).isNotInstanceOf(LazySerializedEntandoResource.class);
+        assertThat(resource.getSpec()).containsEntry("replicas", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldOnlyIncludeThePhaseDeltaInTheStatusPatch() throws Exception {
+        //Given I have a resource that was processed successfully
+        final SerializedEntandoResource resource = resourceWithSpec();
+        final Map<String, Object> original = SerializedResourceCodec.toMap(resource);
+        //When its phase is updated
+        resource.getStatus().updateDeploymentPhase(EntandoDeploymentPhase.REQUESTED, 4L);
+        final Map<String, Object> patch = objectMapper.readValue(SerializedResourceCodec.toStatusMergePatch(original, resource), Map.class);
+        //Then the patch only contains the phase and the observedGeneration
+        assertThat(patch).containsOnlyKeys("status");
+        assertThat((Map<String, Object>) patch.get("status"))
+                .containsOnlyKeys("phase", "observedGeneration")
+                .containsEntry("phase", objectMapper.convertValue(EntandoDeploymentPhase.REQUESTED, String.class))
+                .containsEntry("observedGeneration", 4);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRemoveTheStatusEntriesThatAreNoLongerThere() throws Exception {
+        //Given the original status had entries, including an object, that the updated status no longer has
+        final SerializedEntandoResource resource = resourceWithSpec();
+        final Map<String, Object> original = SerializedResourceCodec.toMap(resource);
+        final Map<String, Object> originalStatus = (Map<String, Object>) original.get("status");
+        originalStatus.put("obsoleteEntry", "value");
+        originalStatus.put("nested", new HashMap<>(Map.of("kept", "value", "removed", "value")));
+        //When the merge patch is built
+        final Map<String, Object> patch = objectMapper.readValue(SerializedResourceCodec.toStatusMergePatch(original, resource), Map.class);
+        //Then the removed entries are sent as null, so that the server removes them too
+        final Map<String, Object> status = (Map<String, Object>) patch.get("status");
+        assertThat(status).containsEntry("obsoleteEntry", null).containsEntry("nested", null);
+        assertThat(status).containsOnlyKeys("phase", "observedGeneration", "obsoleteEntry", "nested");
+    }
+
+    private SerializedEntandoResource resourceWithSpec() {
+        final TestResource testResource = new TestResource().withNames("my-namespace", "my-resource");
+        testResource.getMetadata().setGeneration(3L);
+        final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(testResource);
+        final Map<String, Object> spec = new HashMap<>();
+        spec.put("replicas", 2);
+        resource.setSpec(spec);
+        resource.getStatus().updateDeploymentPhase(EntandoDeploymentPhase.SUCCESSFUL, 3L);
+        return resource;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class ShardMembershipTest {
+
+    private static final List<String> NAMESPACES = IntStream.range(0, 100).mapToObj(i -> "tenant-" + i).collect(Collectors.toList());
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final CoordinatorExecutors firstExecutors = new CoordinatorExecutors(1, 1);
+    private final CoordinatorExecutors secondExecutors = new CoordinatorExecutors(1, 1);
+    private final ShardMembership first = new ShardMembership(client, "first", firstExecutors, 1, 100L, () -> {
+    });
+    private final ShardMembership second = new ShardMembership(client, "second", secondExecutors, 1, 100L, () -> {
+    });
+
+    @AfterEach
+    void shutDown() {
+        first.close();
+        second.close();
+        firstExecutors.shutDown();
+        secondExecutors.shutDown();
+    }
+
+    @Test
+    void shouldSplitTheNamespacesBetweenTheMembers() {
+        first.start();
+        //The namespaces are only taken on once no other replica could still be acting on them
+        assertThat(NAMESPACES).noneMatch(first::owns);
+        await().atMost(3, TimeUnit.SECONDS).until(() -> NAMESPACES.stream().allMatch(first::owns));
+        second.start();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> first.getMembers().equals(Set.of("first", "second")));
+        assertThat(second.getMembers()).isEqualTo(Set.of("first", "second"));
+        //Every namespace ends up with exactly one owner
+        await().atMost(3, TimeUnit.SECONDS)
+                .until(() -> NAMESPACES.stream().allMatch(namespace -> first.owns(namespace) ^ second.owns(namespace)));
+        assertThat(NAMESPACES).anyMatch(first::owns).anyMatch(second::owns);
+    }
+
+    @Test
+    void shouldNotActOnANamespaceThatAnotherMemberMayStillConsiderItsOwn() throws InterruptedException {
+        final CoordinatorExecutors staleExecutors = new CoordinatorExecutors(1, 1);
+        final CoordinatorExecutors joiningExecutors = new CoordinatorExecutors(1, 1);
+        final ShardMembership stale = new ShardMembership(client, "stale", staleExecutors, 2, 100L, () -> {
+        });
+        final ShardMembership joining = new ShardMembership(client, "joining", joiningExecutors, 2, 100L, () -> {
+        });
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch catchUp = new CountDownLatch(1);
+        try {
+            stale.start();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> NAMESPACES.stream().allMatch(stale::owns));
+            //Given the first member does not get to see the new member for a while
+            staleExecutors.getLeaseTimer().execute(() -> {
+                blocked.countDown();
+                try {
+                    catchUp.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+            //When the second member joins
+            joining.start();
+            assertThat(joining.getMembers()).isEqualTo(Set.of("stale", "joining"));
+            assertThat(stale.getMembers()).isEqualTo(Set.of("stale"));
+            //Then it does not act on its share of the namespaces while the first member still considers them its own
+            await().during(1, TimeUnit.SECONDS).atMost(2, TimeUnit.SECONDS)
+                    .until(() -> NAMESPACES.stream().noneMatch(namespace -> stale.owns(namespace) && joining.owns(namespace)));
+            assertThat(NAMESPACES).noneMatch(joining::owns);
+            //And it takes them on once the first member has caught up and the hand-over period has passed
+            catchUp.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> stale.getMembers().equals(Set.of("stale", "joining")));
+            await().atMost(5, TimeUnit.SECONDS)
+                    .until(() -> NAMESPACES.stream().allMatch(namespace -> stale.owns(namespace) ^ joining.owns(namespace)));
+            assertThat(NAMESPACES).anyMatch(joining::owns);
+        } finally {
+            catchUp.countDown();
+            stale.close();
+            joining.close();
+            staleExecutors.shutDown();
+            joiningExecutors.shutDown();
+        }
+    }
+
+    @Test
+    void shouldRebalanceOnTheHousekeepingLaneWithoutHoldingUpTheRenewals() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> rebalancedOn = new CopyOnWriteArrayList<>();
+        final CoordinatorExecutors thirdExecutors = new CoordinatorExecutors(1, 1);
+        final ShardMembership third = new ShardMembership(client, "third", thirdExecutors, 1, 100L, () -> {
+            rebalancedOn.add(Thread.currentThread().getName());
+            try {
+                //A slow rebalance
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            third.start();
+            first.start();
+            //The third member keeps renewing its Lease, so the first member keeps seeing it well beyond its lease duration
+            await().during(2, TimeUnit.SECONDS).atMost(3, TimeUnit.SECONDS)
+                    .until(() -> first.getMembers().equals(Set.of("first", "third")));
+            assertThat(third.getMembers()).isEqualTo(Set.of("first", "third"));
+            assertThat(rebalancedOn).isNotEmpty().allMatch(name -> name.startsWith("coordinator-housekeeping"));
+        } finally {
+            release.countDown();
+            third.close();
+            thirdExecutors.shutDown();
+        }
+    }
+
+    @Test
+    void shouldTakeTheNamespacesOverWhenAMemberLeaves() {
+        first.start();
+        second.start();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> first.getMembers().size() == 2);
+        second.close();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> first.getMembers().equals(Set.of("first")));
+        await().atMost(3, TimeUnit.SECONDS).until(() -> NAMESPACES.stream().allMatch(first::owns));
+    }
+
+    @Test
+    void shouldTakeTheNamespacesOverWhenAMemberDies() {
+        first.start();
+        second.start();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> first.getMembers().size() == 2);
+        //The second member's process dies without deleting its Lease
+        secondExecutors.shutDown();
+        await().atMost(3, TimeUnit.SECONDS).until(() -> first.getMembers().equals(Set.of("first")));
+        await().atMost(3, TimeUnit.SECONDS).until(() -> NAMESPACES.stream().allMatch(first::owns));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+import static java.lang.String.format;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.qameta.allure.Description;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("benchmark")})
+class ShardingThroughputBenchmarkTest {
+
+    private static final List<String> NAMESPACES = IntStream.range(0, 200).mapToObj(i -> "tenant-" + i).collect(Collectors.toList());
+
+    @Test
+    @Description("As replicas join, every namespace should still be processed by exactly one replica, and the namespaces should be "
+            + "spread over the replicas evenly enough for each replica's launch lane to take a fair share of the work")
+    void measureTheSplitAsReplicasJoin() throws InterruptedException {
+        final StringBuilder report = new StringBuilder();
+        for (int replicas : new int[]{1, 2, 4}) {
+            final Map<String, String> processedBy = processAllNamespaces(replicas);
+            assertThat(processedBy).containsOnlyKeys(NAMESPACES);
+            //No namespace was processed by more than one replica
+            assertThat(processedBy.values()).allMatch(replica -> !replica.contains(","));
+            final Map<String, Long> namespacesPerReplica = processedBy.values().stream()
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            assertThat(namespacesPerReplica).hasSize(replicas);
+            //Allow for the uneven split of a consistent hash ring
+            namespacesPerReplica.values().forEach(count -> assertThat(count).isGreaterThan(NAMESPACES.size() / replicas / 2L));
+            report.append(format("%s replicas: %s%n", replicas, namespacesPerReplica));
+        }
+        attachment("Namespaces processed per replica", report.toString());
+    }
+
+    private Map<String, String> processAllNamespaces(int replicas) throws InterruptedException {
+        final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+        final List<CoordinatorExecutors> executors = new ArrayList<>();
+        final List<ShardMembership> memberships = new ArrayList<>();
+        for (int i = 0; i < replicas; i++) {
+            final CoordinatorExecutors replicaExecutors = new CoordinatorExecutors(1, 1);
+            final ShardMembership membership = new ShardMembership(client, "replica-" + i, replicaExecutors, 1, 50L, () -> {
+            });
+            membership.start();
+            executors.add(replicaExecutors);
+            memberships.add(membership);
+        }
+        try {
+            await().atMost(5, TimeUnit.SECONDS).until(() -> memberships.stream().allMatch(m -> m.getMembers().size() == replicas));
+            //Wait for the namespaces to be handed over to their owners
+            await().atMost(5, TimeUnit.SECONDS)
+                    .until(() -> NAMESPACES.stream().allMatch(namespace -> memberships.stream().anyMatch(m -> m.owns(namespace))));
+            final Map<String, String> processedBy = new ConcurrentHashMap<>();
+            final CountDownLatch processed = new CountDownLatch(NAMESPACES.size());
+            //Every replica sees every event, but only processes the ones in the namespaces it owns
+            for (int i = 0; i < replicas; i++) {
+                final String replica = "replica-" + i;
+                final ShardMembership membership = memberships.get(i);
+                final CoordinatorExecutors replicaExecutors = executors.get(i);
+                NAMESPACES.stream().filter(membership::owns).forEach(namespace -> replicaExecutors.getLaunchLane().execute(() -> {
+                    processedBy.merge(namespace, replica, (first, second) -> first + "," + second);
+                    processed.countDown();
+                }));
+            }
+            assertThat(processed.await(30, TimeUnit.SECONDS)).isTrue();
+            return processedBy;
+        } finally {
+            memberships.forEach(ShardMembership::close);
+            executors.forEach(CoordinatorExecutors::shutDown);
+        }
+    }
+}
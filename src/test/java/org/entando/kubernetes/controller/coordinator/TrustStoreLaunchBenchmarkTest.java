@@ -0,0 +1,92 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+
+import io.fabric8.kubernetes.client.Watcher.Action;
+import io.qameta.allure.Description;
+import java.nio.file.Paths;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils.Measurement;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfigProperty;
+import org.entando.kubernetes.controller.support.common.EntandoOperatorConfigProperty;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.entando.kubernetes.test.common.CertificateSecretHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("benchmark")})
+class TrustStoreLaunchBenchmarkTest {
+
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 500;
+    private final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+    private final DeployerPodAdmission admission = new DeployerPodAdmission(client.getDeployerPodIndex(), Integer.MAX_VALUE,
+            Integer.MAX_VALUE);
+    private final SerializedEntandoResource resource = client.createOrPatchEntandoResource(CoordinatorTestUtils.toSerializedResource(
+            new TestResource().withNames("my-namespace", "my-app")));
+
+    @AfterEach
+    void resetSystemProperties() {
+        client.getDeployerPodIndex().close();
+        System.clearProperty(EntandoOperatorSpiConfigProperty.ENTANDO_CA_SECRET_NAME.getJvmSystemProperty());
+        System.clearProperty(EntandoOperatorConfigProperty.ENTANDO_TLS_SECRET_NAME.getJvmSystemProperty());
+    }
+
+    @Test
+    @Description("With a CA configured, compares launches that leave the truststore to the background regenerator with "
+            + "launches that check the CA and truststore Secrets themselves")
+    void compareLaunchLatencyWithCertificateAuthority() {
+        client.overwriteControllerSecret(CertificateSecretHelper.buildCertificateSecretsFromDirectory(
+                client.getControllerNamespace(),
+                Paths.get("src", "test", "resources", "tls", "ampie.dynu.net")
+        ).get(0));
+        compareLaunchLatency("with a CA");
+    }
+
+    @Test
+    @Description("Without a CA, launches no longer delete the truststore Secret every time")
+    void compareLaunchLatencyWithoutCertificateAuthority() {
+        compareLaunchLatency("without a CA");
+    }
+
+    private void compareLaunchLatency(String scenario) {
+        final Measurement before = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> {
+            TrustStoreSecretRegenerator.regenerateIfNecessary(client);
+            launch();
+        });
+        final TrustStoreSecretRegenerator regenerator = new TrustStoreSecretRegenerator(client, Runnable::run, () -> true);
+        final Measurement after = BenchmarkUtils.measure(WARMUP, ITERATIONS, this::launch);
+        regenerator.close();
+        attachment("Launches " + scenario + " that regenerate the truststore if necessary", before.toString());
+        attachment("Launches " + scenario + " with the truststore maintained in the background", after.toString());
+    }
+
+    private void launch() {
+        new DeployerLaunch(Action.ADDED, resource, client, admission,
+                new ControllerExecutor(client.getControllerNamespace(), client, "entando/my-controller"), Runnable::run)
+                .start()
+                .toCompletableFuture()
+                .join();
+    }
+}
@@ -17,11 +17,18 @@
 package org.entando.kubernetes.controller.coordinator;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.Watcher.Action;
 import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.entando.kubernetes.controller.coordinator.common.SimpleKubernetesClientDouble;
 import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfig;
 import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfigProperty;
@@ -57,6 +64,90 @@ class TrustStoreSecretRegeneratorTest {
         assertNotEquals(newTrustStoreSecret.getMetadata().getResourceVersion(), oldTrustStoreSecret.getMetadata().getResourceVersion());
     }
 
+    @Test
+    void shouldOnlyRegenerateWhenTheContentOfTheCaSecretChanges() {
+        final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+        final Secret caSecret = CertificateSecretHelper.buildCertificateSecretsFromDirectory(
+                client.getControllerNamespace(),
+                Paths.get("src", "test", "resources", "tls", "ampie.dynu.net")
+        ).get(0);
+        client.overwriteControllerSecret(caSecret);
+        final TrustStoreSecretRegenerator regenerator = new TrustStoreSecretRegenerator(client, Runnable::run, () -> true);
+        final long regenerations = CoordinatorMetrics.getCount("entando_truststore_regenerations");
+        final Secret trustStoreSecret = client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET);
+        assertThat(trustStoreSecret, notNullValue());
+        //A new resourceVersion with the same content
+        regenerator.eventReceived(Action.MODIFIED, client.overwriteControllerSecret(caSecret));
+        assertThat(CoordinatorMetrics.getCount("entando_truststore_regenerations"), is(regenerations));
+        //A restarted coordinator recognises the truststore from its fingerprint
+        new TrustStoreSecretRegenerator(client, Runnable::run, () -> true).close();
+        assertThat(CoordinatorMetrics.getCount("entando_truststore_regenerations"), is(regenerations));
+        //Changed content
+        final Secret changedCaSecret = client.loadControllerSecret(caSecret.getMetadata().getName());
+        changedCaSecret.getData().put("some-other.crt", caSecret.getData().get("ca.crt"));
+        regenerator.eventReceived(Action.MODIFIED, client.overwriteControllerSecret(changedCaSecret));
+        assertThat(CoordinatorMetrics.getCount("entando_truststore_regenerations"), is(regenerations + 1));
+        //Removed CA
+        regenerator.eventReceived(Action.DELETED, changedCaSecret);
+        assertThat(client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET), nullValue());
+        regenerator.close();
+    }
+
+    @Test
+    void shouldRegenerateTheTrustStoreWhenItIsDeletedOrTamperedWith() {
+        final Map<String, Watcher<Secret>> watchers = new ConcurrentHashMap<>();
+        final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble() {
+            @Override
+            public void watchControllerSecret(String name, Watcher<Secret> secretWatcher) {
+                watchers.put(name, secretWatcher);
+            }
+        };
+        final Secret caSecret = CertificateSecretHelper.buildCertificateSecretsFromDirectory(
+                client.getControllerNamespace(),
+                Paths.get("src", "test", "resources", "tls", "ampie.dynu.net")
+        ).get(0);
+        client.overwriteControllerSecret(caSecret);
+        final TrustStoreSecretRegenerator regenerator = new TrustStoreSecretRegenerator(client, Runnable::run, () -> true);
+        final long regenerations = CoordinatorMetrics.getCount("entando_truststore_regenerations");
+        final Watcher<Secret> trustStoreWatcher = watchers.get(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET);
+        assertThat(trustStoreWatcher, notNullValue());
+        //Its own write is recognised from the fingerprint
+        final Secret trustStoreSecret = client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET);
+        trustStoreWatcher.eventReceived(Action.MODIFIED, trustStoreSecret);
+        assertThat(CoordinatorMetrics.getCount("entando_truststore_regenerations"), is(regenerations));
+        //Deleted
+        client.deleteControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET);
+        trustStoreWatcher.eventReceived(Action.DELETED, trustStoreSecret);
+        assertThat(client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET), notNullValue());
+        assertThat(CoordinatorMetrics.getCount("entando_truststore_regenerations"), is(regenerations + 1));
+        //Overwritten without the fingerprint
+        final Secret tampered = client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET);
+        tampered.getMetadata().getAnnotations().remove(AnnotationNames.CA_FINGERPRINT.getName());
+        trustStoreWatcher.eventReceived(Action.MODIFIED, client.overwriteControllerSecret(tampered));
+        assertThat(CoordinatorMetrics.getCount("entando_truststore_regenerations"), is(regenerations + 2));
+        assertThat(client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET).getMetadata().getAnnotations()
+                .containsKey(AnnotationNames.CA_FINGERPRINT.getName()), is(true));
+        regenerator.close();
+    }
+
+    @Test
+    void shouldLeaveTheTrustStoreToTheReplicaThatMayWrite() {
+        final SimpleKubernetesClientDouble client = new SimpleKubernetesClientDouble();
+        final Secret caSecret = CertificateSecretHelper.buildCertificateSecretsFromDirectory(
+                client.getControllerNamespace(),
+                Paths.get("src", "test", "resources", "tls", "ampie.dynu.net")
+        ).get(0);
+        client.overwriteControllerSecret(caSecret);
+        final AtomicBoolean mayWrite = new AtomicBoolean();
+        final TrustStoreSecretRegenerator regenerator = new TrustStoreSecretRegenerator(client, Runnable::run, mayWrite::get);
+        assertThat(client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET), nullValue());
+        //Taking over
+        mayWrite.set(true);
+        regenerator.verify();
+        assertThat(client.loadControllerSecret(TrustStoreHelper.DEFAULT_TRUSTSTORE_SECRET), notNullValue());
+        regenerator.close();
+    }
+
     @AfterEach
     void resetSystemProperties() {
         System.clearProperty(EntandoOperatorSpiConfigProperty.ENTANDO_CA_SECRET_NAME.getJvmSystemProperty());
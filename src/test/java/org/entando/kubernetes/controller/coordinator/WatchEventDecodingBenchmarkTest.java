@@ -0,0 +1,79 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static io.qameta.allure.Allure.attachment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qameta.allure.Description;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils;
+import org.entando.kubernetes.controller.coordinator.common.BenchmarkUtils.Measurement;
+import org.entando.kubernetes.controller.coordinator.common.CoordinatorTestUtils;
+import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
+import org.entando.kubernetes.fluentspi.TestResource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("benchmark")})
+class WatchEventDecodingBenchmarkTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @Description("Compares metadata-first decoding with full decoding for events that are discarded without reading the spec")
+    void compareDecodingModes() throws IOException {
+        final String json = objectMapper.writeValueAsString(resourceWithLargeSpec());
+        final Measurement eager = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> {
+            try {
+                return objectMapper.readValue(json, SerializedEntandoResource.class);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        final Measurement lazyDiscarded = BenchmarkUtils.measure(WARMUP, ITERATIONS, () -> SerializedResourceCodec.readLazily(json));
+        final Measurement lazyProcessed = BenchmarkUtils.measure(WARMUP, ITERATIONS,
+                () -> SerializedResourceCodec.readLazily(json).getSpec());
+        attachment("Events decoded eagerly", eager.toString());
+        attachment("Events decoded lazily and discarded", lazyDiscarded.toString());
+        attachment("Events decoded lazily and processed", lazyProcessed.toString());
+    }
+
+    private SerializedEntandoResource resourceWithLargeSpec() {
+        final SerializedEntandoResource resource = CoordinatorTestUtils.toSerializedResource(
+                new TestResource().withNames("my-namespace", "my-bundle"));
+        final Map<String, Object> spec = new HashMap<>();
+        final List<Map<String, Object>> versions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final Map<String, Object> version = new HashMap<>();
+            version.put("version", "1.0." + i);
+            version.put("integrity", "sha512-" + "a".repeat(88));
+            version.put("tarball", "https://registry.example.com/my-bundle/-/my-bundle-1.0." + i + ".tgz");
+            versions.add(version);
+        }
+        spec.put("versions", versions);
+        resource.setSpec(spec);
+        return resource;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.client.WatcherException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.entando.kubernetes.controller.spi.common.EntandoOperatorSpiConfigProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+@Tags({@Tag("in-process"), @Tag("unit"), @Tag("pre-deployment")})
+class WatchReconnectGovernorTest {
+
+    private final WatchReconnectGovernor governor = new WatchReconnectGovernor(2);
+    private final AtomicInteger reconnects = new AtomicInteger();
+    private final List<Event> deathEvents = new CopyOnWriteArrayList<>();
+    private final RestartingWatcher<String> watcher = new RestartingWatcher<>() {
+        @Override
+        public Runnable getRestartingAction() {
+            return reconnects::incrementAndGet;
+        }
+
+        @Override
+        public void issueOperatorDeathEvent(Event event) {
+            deathEvents.add(event);
+        }
+
+        @Override
+        public WatchReconnectGovernor getReconnectGovernor() {
+            return governor;
+        }
+
+        @Override
+        public void eventReceived(Action action, String resource) {
+            //not relevant
+        }
+    };
+
+    @BeforeEach
+    void shortenDelays() {
+        System.setProperty(EntandoOperatorSpiConfigProperty.ENTANDO_CONTROLLER_POD_NAME.getJvmSystemProperty(), "my-pod");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_RECONNECT_INITIAL_DELAY_MILLIS.getJvmSystemProperty(), "10");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_RECONNECT_MAXIMUM_DELAY_MILLIS.getJvmSystemProperty(), "50");
+    }
+
+    @AfterEach
+    void resetProperties() {
+        governor.shutDown();
+        System.clearProperty(EntandoOperatorSpiConfigProperty.ENTANDO_CONTROLLER_POD_NAME.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_RECONNECT_INITIAL_DELAY_MILLIS.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_RECONNECT_MAXIMUM_DELAY_MILLIS.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty());
+        System.clearProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_STABLE_INTERVAL_MILLIS.getJvmSystemProperty());
+    }
+
+    @Test
+    void shouldBackOffExponentiallyUpToTheMaximum() {
+        assertThat(WatchReconnectGovernor.backoff(1)).isEqualTo(10L);
+        assertThat(WatchReconnectGovernor.backoff(2)).isEqualTo(20L);
+        assertThat(WatchReconnectGovernor.backoff(3)).isEqualTo(40L);
+        assertThat(WatchReconnectGovernor.backoff(4)).isEqualTo(50L);
+        assertThat(WatchReconnectGovernor.backoff(100)).isEqualTo(50L);
+        for (int i = 0; i < 100; i++) {
+            assertThat(WatchReconnectGovernor.jitter(40L)).isBetween(20L, 40L);
+        }
+    }
+
+    @Test
+    void shouldReconnectAfterFailuresBelowTheThreshold() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "3");
+        final long reconnectsBefore = CoordinatorMetrics.getCount("entando_watch_reconnects_total",
+                "watcher", watcher.getClass().getSimpleName(), "reason", "failure");
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> reconnects.get() == 2);
+        assertThat(deathEvents).isEmpty();
+        assertThat(CoordinatorMetrics.getCount("entando_watch_reconnects_total",
+                "watcher", watcher.getClass().getSimpleName(), "reason", "failure")).isEqualTo(reconnectsBefore + 2);
+    }
+
+    @Test
+    void shouldGiveUpOnceTheThresholdIsReached() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "2");
+        //Keep the first reconnect from succeeding, and thereby resetting the count, before the second failure
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_RECONNECT_INITIAL_DELAY_MILLIS.getJvmSystemProperty(), "10000");
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        assertThat(deathEvents).isEmpty();
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        assertThat(deathEvents).hasSize(1);
+    }
+
+    @Test
+    void shouldStartCountingAgainOnceTheReconnectedWatchDeliversAnEvent() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "2");
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> reconnects.get() == 1);
+        governor.confirmHealthy(watcher);
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> reconnects.get() == 2);
+        assertThat(deathEvents).isEmpty();
+    }
+
+    @Test
+    void shouldStartCountingAgainOnceTheReconnectedWatchStayedOpen() throws InterruptedException {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "2");
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_STABLE_INTERVAL_MILLIS.getJvmSystemProperty(), "100");
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> reconnects.get() == 1);
+        //The watch stays open for longer than the stable interval before it fails again
+        TimeUnit.MILLISECONDS.sleep(200);
+        governor.retry(watcher, watcher.getRestartingAction(), new WatcherException("Closed"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> reconnects.get() == 2);
+        assertThat(deathEvents).isEmpty();
+    }
+
+    @Test
+    void shouldGiveUpOnAWatchThatClosesAsSoonAsItIsOpened() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "3");
+        //Every reconnect opens the watch successfully, after which the server closes it straight away
+        final Runnable openAndCloseStraightAway = new Runnable() {
+            @Override
+            public void run() {
+                reconnects.incrementAndGet();
+                governor.retry(watcher, this, new WatcherException("Closed"));
+            }
+        };
+        governor.retry(watcher, openAndCloseStraightAway, new WatcherException("Closed"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> deathEvents.size() == 1);
+        assertThat(reconnects.get()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldNotCountRoutineReconnectsAsFailures() {
+        System.setProperty(ControllerCoordinatorProperty.ENTANDO_K8S_WATCH_FAILURE_THRESHOLD.getJvmSystemProperty(), "1");
+        governor.reconnect(watcher, watcher.getRestartingAction(), "closed");
+        governor.reconnect(watcher, watcher.getRestartingAction(), "gone");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> reconnects.get() == 2);
+        assertThat(deathEvents).isEmpty();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ * Copyright 2015-Present Entando Inc. (http://www.entando.com) All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ */
+
+package org.entando.kubernetes.controller.coordinator.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Rough measurements that benchmarks attach to the test report. They are too noisy to assert on, so the benchmark tests are
+ * excluded from the default test run.
+ */
+public class BenchmarkUtils {
+
+    @SuppressWarnings("unused")
+    private static volatile Object sink;
+
+    private BenchmarkUtils() {
+
+    }
+
+    public static Measurement measure(int warmupIterations, int iterations, Runnable operation) {
+        return measure(warmupIterations, iterations, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * Consumes the result of every operation so that the JIT cannot eliminate the work being measured.
+     */
+    public static Measurement measure(int warmupIterations, int iterations, Supplier<?> operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            sink = operation.get();
+        }
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = operation.get();
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - allocatedBefore;
+        return new Measurement(iterations * 1_000_000_000D / elapsed, allocated / iterations);
+    }
+
+    public static long retainedHeap(Runnable allocation) {
+        final long before = usedHeap();
+        allocation.run();
+        return usedHeap() - before;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @SuppressWarnings("java:S1191")
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static class Measurement {
+
+        private final double operationsPerSecond;
+        private final long bytesPerOperation;
+
+        public Measurement(double operationsPerSecond, long bytesPerOperation) {
+            this.operationsPerSecond = operationsPerSecond;
+            this.bytesPerOperation = bytesPerOperation;
+        }
+
+        public double getOperationsPerSecond() {
+            return operationsPerSecond;
+        }
+
+        public long getBytesPerOperation() {
+            return bytesPerOperation;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.0f ops/s, %d bytes/op", operationsPerSecond, bytesPerOperation);
+        }
+    }
+}
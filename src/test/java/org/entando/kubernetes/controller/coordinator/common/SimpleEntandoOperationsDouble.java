@@ -17,31 +17,33 @@
 package org.entando.kubernetes.controller.coordinator.common;
 
 import static java.util.Optional.ofNullable;
-import static org.awaitility.Awaitility.await;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.HasMetadata;
-import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.WatcherException;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.entando.kubernetes.controller.coordinator.ControllerCoordinatorConfig;
 import org.entando.kubernetes.controller.coordinator.CoordinatorUtils;
 import org.entando.kubernetes.controller.coordinator.CustomResourceStringWatcher;
+import org.entando.kubernetes.controller.coordinator.EntandoResourceStore;
 import org.entando.kubernetes.controller.coordinator.SerializedResourceWatcher;
 import org.entando.kubernetes.controller.coordinator.SimpleEntandoOperations;
+import org.entando.kubernetes.controller.coordinator.WatchReconnectGovernor;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
-import org.entando.kubernetes.controller.spi.common.PodResult;
-import org.entando.kubernetes.controller.spi.common.PodResult.State;
 import org.entando.kubernetes.controller.support.client.doubles.AbstractK8SClientDouble;
 import org.entando.kubernetes.controller.support.client.doubles.ClusterDouble;
 import org.entando.kubernetes.controller.support.client.doubles.NamespaceDouble;
@@ -49,18 +51,27 @@ import org.entando.kubernetes.controller.support.client.doubles.NamespaceDouble;
 public class SimpleEntandoOperationsDouble extends AbstractK8SClientDouble implements SimpleEntandoOperations {
 
     private final CustomResourceDefinitionContext definitionContext;
+    private final WatchReconnectGovernor reconnectGovernor;
+    private final EntandoResourceStore resourceStore = new EntandoResourceStore();
+    private final AtomicInteger listRequests = new AtomicInteger();
+    private final AtomicInteger watchRequests = new AtomicInteger();
+    private final List<String> listResourceVersions = new CopyOnWriteArrayList<>();
+    private final List<String> watchResourceVersions = new CopyOnWriteArrayList<>();
     String namespace;
+    private Set<String> namespaceFilter;
+    private boolean accessInAllNamespacesDenied;
 
     public SimpleEntandoOperationsDouble(ConcurrentHashMap<String, NamespaceDouble> namespaces,
-            CustomResourceDefinitionContext definitionContext, ClusterDouble cluster) {
+            CustomResourceDefinitionContext definitionContext, ClusterDouble cluster, WatchReconnectGovernor reconnectGovernor) {
         super(namespaces, cluster);
         this.definitionContext = definitionContext;
-
+        this.reconnectGovernor = reconnectGovernor;
     }
 
     @Override
     public SimpleEntandoOperations inNamespace(String namespace) {
         this.namespace = namespace;
+        this.namespaceFilter = null;
         return this;
     }
 
@@ -72,12 +83,73 @@ public class SimpleEntandoOperationsDouble extends AbstractK8SClientDouble imple
     @Override
     public SimpleEntandoOperations inAnyNamespace() {
         this.namespace = null;
+        this.namespaceFilter = null;
+        return this;
+    }
+
+    @Override
+    public SimpleEntandoOperations inNamespaces(Set<String> namespaces) {
+        this.namespace = null;
+        this.namespaceFilter = Set.copyOf(namespaces);
         return this;
     }
 
+    /**
+     * Simulates a Role that only grants access to the resources in specific namespaces.
+     */
+    public void denyAccessInAllNamespaces() {
+        this.accessInAllNamespacesDenied = true;
+    }
+
+    public int getListRequestCount() {
+        return listRequests.get();
+    }
+
+    public int getWatchRequestCount() {
+        return watchRequests.get();
+    }
+
+    /**
+     * The resourceVersions returned by the paginated lists, in the order in which they were listed.
+     */
+    public List<String> getListResourceVersions() {
+        return listResourceVersions;
+    }
+
+    /**
+     * The resourceVersions the watches were started from, in the order in which they were started.
+     */
+    public List<String> getWatchResourceVersions() {
+        return watchResourceVersions;
+    }
+
+    private void authorize() {
+        if (namespace == null && accessInAllNamespacesDenied) {
+            throw new KubernetesClientException("Forbidden", HttpURLConnection.HTTP_FORBIDDEN, null);
+        }
+    }
+
+    private boolean isObserved(String namespace) {
+        return namespaceFilter == null || namespaceFilter.contains(namespace);
+    }
+
+    @Override
+    public EntandoResourceStore getResourceStore() {
+        return resourceStore;
+    }
+
     @Override
-    public Watch watch(SerializedResourceWatcher watcher) {
-        final CustomResourceStringWatcher stringWatcher = new CustomResourceStringWatcher(watcher,
+    public Watch watch(SerializedResourceWatcher watcher, String resourceVersion) {
+        watchRequests.incrementAndGet();
+        watchResourceVersions.add(String.valueOf(resourceVersion));
+        final Set<String> observedNamespaces = namespaceFilter;
+        final CustomResourceStringWatcher stringWatcher = new CustomResourceStringWatcher((action, resource) -> {
+            if (observedNamespaces != null && !observedNamespaces.contains(resource.getMetadata().getNamespace())) {
+                return;
+            }
+            resourceStore.apply(action, resource);
+            watcher.eventReceived(action, resource);
+        },
                 getDefinitionContext(),
                 customResourceWatcher -> {
                     final Watcher<HasMetadata> watcherDelegate = new Watcher<>() {
@@ -102,16 +174,49 @@ public class SimpleEntandoOperationsDouble extends AbstractK8SClientDouble imple
                     }
                     return () -> {
                     };
-                }, this);
+                }, this, reconnectGovernor);
         return stringWatcher;
     }
 
     @Override
     public List<SerializedEntandoResource> list() {
+        listRequests.incrementAndGet();
+        authorize();
+        final List<SerializedEntandoResource> resources = listFromNamespaces();
+        resourceStore.replace(namespace, resources);
+        return resources;
+    }
+
+    @Override
+    public String relistInPages(Consumer<List<SerializedEntandoResource>> pageConsumer,
+            Consumer<List<SerializedEntandoResource>> deletionConsumer) {
+        final EntandoResourceStore.Replacement replacement = resourceStore.startReplacement(namespace);
+        final List<SerializedEntandoResource> resources = listFromNamespaces();
+        final int pageSize = ControllerCoordinatorConfig.getListPageSize() > 0 ? ControllerCoordinatorConfig.getListPageSize()
+                : Math.max(resources.size(), 1);
+        int offset = 0;
+        do {
+            listRequests.incrementAndGet();
+            authorize();
+            final List<SerializedEntandoResource> page = resources.subList(offset, Math.min(offset + pageSize, resources.size()));
+            pageConsumer.accept(replacement.applyPage(page));
+            offset += pageSize;
+        } while (offset < resources.size());
+        deletionConsumer.accept(replacement.complete(null));
+        //The in-memory cluster has no list resourceVersion, so the most recent resourceVersion listed stands in for the watches
+        final String listResourceVersion = resources.stream()
+                .map(resource -> resource.getMetadata().getResourceVersion())
+                .reduce(null, (left, right) -> left == null || CoordinatorUtils.isOlderResourceVersion(left, right) ? right : left);
+        listResourceVersions.add(String.valueOf(listResourceVersion));
+        return listResourceVersion;
+    }
+
+    private List<SerializedEntandoResource> listFromNamespaces() {
         if (namespace == null) {
             return getNamespaces().values().stream()
                     .flatMap(namespaceDouble -> namespaceDouble.getCustomResources(definitionContext.getKind()).values().stream())
                     .map(SerializedEntandoResource.class::cast)
+                    .filter(resource -> isObserved(resource.getMetadata().getNamespace()))
                     .collect(Collectors.toList());
         } else {
             return getNamespace(namespace).getCustomResources(definitionContext.getKind()).values().stream()
@@ -137,28 +242,6 @@ public class SimpleEntandoOperationsDouble extends AbstractK8SClientDouble imple
         return r;
     }
 
-    @Override
-    public void removeSuccessfullyCompletedPods(SerializedEntandoResource resource) {
-        final Map<String, String> labels = CoordinatorUtils.podLabelsFor(resource);
-        final Map<String, Pod> pods = getNamespace(getControllerNamespace()).getPods();
-        await().atMost(ControllerCoordinatorConfig.getRemovalDelay(), TimeUnit.SECONDS).until(() ->
-                pods.values().stream()
-                        .allMatch(
-                                pod -> CoordinatorTestUtils.matchesLabels(labels, pod) && PodResult.of(pod).getState() == State.COMPLETED));
-        pods.values().stream()
-                .filter(pod -> completedSuccessfully(labels, pod))
-                .forEach(pod -> {
-                    getCluster().getResourceProcessor().processResource(pods, pod);
-                    pods.remove(pod.getMetadata().getName());
-                });
-
-    }
-
-    private boolean completedSuccessfully(Map<String, String> labels, Pod pod) {
-        return CoordinatorTestUtils.matchesLabels(labels, pod) && PodResult.of(pod).getState() == State.COMPLETED
-                && !PodResult.of(pod).hasFailed();
-    }
-
     @Override
     public String getControllerNamespace() {
         return CONTROLLER_NAMESPACE;
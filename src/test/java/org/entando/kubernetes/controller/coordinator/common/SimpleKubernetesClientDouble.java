@@ -20,20 +20,34 @@ import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
 import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.apiextensions.v1.CustomResourceDefinition;
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.Watcher.Action;
 import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import java.net.HttpURLConnection;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.entando.kubernetes.controller.coordinator.CoordinatorUtils;
+import org.entando.kubernetes.controller.coordinator.DeployerPodIndex;
 import org.entando.kubernetes.controller.coordinator.SimpleEntandoOperations;
 import org.entando.kubernetes.controller.coordinator.SimpleKubernetesClient;
+import org.entando.kubernetes.controller.coordinator.WatchReconnectGovernor;
 import org.entando.kubernetes.controller.spi.client.SerializedEntandoResource;
 import org.entando.kubernetes.controller.support.client.doubles.AbstractK8SClientDouble;
 import org.entando.kubernetes.controller.support.client.doubles.ClusterDouble;
@@ -42,6 +56,12 @@ import org.entando.kubernetes.model.common.EntandoDeploymentPhase;
 
 public class SimpleKubernetesClientDouble extends AbstractK8SClientDouble implements SimpleKubernetesClient {
 
+    private final List<PodWatcherRegistration> podWatchers = new CopyOnWriteArrayList<>();
+    private DeployerPodIndex deployerPodIndex;
+    private final WatchReconnectGovernor watchReconnectGovernor = new WatchReconnectGovernor();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong leaseVersions = new AtomicLong();
+
     public SimpleKubernetesClientDouble() {
         super(new ConcurrentHashMap<>(), new ClusterDouble());
     }
@@ -79,16 +99,60 @@ public class SimpleKubernetesClientDouble extends AbstractK8SClientDouble implem
 
     @Override
     public Pod startPod(Pod pod) {
-        return getCluster().getResourceProcessor().processResource(getNamespace(pod).getPods(), pod);
+        final Pod result = getCluster().getResourceProcessor().processResource(getNamespace(pod).getPods(), pod);
+        notifyPodWatchers(Action.ADDED, result);
+        return result;
+    }
+
+    @Override
+    public void deletePods(String namespace, Collection<Pod> pods) {
+        pods.forEach(pod -> {
+            getCluster().getResourceProcessor().processResource(getNamespace(namespace).getPods(), pod);
+            getNamespace(namespace).getPods().remove(pod.getMetadata().getName());
+            notifyPodWatchers(Action.DELETED, pod);
+        });
+    }
+
+    @Override
+    public CompletionStage<Void> removePods(String namespace, Map<String, String> labels) {
+        deletePods(namespace, filterPodsByLabel(namespace, labels).collect(Collectors.toList()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() {
+        watchReconnectGovernor.shutDown();
+    }
+
+    @Override
+    public WatchReconnectGovernor getWatchReconnectGovernor() {
+        return watchReconnectGovernor;
+    }
+
+    @Override
+    public synchronized DeployerPodIndex getDeployerPodIndex() {
+        if (deployerPodIndex == null) {
+            deployerPodIndex = new DeployerPodIndex(this);
+        }
+        return deployerPodIndex;
     }
 
     @Override
-    public void removePodsAndWait(String namespace, Map<String, String> labels) {
-        filterPodsByLabel(namespace, labels)
-                .forEach(pod -> {
-                    getCluster().getResourceProcessor().processResource(getNamespace(namespace).getPods(), pod);
-                    getNamespace(namespace).getPods().remove(pod.getMetadata().getName());
-                });
+    public Watch watchPods(String namespace, Map<String, String> labels, String resourceVersion, Watcher<Pod> podWatcher) {
+        final PodWatcherRegistration registration = new PodWatcherRegistration(namespace, labels, podWatcher);
+        podWatchers.add(registration);
+        return () -> podWatchers.remove(registration);
+    }
+
+    public List<Watcher<Pod>> getPodWatchers() {
+        return podWatchers.stream().map(registration -> registration.watcher).collect(Collectors.toList());
+    }
+
+    private void notifyPodWatchers(Action action, Pod pod) {
+        podWatchers.stream()
+                .filter(registration -> registration.namespace.equals(pod.getMetadata().getNamespace())
+                        && CoordinatorTestUtils.matchesLabels(registration.labels, pod))
+                .forEach(registration -> registration.watcher.eventReceived(action, pod));
     }
 
     @Override
@@ -112,12 +176,76 @@ public class SimpleKubernetesClientDouble extends AbstractK8SClientDouble implem
         return getCluster().getResourceProcessor().processResource(getNamespace(CONTROLLER_NAMESPACE).getConfigMaps(), configMap);
     }
 
+    @Override
+    public List<ConfigMap> loadControllerConfigMaps(Map<String, String> labels) {
+        return getNamespace(CONTROLLER_NAMESPACE).getConfigMaps().values().stream()
+                .filter(configMap -> configMap.getMetadata().getLabels() != null)
+                .filter(configMap -> CoordinatorTestUtils.matchesLabels(labels, configMap))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteControllerConfigMap(String name) {
+        getNamespace(CONTROLLER_NAMESPACE).getConfigMaps().remove(name);
+    }
+
     @Override
     public void watchControllerConfigMap(String name, Watcher<ConfigMap> configMapWatcher) {
         getCluster().getResourceProcessor().watch(configMapWatcher, CONTROLLER_NAMESPACE, name);
 
     }
 
+    @Override
+    public void watchControllerSecret(String name, Watcher<Secret> secretWatcher) {
+        getCluster().getResourceProcessor().watch(secretWatcher, CONTROLLER_NAMESPACE, name);
+    }
+
+    @Override
+    public Lease loadControllerLease(String name) {
+        return Optional.ofNullable(leases.get(name)).map(lease -> new LeaseBuilder(lease).build()).orElse(null);
+    }
+
+    @Override
+    public synchronized Lease createControllerLease(Lease lease) {
+        if (leases.containsKey(lease.getMetadata().getName())) {
+            throw new KubernetesClientException("The Lease already exists", HttpURLConnection.HTTP_CONFLICT, null);
+        }
+        return storeLease(lease);
+    }
+
+    @Override
+    public synchronized Lease updateControllerLease(Lease lease) {
+        final Lease existing = leases.get(lease.getMetadata().getName());
+        if (existing == null || !existing.getMetadata().getResourceVersion().equals(lease.getMetadata().getResourceVersion())) {
+            throw new KubernetesClientException("The Lease has been modified", HttpURLConnection.HTTP_CONFLICT, null);
+        }
+        return storeLease(lease);
+    }
+
+    @Override
+    public List<Lease> loadControllerLeases(Map<String, String> labels) {
+        return leases.values().stream()
+                .filter(lease -> CoordinatorTestUtils.matchesLabels(labels, lease))
+                .map(lease -> new LeaseBuilder(lease).build())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteControllerLease(String name) {
+        leases.remove(name);
+    }
+
+    private Lease storeLease(Lease lease) {
+        final Lease stored = new LeaseBuilder(lease)
+                .editMetadata()
+                .withNamespace(CONTROLLER_NAMESPACE)
+                .withResourceVersion(String.valueOf(leaseVersions.incrementAndGet()))
+                .endMetadata()
+                .build();
+        leases.put(stored.getMetadata().getName(), stored);
+        return new LeaseBuilder(stored).build();
+    }
+
     @Override
     public Watch watchCustomResourceDefinitions(Watcher<CustomResourceDefinition> customResourceDefinitionWatcher) {
         this.getCluster().getResourceProcessor().watch(customResourceDefinitionWatcher);
@@ -133,7 +261,7 @@ public class SimpleKubernetesClientDouble extends AbstractK8SClientDouble implem
 
     @Override
     public SimpleEntandoOperations getOperations(CustomResourceDefinitionContext context) {
-        return new SimpleEntandoOperationsDouble(getNamespaces(), context, getCluster());
+        return new SimpleEntandoOperationsDouble(getNamespaces(), context, getCluster(), watchReconnectGovernor);
     }
 
     @Override
@@ -156,10 +284,17 @@ public class SimpleKubernetesClientDouble extends AbstractK8SClientDouble implem
         return filterPodsByLabel(namespace, labels).findFirst().orElse(null);
     }
 
+    @Override
     public List<Pod> loadPods(String namespace, Map<String, String> labels) {
         return filterPodsByLabel(namespace, labels).collect(Collectors.toList());
     }
 
+    @Override
+    public PodList listPods(String namespace, Map<String, String> labels) {
+        //The in-memory cluster delivers events synchronously, so there is nothing to catch up on from a list resourceVersion
+        return new PodListBuilder().withItems(loadPods(namespace, labels)).build();
+    }
+
     private Stream<Pod> filterPodsByLabel(String namespace, Map<String, String> labels) {
         return getNamespace(namespace).getPods().values().stream().filter(p -> CoordinatorTestUtils.matchesLabels(labels, p));
     }
@@ -178,6 +313,20 @@ public class SimpleKubernetesClientDouble extends AbstractK8SClientDouble implem
     }
 
     public void updatePodStatus(Pod podWithStatus) {
-        getCluster().getResourceProcessor().processResource(getNamespace(podWithStatus).getPods(), podWithStatus);
+        final Pod result = getCluster().getResourceProcessor().processResource(getNamespace(podWithStatus).getPods(), podWithStatus);
+        notifyPodWatchers(Action.MODIFIED, result);
+    }
+
+    private static class PodWatcherRegistration {
+
+        private final String namespace;
+        private final Map<String, String> labels;
+        private final Watcher<Pod> watcher;
+
+        private PodWatcherRegistration(String namespace, Map<String, String> labels, Watcher<Pod> watcher) {
+            this.namespace = namespace;
+            this.labels = labels;
+            this.watcher = watcher;
+        }
     }
 }